@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2009-2023 the original author(s).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.jansi.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.fusesource.jansi.Ansi;
+import org.fusesource.jansi.Ansi.Color;
+import org.fusesource.jansi.AnsiRenderer;
+import org.fusesource.jansi.AnsiStyle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the construction of strings containing escape sequences,
+ * either through the {@link Ansi} builder or the {@link AnsiRenderer} markup.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnsiBenchmark {
+
+    private static final String MARKUP =
+            "@|bold,red ERROR|@ [main] @|cyan org.example.Service|@ - request @|yellow 42|@ failed";
+
+    private static final AnsiStyle ERROR = AnsiStyle.style().fg(Color.RED).a(Ansi.Attribute.INTENSITY_BOLD);
+    private static final AnsiStyle CLASS = AnsiStyle.style().fg(Color.CYAN);
+    private static final AnsiStyle VALUE = AnsiStyle.style().fgRgb(255, 200, 0);
+
+    @Setup
+    public void setup() {
+        Ansi.setEnabled(true);
+    }
+
+    @Benchmark
+    public String ansiBuilder() {
+        return Ansi.ansi()
+                .fgRed()
+                .bold()
+                .a("ERROR")
+                .reset()
+                .a(" [main] ")
+                .fg(Color.CYAN)
+                .a("org.example.Service")
+                .reset()
+                .a(" - request ")
+                .fgRgb(255, 200, 0)
+                .a(42)
+                .reset()
+                .a(" failed")
+                .toString();
+    }
+
+    @Benchmark
+    public String ansiStyles() {
+        return Ansi.ansi()
+                .style(ERROR)
+                .a("ERROR")
+                .reset()
+                .a(" [main] ")
+                .style(CLASS)
+                .a("org.example.Service")
+                .reset()
+                .a(" - request ")
+                .style(VALUE)
+                .a(42)
+                .reset()
+                .a(" failed")
+                .toString();
+    }
+
+    @Benchmark
+    public String renderMarkup() {
+        return AnsiRenderer.render(MARKUP);
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2009-2023 the original author(s).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.jansi.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.fusesource.jansi.AnsiColors;
+import org.fusesource.jansi.AnsiMode;
+import org.fusesource.jansi.AnsiType;
+import org.fusesource.jansi.io.AnsiOutputStream;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the escape sequence processing of {@link AnsiOutputStream} in the various modes,
+ * for plain text and for escape heavy output.  Throughput is reported both in operations and
+ * in bytes per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnsiOutputStreamBenchmark {
+
+    @Param({"Default", "Strip", "Force"})
+    public AnsiMode mode;
+
+    @Param({"plain", "escapes"})
+    public String corpus;
+
+    private byte[] data;
+    private AnsiOutputStream stream;
+
+    /**
+     * Counts the bytes processed so that JMH reports a bytes/s rate.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Bytes {
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void clean() {
+            bytes = 0;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        data = Corpus.get(corpus);
+        stream = new AnsiOutputStream(
+                new Corpus.NullOutputStream(),
+                new AnsiOutputStream.ZeroWidthSupplier(),
+                mode,
+                null,
+                AnsiType.Native,
+                AnsiColors.TrueColor,
+                StandardCharsets.UTF_8,
+                null,
+                null,
+                false);
+    }
+
+    @Benchmark
+    public void write(Bytes bytes) throws IOException {
+        stream.write(data, 0, data.length);
+        bytes.bytes += data.length;
+    }
+}
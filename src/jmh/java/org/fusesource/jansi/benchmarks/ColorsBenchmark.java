@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2009-2023 the original author(s).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.jansi.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.fusesource.jansi.AnsiColors;
+import org.fusesource.jansi.AnsiMode;
+import org.fusesource.jansi.AnsiType;
+import org.fusesource.jansi.io.AnsiOutputStream;
+import org.fusesource.jansi.io.Colors;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the downsampling of 24-bit colors to the 256 or 16 colors palettes,
+ * both through the {@link org.fusesource.jansi.io.ColorsAnsiProcessor} and directly
+ * through {@link Colors#roundRgbColor(int, int, int, int)}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ColorsBenchmark {
+
+    @Param({"Colors256", "Colors16"})
+    public AnsiColors colors;
+
+    private byte[] data;
+    private AnsiOutputStream stream;
+    private int[] rgb;
+    private int index;
+
+    /**
+     * Counts the bytes processed so that JMH reports a bytes/s rate.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Bytes {
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void clean() {
+            bytes = 0;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        data = Corpus.trueColors();
+        rgb = Corpus.rgbColors(1024);
+        stream = new AnsiOutputStream(
+                new Corpus.NullOutputStream(),
+                new AnsiOutputStream.ZeroWidthSupplier(),
+                AnsiMode.Force,
+                null,
+                AnsiType.Native,
+                colors,
+                StandardCharsets.UTF_8,
+                null,
+                null,
+                false);
+    }
+
+    @Benchmark
+    public void downsample(Bytes bytes) throws IOException {
+        stream.write(data, 0, data.length);
+        bytes.bytes += data.length;
+    }
+
+    @Benchmark
+    public int roundRgbColor() {
+        int c = rgb[index++ & (rgb.length - 1)];
+        int max = colors == AnsiColors.Colors16 ? 16 : 256;
+        return Colors.roundRgbColor((c >> 16) & 0xff, (c >> 8) & 0xff, c & 0xff, max);
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2009-2023 the original author(s).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.jansi.benchmarks;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Test data shared by the benchmarks.
+ */
+final class Corpus {
+
+    private static final int SIZE = 64 * 1024;
+
+    private Corpus() {}
+
+    /**
+     * @return log lines without any escape sequence
+     */
+    static byte[] plain() {
+        StringBuilder sb = new StringBuilder(SIZE);
+        for (int i = 0; sb.length() < SIZE; i++) {
+            sb.append("2024-01-01 12:00:00.000 INFO  [worker-")
+                    .append(i % 16)
+                    .append("] org.example.Service - processed request ")
+                    .append(i)
+                    .append(" in 12ms\n");
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return log lines colored with several 16 colors SGR sequences per line
+     */
+    static byte[] escapes() {
+        StringBuilder sb = new StringBuilder(SIZE);
+        for (int i = 0; sb.length() < SIZE; i++) {
+            sb.append("\033[2m2024-01-01 12:00:00.000\033[0m \033[1;32mINFO\033[0m  [\033[35mworker-")
+                    .append(i % 16)
+                    .append("\033[0m] \033[36morg.example.Service\033[0m - processed request \033[1m")
+                    .append(i)
+                    .append("\033[22m in \033[33m12ms\033[39m\n");
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return syntax highlighting like lines using 24-bit colors from a small theme
+     */
+    static byte[] trueColors() {
+        Random random = new Random(0);
+        int[] theme = new int[24];
+        for (int i = 0; i < theme.length; i++) {
+            theme[i] = random.nextInt(0x1000000);
+        }
+        StringBuilder sb = new StringBuilder(SIZE);
+        for (int i = 0; sb.length() < SIZE; i++) {
+            int fg = theme[i % theme.length];
+            int bg = theme[(i * 7) % theme.length];
+            sb.append("\033[38;2;")
+                    .append((fg >> 16) & 0xff)
+                    .append(';')
+                    .append((fg >> 8) & 0xff)
+                    .append(';')
+                    .append(fg & 0xff)
+                    .append(";48;2;")
+                    .append((bg >> 16) & 0xff)
+                    .append(';')
+                    .append((bg >> 8) & 0xff)
+                    .append(';')
+                    .append(bg & 0xff)
+                    .append("mtoken")
+                    .append(i)
+                    .append("\033[0m ");
+            if (i % 8 == 7) {
+                sb.append('\n');
+            }
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param count the number of colors
+     * @return random 24-bit colors
+     */
+    static int[] rgbColors(int count) {
+        Random random = new Random(0);
+        int[] colors = new int[count];
+        for (int i = 0; i < count; i++) {
+            colors[i] = random.nextInt(0x1000000);
+        }
+        return colors;
+    }
+
+    static byte[] get(String name) {
+        switch (name) {
+            case "plain":
+                return plain();
+            case "escapes":
+                return escapes();
+            case "truecolor":
+                return trueColors();
+            default:
+                throw new IllegalArgumentException(name);
+        }
+    }
+
+    /**
+     * An output stream discarding everything written to it.
+     */
+    static final class NullOutputStream extends OutputStream {
+        @Override
+        public void write(int b) {}
+
+        @Override
+        public void write(byte[] b, int off, int len) {}
+    }
+}
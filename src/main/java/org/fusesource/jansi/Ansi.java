@@ -15,7 +15,7 @@
  */
 package org.fusesource.jansi;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.concurrent.Callable;
 
 /**
@@ -210,6 +210,85 @@ public class Ansi implements Appendable {
         }
     }
 
+    private static final ThreadLocal<Pooled[]> POOL = ThreadLocal.withInitial(() -> new Pooled[2]);
+
+    /**
+     * Borrows the builder kept by the current thread, which is cleared when the returned handle
+     * is closed, so that building a line of output does not create any garbage:
+     *
+     * <pre>
+     * try (Ansi.Pooled pooled = Ansi.pooled()) {
+     *     System.out.println(pooled.ansi().fgRed().a(message).reset());
+     * }
+     * </pre>
+     *
+     * As with {@link #ansi()}, the builder does not generate any escape sequence if
+     * {@link #isEnabled()} is false.  A nested call on the same thread gets a new builder,
+     * and builders which grew larger than {@value Pooled#MAX_CAPACITY} characters are not kept.
+     * The builder and the handle must not be used once the handle is closed.
+     *
+     * @return the handle of the builder
+     * @since 2.4.3
+     */
+    public static Pooled pooled() {
+        Pooled[] pool = POOL.get();
+        int index = isEnabled() ? 1 : 0;
+        Pooled pooled = pool[index];
+        if (pooled == null || pooled.inUse || pooled.ansi.builder.capacity() > Pooled.MAX_CAPACITY) {
+            Pooled created = new Pooled(index == 1 ? new Ansi() : new NoAnsi());
+            if (pooled == null || !pooled.inUse) {
+                pool[index] = created;
+            }
+            pooled = created;
+        }
+        pooled.inUse = true;
+        return pooled;
+    }
+
+    /**
+     * A builder borrowed with {@link #pooled()}.
+     *
+     * @since 2.4.3
+     */
+    public static final class Pooled implements AutoCloseable {
+
+        /**
+         * The maximum capacity in characters of the builders kept by the threads.
+         */
+        public static final int MAX_CAPACITY = 8192;
+
+        private final Ansi ansi;
+        private boolean inUse;
+
+        private Pooled(Ansi ansi) {
+            this.ansi = ansi;
+        }
+
+        /**
+         * @return the borrowed builder
+         */
+        public Ansi ansi() {
+            if (!inUse) throw new IllegalStateException("The builder has been released");
+            return ansi;
+        }
+
+        @Override
+        public String toString() {
+            return ansi().toString();
+        }
+
+        /**
+         * Clears the builder and gives it back to the thread.
+         */
+        @Override
+        public void close() {
+            if (inUse) {
+                ansi.clear();
+                inUse = false;
+            }
+        }
+    }
+
     private static class NoAnsi extends Ansi {
         public NoAnsi() {
             super();
@@ -368,18 +447,27 @@ public class Ansi implements Appendable {
         public Ansi reset() {
             return this;
         }
+
+        @Override
+        public Ansi style(AnsiStyle style) {
+            return this;
+        }
     }
 
     private final StringBuilder builder;
-    private final ArrayList<Integer> attributeOptions = new ArrayList<>(5);
+    private int[] attributeOptions; // allocated with the first attribute
+    private int attributeCount;
 
     public Ansi() {
         this(new StringBuilder(80));
     }
 
     public Ansi(Ansi parent) {
-        this(new StringBuilder(parent.builder));
-        attributeOptions.addAll(parent.attributeOptions);
+        this(new StringBuilder(parent.chars()));
+        if (parent.attributeCount > 0) {
+            attributeOptions = Arrays.copyOf(parent.attributeOptions, parent.attributeOptions.length);
+            attributeCount = parent.attributeCount;
+        }
     }
 
     public Ansi(int size) {
@@ -391,14 +479,14 @@ public class Ansi implements Appendable {
     }
 
     public Ansi fg(Color color) {
-        attributeOptions.add(color.fg());
+        addAttribute(color.fg());
         return this;
     }
 
     public Ansi fg(int color) {
-        attributeOptions.add(38);
-        attributeOptions.add(5);
-        attributeOptions.add(color & 0xff);
+        addAttribute(38);
+        addAttribute(5);
+        addAttribute(color & 0xff);
         return this;
     }
 
@@ -407,11 +495,11 @@ public class Ansi implements Appendable {
     }
 
     public Ansi fgRgb(int r, int g, int b) {
-        attributeOptions.add(38);
-        attributeOptions.add(2);
-        attributeOptions.add(r & 0xff);
-        attributeOptions.add(g & 0xff);
-        attributeOptions.add(b & 0xff);
+        addAttribute(38);
+        addAttribute(2);
+        addAttribute(r & 0xff);
+        addAttribute(g & 0xff);
+        addAttribute(b & 0xff);
         return this;
     }
 
@@ -448,14 +536,14 @@ public class Ansi implements Appendable {
     }
 
     public Ansi bg(Color color) {
-        attributeOptions.add(color.bg());
+        addAttribute(color.bg());
         return this;
     }
 
     public Ansi bg(int color) {
-        attributeOptions.add(48);
-        attributeOptions.add(5);
-        attributeOptions.add(color & 0xff);
+        addAttribute(48);
+        addAttribute(5);
+        addAttribute(color & 0xff);
         return this;
     }
 
@@ -464,11 +552,11 @@ public class Ansi implements Appendable {
     }
 
     public Ansi bgRgb(int r, int g, int b) {
-        attributeOptions.add(48);
-        attributeOptions.add(2);
-        attributeOptions.add(r & 0xff);
-        attributeOptions.add(g & 0xff);
-        attributeOptions.add(b & 0xff);
+        addAttribute(48);
+        addAttribute(2);
+        addAttribute(r & 0xff);
+        addAttribute(g & 0xff);
+        addAttribute(b & 0xff);
         return this;
     }
 
@@ -497,7 +585,7 @@ public class Ansi implements Appendable {
     }
 
     public Ansi fgBright(Color color) {
-        attributeOptions.add(color.fgBright());
+        addAttribute(color.fgBright());
         return this;
     }
 
@@ -534,7 +622,7 @@ public class Ansi implements Appendable {
     }
 
     public Ansi bgBright(Color color) {
-        attributeOptions.add(color.bgBright());
+        addAttribute(color.bgBright());
         return this;
     }
 
@@ -563,7 +651,7 @@ public class Ansi implements Appendable {
     }
 
     public Ansi a(Attribute attribute) {
-        attributeOptions.add(attribute.value());
+        addAttribute(attribute.value());
         return this;
     }
 
@@ -730,8 +818,8 @@ public class Ansi implements Appendable {
 
     // DEC command
     public Ansi saveCursorPositionDEC() {
-        builder.append(FIRST_ESC_CHAR);
-        builder.append('7');
+        put(FIRST_ESC_CHAR);
+        put('7');
         return this;
     }
 
@@ -747,8 +835,8 @@ public class Ansi implements Appendable {
 
     // DEC command
     public Ansi restoreCursorPositionDEC() {
-        builder.append(FIRST_ESC_CHAR);
-        builder.append('8');
+        put(FIRST_ESC_CHAR);
+        put('8');
         return this;
     }
 
@@ -766,91 +854,91 @@ public class Ansi implements Appendable {
 
     public Ansi a(String value) {
         flushAttributes();
-        builder.append(value);
+        put(value);
         return this;
     }
 
     public Ansi a(boolean value) {
         flushAttributes();
-        builder.append(value);
+        put(String.valueOf(value));
         return this;
     }
 
     public Ansi a(char value) {
         flushAttributes();
-        builder.append(value);
+        put(value);
         return this;
     }
 
     public Ansi a(char[] value, int offset, int len) {
         flushAttributes();
-        builder.append(value, offset, len);
+        put(value, offset, len);
         return this;
     }
 
     public Ansi a(char[] value) {
         flushAttributes();
-        builder.append(value);
+        put(value, 0, value.length);
         return this;
     }
 
     public Ansi a(CharSequence value, int start, int end) {
         flushAttributes();
-        builder.append(value, start, end);
+        put(value, start, end);
         return this;
     }
 
     public Ansi a(CharSequence value) {
         flushAttributes();
-        builder.append(value);
+        put(value);
         return this;
     }
 
     public Ansi a(double value) {
         flushAttributes();
-        builder.append(value);
+        put(String.valueOf(value));
         return this;
     }
 
     public Ansi a(float value) {
         flushAttributes();
-        builder.append(value);
+        put(String.valueOf(value));
         return this;
     }
 
     public Ansi a(int value) {
         flushAttributes();
-        builder.append(value);
+        put(value);
         return this;
     }
 
     public Ansi a(long value) {
         flushAttributes();
-        builder.append(value);
+        put(value);
         return this;
     }
 
     public Ansi a(Object value) {
         flushAttributes();
-        builder.append(value);
+        put(String.valueOf(value));
         return this;
     }
 
     public Ansi a(StringBuffer value) {
         flushAttributes();
-        builder.append(value);
+        put((CharSequence) value);
         return this;
     }
 
     public Ansi newline() {
         flushAttributes();
-        builder.append(System.getProperty("line.separator"));
+        put(System.getProperty("line.separator"));
         return this;
     }
 
     public Ansi format(String pattern, Object... args) {
         flushAttributes();
-        builder.append(String.format(pattern, args));
+        put(String.format(pattern, args));
         return this;
     }
 
@@ -866,6 +954,19 @@ public class Ansi implements Appendable {
         return this;
     }
 
+    /**
+     * Applies the given pre-rendered style.
+     *
+     * @param style the style to apply
+     * @return this Ansi instance
+     * @since 2.4.3
+     */
+    public Ansi style(AnsiStyle style) {
+        flushAttributes();
+        put(style.toString());
+        return this;
+    }
+
     /**
      * Uses the {@link AnsiRenderer}
      * to generate the ANSI escape sequences for the supplied text.
@@ -893,6 +994,18 @@ public class Ansi implements Appendable {
         return this;
     }
 
+    /**
+     * Clears the content of this builder and the attributes not written yet, so that it can be reused.
+     *
+     * @return this
+     * @since 2.4.3
+     */
+    public Ansi clear() {
+        attributeCount = 0;
+        builder.setLength(0);
+        return this;
+    }
+
     @Override
     public String toString() {
         flushAttributes();
@@ -905,18 +1018,18 @@ public class Ansi implements Appendable {
 
     private Ansi appendEscapeSequence(char command) {
         flushAttributes();
-        builder.append(FIRST_ESC_CHAR);
-        builder.append(SECOND_ESC_CHAR);
-        builder.append(command);
+        put(FIRST_ESC_CHAR);
+        put(SECOND_ESC_CHAR);
+        put(command);
         return this;
     }
 
     private Ansi appendEscapeSequence(char command, int option) {
         flushAttributes();
-        builder.append(FIRST_ESC_CHAR);
-        builder.append(SECOND_ESC_CHAR);
-        builder.append(option);
-        builder.append(command);
+        put(FIRST_ESC_CHAR);
+        put(SECOND_ESC_CHAR);
+        put(option);
+        put(command);
         return this;
     }
 
@@ -925,49 +1038,94 @@ public class Ansi implements Appendable {
         return _appendEscapeSequence(command, options);
     }
 
-    private void flushAttributes() {
-        if (attributeOptions.isEmpty()) return;
-        if (attributeOptions.size() == 1 && attributeOptions.get(0) == 0) {
-            builder.append(FIRST_ESC_CHAR);
-            builder.append(SECOND_ESC_CHAR);
-            builder.append('m');
-        } else {
-            _appendEscapeSequence('m', attributeOptions.toArray());
+    void flushAttributes() {
+        if (attributeCount == 0) return;
+        put(FIRST_ESC_CHAR);
+        put(SECOND_ESC_CHAR);
+        if (attributeCount > 1 || attributeOptions[0] != 0) {
+            for (int i = 0; i < attributeCount; i++) {
+                if (i != 0) {
+                    put(';');
+                }
+                put(attributeOptions[i]);
+            }
         }
-        attributeOptions.clear();
+        put('m');
+        attributeCount = 0;
+    }
+
+    private void addAttribute(int option) {
+        if (attributeOptions == null) {
+            attributeOptions = new int[5];
+        } else if (attributeCount == attributeOptions.length) {
+            attributeOptions = Arrays.copyOf(attributeOptions, attributeCount * 2);
+        }
+        attributeOptions[attributeCount++] = option;
     }
 
     private Ansi _appendEscapeSequence(char command, Object... options) {
-        builder.append(FIRST_ESC_CHAR);
-        builder.append(SECOND_ESC_CHAR);
+        put(FIRST_ESC_CHAR);
+        put(SECOND_ESC_CHAR);
         int size = options.length;
         for (int i = 0; i < size; i++) {
             if (i != 0) {
-                builder.append(';');
+                put(';');
             }
             if (options[i] != null) {
-                builder.append(options[i]);
+                put(String.valueOf(options[i]));
             }
         }
-        builder.append(command);
+        put(command);
         return this;
     }
 
     @Override
     public Ansi append(CharSequence csq) {
-        builder.append(csq);
+        put(csq);
         return this;
     }
 
     @Override
     public Ansi append(CharSequence csq, int start, int end) {
-        builder.append(csq, start, end);
+        put(csq, start, end);
         return this;
     }
 
     @Override
     public Ansi append(char c) {
-        builder.append(c);
+        put(c);
         return this;
     }
+
+    //
+    // The characters are all written through these methods, which AnsiBuffer overrides
+    // to encode them directly
+    //
+
+    void put(char c) {
+        builder.append(c);
+    }
+
+    void put(long value) {
+        builder.append(value);
+    }
+
+    void put(CharSequence csq) {
+        builder.append(csq);
+    }
+
+    void put(CharSequence csq, int start, int end) {
+        builder.append(csq, start, end);
+    }
+
+    void put(char[] value, int offset, int len) {
+        builder.append(value, offset, len);
+    }
+
+    /**
+     * @return the characters generated so far, without the attributes not written yet
+     */
+    CharSequence chars() {
+        return builder;
+    }
 }
@@ -0,0 +1,291 @@
+/*
+ * Copyright (C) 2009-2023 the original author(s).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.jansi;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * An {@link Ansi} builder which can be written to an {@link OutputStream} without creating
+ * an intermediate {@link String}.
+ * <p>
+ * The content is encoded in the given charset into an internal byte buffer as it is appended:
+ * escape sequences and ASCII text are written as bytes directly when the charset is ASCII compatible,
+ * the rest goes through a {@link CharsetEncoder}.  The buffer is drained with
+ * {@link #writeTo(OutputStream)} or {@link #toByteArray()}.  A high surrogate ending the content
+ * is only encoded once the character following it is appended.  The byte buffer is kept by
+ * {@link #clear()}, so that a single instance can be reused for each line of output:
+ *
+ * <pre>
+ * AnsiBuffer buffer = new AnsiBuffer(charset);
+ * ...
+ * buffer.clear().fgRed().a(message).reset().newline().writeTo(out);
+ * </pre>
+ *
+ * Unlike {@link Ansi#ansi()}, escape sequences are always generated, whether {@link Ansi#isEnabled()}
+ * or not, as the target stream is expected to process them.
+ * This class is not thread safe.
+ *
+ * @since 2.4.3
+ */
+public class AnsiBuffer extends Ansi {
+
+    private final Charset charset;
+    private final CharsetEncoder encoder;
+    private final boolean ascii;
+    private final char[] single = new char[1];
+    // the pending high surrogate and the character following it
+    private final char[] pair = new char[2];
+    private byte[] bytes;
+    private int count;
+    // whether the encoder has been used since it was last reset
+    private boolean encoding;
+    // a high surrogate waiting for the next character
+    private boolean pending;
+
+    public AnsiBuffer() {
+        this(Charset.defaultCharset());
+    }
+
+    public AnsiBuffer(Charset charset) {
+        this(charset, 80);
+    }
+
+    public AnsiBuffer(Charset charset, int size) {
+        super(0);
+        this.charset = charset;
+        this.encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.ascii = isAsciiCompatible(charset);
+        this.bytes = new byte[Math.max(size, 16)];
+    }
+
+    private static boolean isAsciiCompatible(Charset charset) {
+        if (!charset.canEncode()) {
+            return false;
+        }
+        byte[] ascii = new byte[0x80];
+        for (int i = 0; i < ascii.length; i++) {
+            ascii[i] = (byte) i;
+        }
+        return Arrays.equals(ascii, new String(ascii, StandardCharsets.ISO_8859_1).getBytes(charset));
+    }
+
+    /**
+     * Clears the content of this buffer, keeping the allocated memory.
+     *
+     * @return this buffer
+     */
+    @Override
+    public AnsiBuffer clear() {
+        super.clear();
+        count = 0;
+        pending = false;
+        encoder.reset();
+        encoding = false;
+        return this;
+    }
+
+    /**
+     * @return the number of bytes of the encoded content
+     */
+    public int size() {
+        flushAttributes();
+        return count;
+    }
+
+    /**
+     * @return a copy of the encoded content
+     */
+    public byte[] toByteArray() {
+        flushAttributes();
+        return Arrays.copyOf(bytes, count);
+    }
+
+    /**
+     * Writes the encoded content to the given stream.  The content is not cleared.
+     *
+     * @param out the stream to write to
+     * @throws IOException if an error occurs
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        flushAttributes();
+        out.write(bytes, 0, count);
+    }
+
+    /**
+     * @return the encoded content, decoded
+     */
+    @Override
+    public String toString() {
+        flushAttributes();
+        return new String(bytes, 0, count, charset);
+    }
+
+    @Override
+    CharSequence chars() {
+        return new String(bytes, 0, count, charset);
+    }
+
+    @Override
+    void put(char c) {
+        if (ascii && c < 0x80 && !pending) {
+            ascii();
+            ensure(1);
+            bytes[count++] = (byte) c;
+        } else {
+            single[0] = c;
+            encode(CharBuffer.wrap(single));
+        }
+    }
+
+    @Override
+    void put(long value) {
+        if (!ascii || pending) {
+            put(String.valueOf(value));
+            return;
+        }
+        ascii();
+        ensure(20);
+        if (value < 0) {
+            bytes[count++] = '-';
+        } else {
+            // the digits are computed on negative values, which include Long.MIN_VALUE
+            value = -value;
+        }
+        int start = count;
+        do {
+            bytes[count++] = (byte) ('0' - value % 10);
+            value /= 10;
+        } while (value != 0);
+        for (int i = start, j = count - 1; i < j; i++, j--) {
+            byte b = bytes[i];
+            bytes[i] = bytes[j];
+            bytes[j] = b;
+        }
+    }
+
+    @Override
+    void put(CharSequence csq) {
+        if (csq == null) {
+            csq = "null";
+        }
+        put(csq, 0, csq.length());
+    }
+
+    @Override
+    void put(CharSequence csq, int start, int end) {
+        if (csq == null) {
+            csq = "null";
+        }
+        if (start < 0 || start > end || end > csq.length()) {
+            throw new IndexOutOfBoundsException();
+        }
+        int i = start;
+        while (i < end) {
+            if (ascii && !pending) {
+                int from = i;
+                while (i < end && csq.charAt(i) < 0x80) {
+                    i++;
+                }
+                if (i > from) {
+                    ascii();
+                    ensure(i - from);
+                    for (int j = from; j < i; j++) {
+                        bytes[count++] = (byte) csq.charAt(j);
+                    }
+                }
+            }
+            int from = i;
+            while (i < end && (!ascii || csq.charAt(i) >= 0x80)) {
+                i++;
+            }
+            if (i == from && i < end) {
+                // an ASCII character following a pending surrogate
+                i++;
+            }
+            if (i > from) {
+                encode(CharBuffer.wrap(csq, from, i));
+            }
+        }
+    }
+
+    @Override
+    void put(char[] value, int offset, int len) {
+        put(CharBuffer.wrap(value, offset, len), 0, len);
+    }
+
+    private void ensure(int n) {
+        if (count + n > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, count + n));
+        }
+    }
+
+    /**
+     * Ends the encoding before bytes are written directly, so that a stateful encoder
+     * returns to its initial state.
+     */
+    private void ascii() {
+        if (encoding) {
+            encode(CharBuffer.wrap(single, 0, 0), true);
+            encoder.reset();
+            encoding = false;
+        }
+    }
+
+    private void encode(CharBuffer in) {
+        while (pending && in.hasRemaining()) {
+            // complete the pair with the first character
+            pair[1] = in.get();
+            pending = false;
+            encode(CharBuffer.wrap(pair), false);
+        }
+        if (in.hasRemaining()) {
+            encode(in, false);
+        }
+    }
+
+    private void encode(CharBuffer in, boolean endOfInput) {
+        encoding = true;
+        boolean flushing = false;
+        while (true) {
+            ByteBuffer out = ByteBuffer.wrap(bytes, count, bytes.length - count);
+            CoderResult result = flushing ? encoder.flush(out) : encoder.encode(in, out, endOfInput);
+            count = out.position();
+            if (result.isOverflow()) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            } else if (flushing || !endOfInput) {
+                break;
+            } else {
+                flushing = true;
+            }
+        }
+        if (in.hasRemaining()) {
+            // a high surrogate, kept until the next character
+            pair[0] = in.get();
+            pending = true;
+        }
+    }
+}
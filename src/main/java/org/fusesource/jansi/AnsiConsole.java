@@ -24,15 +24,24 @@ import java.io.PrintStream;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
 import java.nio.charset.UnsupportedCharsetException;
+import java.nio.file.Paths;
 import java.util.Locale;
 
 import org.fusesource.jansi.internal.CLibrary;
 import org.fusesource.jansi.internal.CLibrary.WinSize;
+import org.fusesource.jansi.internal.JansiEvents;
 import org.fusesource.jansi.internal.Kernel32.CONSOLE_SCREEN_BUFFER_INFO;
 import org.fusesource.jansi.internal.MingwSupport;
 import org.fusesource.jansi.io.AnsiOutputStream;
 import org.fusesource.jansi.io.AnsiProcessor;
+import org.fusesource.jansi.io.AnsiStatistics;
+import org.fusesource.jansi.io.AsyncOutputStream;
+import org.fusesource.jansi.io.CachedWidthSupplier;
+import org.fusesource.jansi.io.ChannelOutputStream;
 import org.fusesource.jansi.io.FastBufferedOutputStream;
+import org.fusesource.jansi.io.RingBuffer;
+import org.fusesource.jansi.io.RingOutputStream;
+import org.fusesource.jansi.io.StyleAnsiProcessor;
 import org.fusesource.jansi.io.WindowsAnsiProcessor;
 
 import static org.fusesource.jansi.internal.CLibrary.ioctl;
@@ -51,6 +60,11 @@ import static org.fusesource.jansi.internal.Kernel32.SetConsoleMode;
  * CLibrary isatty(int)</a>).
  * <p>The native library used is named <code>jansi</code> and is loaded using <a href="http://fusesource.github.io/hawtjni/">HawtJNI</a> Runtime
  * <a href="http://fusesource.github.io/hawtjni/documentation/api/index.html?org/fusesource/hawtjni/runtime/Library.html"><code>Library</code></a>
+ * <p>The terminal is probed, and the native library loaded, when a stream is first written to or queried.
+ * The terminal is not probed at all, and the stream typed {@link AnsiType#Unsupported}, when the escape
+ * sequences are stripped or passed through as configured by the system properties, when the
+ * <code>NO_COLOR</code> environment variable is set, or when <code>TERM</code> is <code>dumb</code>
+ * outside of an Emacs shell.
  *
  * @since 1.0
  * @see #systemInstall()
@@ -167,6 +181,131 @@ public class AnsiConsole {
      * behavior is to behave gracefully and fall back to pure emulation on posix systems.
      */
     public static final String JANSI_GRACEFUL = "jansi.graceful";
+    /**
+     * If the <code>jansi.async</code> system property is set to true, the bytes written to the
+     * console streams are queued and a dedicated writer thread processes the escape sequences and
+     * writes them, so that callers do not wait on the console.  Callers are only blocked when
+     * more than {@link AsyncOutputStream#DEFAULT_CAPACITY} bytes are waiting, and pending bytes
+     * are written when the JVM shuts down.
+     *
+     * @since 2.4.3
+     */
+    public static final String JANSI_ASYNC = "jansi.async";
+    /**
+     * The <code>jansi.buffer.size</code> system property sets the size in bytes of the buffer
+     * used by the console streams, {@link FastBufferedOutputStream#DEFAULT_SIZE} by default.
+     *
+     * @since 2.4.3
+     */
+    public static final String JANSI_BUFFER_SIZE = "jansi.buffer.size";
+    /**
+     * If the <code>jansi.channel</code> system property is set to true, the console streams are written
+     * through a {@link java.nio.channels.FileChannel} and a direct buffer instead of a
+     * {@link FileOutputStream}, which saves a copy of the bytes on each write.
+     * As interrupting a thread writing to a channel closes it, this implies {@link #JANSI_ASYNC}: only
+     * the writer thread writes to the channel, other threads write through the {@link FileOutputStream}.
+     *
+     * @since 2.4.3
+     */
+    public static final String JANSI_CHANNEL = "jansi.channel";
+    /**
+     * The <code>jansi.ring</code> system property gives the path of a memory mapped file to which the
+     * console streams are written instead of the terminal, see {@link RingBuffer}.  Writing only
+     * copies the bytes to memory, and the last bytes written survive a crash of the JVM.  Escape
+     * sequences are kept unless a mode is configured, the file can be rendered with
+     * <code>java -jar jansi.jar --ring &lt;file&gt; [-f]</code>.
+     *
+     * @since 2.4.3
+     */
+    public static final String JANSI_RING = "jansi.ring";
+    /**
+     * The <code>jansi.ring.size</code> system property sets the capacity in bytes of the
+     * {@link #JANSI_RING} file, {@link RingBuffer#DEFAULT_SIZE} by default.
+     *
+     * @since 2.4.3
+     */
+    public static final String JANSI_RING_SIZE = "jansi.ring.size";
+    /**
+     * The <code>jansi.flush</code> system property selects when the console streams are flushed:
+     * {@value #JANSI_FLUSH_ALWAYS}, {@value #JANSI_FLUSH_NEWLINE}, {@value #JANSI_FLUSH_PERIODIC}
+     * or {@value #JANSI_FLUSH_MANUAL}.  By default, streams connected to a terminal are flushed
+     * after each write and redirected streams periodically.
+     *
+     * @see AnsiFlushPolicy
+     * @since 2.4.3
+     */
+    public static final String JANSI_FLUSH = "jansi.flush";
+    /**
+     * Overrides {@link #JANSI_FLUSH} for the standard output stream.
+     * @since 2.4.3
+     */
+    public static final String JANSI_OUT_FLUSH = "jansi.out.flush";
+    /**
+     * Overrides {@link #JANSI_FLUSH} for the standard error stream.
+     * @since 2.4.3
+     */
+    public static final String JANSI_ERR_FLUSH = "jansi.err.flush";
+    /**
+     * Flush after each write.
+     * @since 2.4.3
+     */
+    public static final String JANSI_FLUSH_ALWAYS = "always";
+    /**
+     * Flush when a line separator is written.
+     * @since 2.4.3
+     */
+    public static final String JANSI_FLUSH_NEWLINE = "newline";
+    /**
+     * Flush when the buffer is full or {@link #JANSI_FLUSH_INTERVAL} milliseconds after a write.
+     * @since 2.4.3
+     */
+    public static final String JANSI_FLUSH_PERIODIC = "periodic";
+    /**
+     * Flush only when the buffer is full or when the stream is explicitly flushed.
+     * @since 2.4.3
+     */
+    public static final String JANSI_FLUSH_MANUAL = "manual";
+    /**
+     * The <code>jansi.flush.interval</code> system property sets the delay in milliseconds after which
+     * a periodically flushed stream is flushed, {@link AnsiPrintStream#DEFAULT_FLUSH_INTERVAL} by default.
+     * @since 2.4.3
+     */
+    public static final String JANSI_FLUSH_INTERVAL = "jansi.flush.interval";
+    /**
+     * The <code>jansi.size.ttl</code> system property sets for how many milliseconds the size of the
+     * terminal is cached, 1000 by default.  It is ignored on Unix systems where the resizes
+     * are detected with the <code>SIGWINCH</code> signal.
+     * @since 2.4.3
+     */
+    public static final String JANSI_SIZE_TTL = "jansi.size.ttl";
+    /**
+     * If the <code>jansi.lines</code> system property is set to true, each thread assembles its lines
+     * before writing them whole to the console streams, so that concurrent threads do not wait on each
+     * other while printing nor interleave their escape sequences.  Text not terminated by a line separator
+     * is only written when the thread that printed it flushes the stream.
+     *
+     * @see AnsiLinePrintStream
+     * @since 2.4.3
+     */
+    public static final String JANSI_LINES = "jansi.lines";
+    /**
+     * If the <code>jansi.sgr.minimize</code> system property is set to true, the style of the terminal
+     * is tracked, and the SGR sequences written to a terminal which natively supports them are reduced
+     * to the changes actually needed before the next text.
+     *
+     * @see StyleAnsiProcessor
+     * @since 2.4.3
+     */
+    public static final String JANSI_SGR_MINIMIZE = "jansi.sgr.minimize";
+    /**
+     * If the <code>jansi.metrics</code> system property is set to true, the console streams count the
+     * bytes and escape sequences written to them, and publish the counts as the
+     * <code>org.fusesource.jansi:type=AnsiStatistics,name="out"</code> and <code>name="err"</code> MXBeans.
+     *
+     * @see AnsiStatistics
+     * @since 2.4.3
+     */
+    public static final String JANSI_METRICS = "jansi.metrics";
 
     /**
      * @deprecated this field will be made private in a future release, use {@link #sysOut()} instead
@@ -203,6 +342,42 @@ public class AnsiConsole {
         return w;
     }
 
+    /**
+     * Try to find the height of the console for this process.
+     * Both output and error streams will be checked to determine the height.
+     * A value of 0 is returned if the height can not be determined.
+     * @since 2.4.3
+     */
+    public static int getTerminalHeight() {
+        int h = out().getTerminalHeight();
+        if (h <= 0) {
+            h = err().getTerminalHeight();
+        }
+        return h;
+    }
+
+    /**
+     * Registers a listener notified when the console is resized.
+     * The listener is attached to the output stream, or to the error stream if the output
+     * stream has been redirected.
+     * @return false if resizes can not be detected
+     * @since 2.4.3
+     */
+    public static boolean addResizeListener(AnsiResizeListener listener) {
+        if (out().getTerminalWidth() > 0) {
+            return out().addResizeListener(listener);
+        }
+        return err().addResizeListener(listener);
+    }
+
+    /**
+     * @since 2.4.3
+     */
+    public static void removeResizeListener(AnsiResizeListener listener) {
+        out().removeResizeListener(listener);
+        err().removeResizeListener(listener);
+    }
+
     static final boolean IS_WINDOWS =
             System.getProperty("os.name").toLowerCase(Locale.ENGLISH).contains("win");
 
@@ -231,17 +406,78 @@ public class AnsiConsole {
     private static boolean initialized; // synchronized on AnsiConsole.class
     private static int installed; // synchronized on AnsiConsole.class
     private static int virtualProcessing; // synchronized on AnsiConsole.class
+    private static RingBuffer ring; // synchronized on AnsiConsole.class
+    private static boolean flushAtShutdown; // synchronized on AnsiConsole.class
 
     private AnsiConsole() {}
 
     private static AnsiPrintStream ansiStream(boolean stdout) {
-        FileDescriptor descriptor = stdout ? FileDescriptor.out : FileDescriptor.err;
-        final OutputStream out = new FastBufferedOutputStream(new FileOutputStream(descriptor));
-
         String enc = System.getProperty(stdout ? "stdout.encoding" : "stderr.encoding");
         if (enc == null) {
             enc = System.getProperty(stdout ? "sun.stdout.encoding" : "sun.stderr.encoding");
         }
+        Charset cs = Charset.defaultCharset();
+        if (enc != null) {
+            try {
+                cs = Charset.forName(enc);
+            } catch (UnsupportedCharsetException e) {
+            }
+        }
+        final Charset charset = cs;
+
+        // the terminal is only probed when the stream is first used
+        boolean async = getBoolean(JANSI_ASYNC) || getBoolean(JANSI_CHANNEL);
+        LazyAnsiStream lazy = new LazyAnsiStream(
+                l -> ansiOutputStream(stdout, charset, l),
+                async ? (stdout ? "jansi-async-out" : "jansi-async-err") : null,
+                AnsiConsole.class);
+        if (async) {
+            // the writer thread flushes as soon as it is idle, flushing the queue is a no-op
+            return newPrintStream(lazy, AnsiFlushPolicy.Always, cs.name());
+        }
+
+        AnsiFlushPolicy flushPolicy = null;
+        String jansiFlush =
+                System.getProperty(stdout ? JANSI_OUT_FLUSH : JANSI_ERR_FLUSH, System.getProperty(JANSI_FLUSH));
+        if (JANSI_FLUSH_ALWAYS.equals(jansiFlush)) {
+            flushPolicy = AnsiFlushPolicy.Always;
+        } else if (JANSI_FLUSH_NEWLINE.equals(jansiFlush)) {
+            flushPolicy = AnsiFlushPolicy.Newline;
+        } else if (JANSI_FLUSH_PERIODIC.equals(jansiFlush)) {
+            flushPolicy = AnsiFlushPolicy.Periodic;
+        } else if (JANSI_FLUSH_MANUAL.equals(jansiFlush)) {
+            flushPolicy = AnsiFlushPolicy.Manual;
+        }
+        AnsiPrintStream ps =
+                newPrintStream(lazy, flushPolicy != null ? flushPolicy : AnsiFlushPolicy.Always, cs.name());
+        ps.setFlushInterval(getInteger(JANSI_FLUSH_INTERVAL, (int) AnsiPrintStream.DEFAULT_FLUSH_INTERVAL));
+        if (flushPolicy == null && System.getProperty(JANSI_RING) == null && probesTerminal(stdout)) {
+            // redirected output is mostly read in bulk, avoid a write per line
+            lazy.setListener(ansi -> ps.setFlushPolicy(
+                    ansi.getType() == AnsiType.Redirected || ansi.getType() == AnsiType.Unsupported
+                            ? AnsiFlushPolicy.Periodic
+                            : AnsiFlushPolicy.Always));
+        }
+        return ps;
+    }
+
+    /**
+     * Probes the terminal and creates the AnsiOutputStream of a console stream.
+     */
+    private static AnsiOutputStream ansiOutputStream(boolean stdout, Charset cs, LazyAnsiStream lazy) {
+        FileDescriptor descriptor = stdout ? FileDescriptor.out : FileDescriptor.err;
+        int bufferSize = getInteger(JANSI_BUFFER_SIZE, FastBufferedOutputStream.DEFAULT_SIZE);
+        final RingBuffer ring = ringBuffer();
+        final OutputStream out;
+        if (ring != null) {
+            out = new FastBufferedOutputStream(new RingOutputStream(ring), bufferSize);
+        } else if (getBoolean(JANSI_CHANNEL)) {
+            // the channel is never handed to threads which could be interrupted
+            out = new ChannelOutputStream(
+                    new ConfinedChannel(new FileOutputStream(descriptor), lazy::isWriterThread), bufferSize);
+        } else {
+            out = new FastBufferedOutputStream(new FileOutputStream(descriptor), bufferSize);
+        }
 
         final boolean isatty;
         boolean isAtty;
@@ -249,24 +485,38 @@ public class AnsiConsole {
         // Do not use the CLibrary.STDOUT_FILENO to avoid errors in case
         // the library can not be loaded on unsupported platforms
         final int fd = stdout ? STDOUT_FILENO : STDERR_FILENO;
-        try {
-            // If we can detect that stdout is not a tty.. then setup
-            // to strip the ANSI sequences..
-            isAtty = isatty(fd) != 0;
-            String term = System.getenv("TERM");
-            String emacs = System.getenv("INSIDE_EMACS");
-            if (isAtty && "dumb".equals(term) && emacs != null && !emacs.contains("comint")) {
-                isAtty = false;
-            }
+        final AnsiMode configuredMode = configuredMode(stdout);
+        if (ring != null) {
+            // the ring is rendered later, possibly on another terminal
+            isAtty = false;
             withException = false;
-        } catch (Throwable ignore) {
-            // These errors happen if the JNI lib is not available for your platform.
-            // But since we are on ANSI friendly platform, assume the user is on the console.
+        } else if (!probesTerminal(stdout)) {
+            // the output does not depend on the terminal, do not even load the native library:
+            // nothing is known about the terminal, so the stream is typed Unsupported
             isAtty = false;
             withException = true;
-        }
+        } else
+            try {
+                // If we can detect that stdout is not a tty.. then setup
+                // to strip the ANSI sequences..
+                Object event = JansiEvents.beginNativeCall();
+                isAtty = isatty(fd) != 0;
+                JansiEvents.endNativeCall(event, "isatty");
+                String term = System.getenv("TERM");
+                String emacs = System.getenv("INSIDE_EMACS");
+                if (isAtty && "dumb".equals(term) && emacs != null && !emacs.contains("comint")) {
+                    isAtty = false;
+                }
+                withException = false;
+            } catch (Throwable ignore) {
+                // These errors happen if the JNI lib is not available for your platform.
+                // But since we are on ANSI friendly platform, assume the user is on the console.
+                isAtty = false;
+                withException = true;
+            }
         isatty = isAtty;
 
+        final long sizeTtl = getInteger(JANSI_SIZE_TTL, 1000);
         final AnsiOutputStream.WidthSupplier width;
         final AnsiProcessor processor;
         final AnsiType type;
@@ -281,14 +531,15 @@ public class AnsiConsole {
             final long console = GetStdHandle(stdout ? STD_OUTPUT_HANDLE : STD_ERROR_HANDLE);
             final int[] mode = new int[1];
             final boolean isConsole = GetConsoleMode(console, mode) != 0;
-            final AnsiOutputStream.WidthSupplier kernel32Width = new AnsiOutputStream.WidthSupplier() {
-                @Override
-                public int getTerminalWidth() {
-                    CONSOLE_SCREEN_BUFFER_INFO info = new CONSOLE_SCREEN_BUFFER_INFO();
-                    GetConsoleScreenBufferInfo(console, info);
-                    return info.windowWidth();
-                }
-            };
+            final AnsiOutputStream.WidthSupplier kernel32Width = new CachedWidthSupplier(
+                    () -> {
+                        CONSOLE_SCREEN_BUFFER_INFO info = new CONSOLE_SCREEN_BUFFER_INFO();
+                        Object event = JansiEvents.beginNativeCall();
+                        GetConsoleScreenBufferInfo(console, info);
+                        JansiEvents.endNativeCall(event, "GetConsoleScreenBufferInfo");
+                        return new int[] {info.windowWidth(), info.windowHeight()};
+                    },
+                    sizeTtl);
 
             if (isConsole && SetConsoleMode(console, mode[0] | ENABLE_VIRTUAL_TERMINAL_PROCESSING) != 0) {
                 SetConsoleMode(console, mode[0]); // set it back for now, but we know it works
@@ -316,7 +567,8 @@ public class AnsiConsole {
                 MingwSupport mingw = new MingwSupport();
                 String name = mingw.getConsoleName(stdout);
                 if (name != null && !name.isEmpty()) {
-                    width = () -> mingw.getTerminalWidth(name);
+                    // each query runs stty.exe, keep the result for a while
+                    width = new CachedWidthSupplier(() -> new int[] {mingw.getTerminalWidth(name), 0}, sizeTtl);
                 } else {
                     width = () -> -1;
                 }
@@ -348,47 +600,28 @@ public class AnsiConsole {
             processor = null;
             type = AnsiType.Native;
             installer = uninstaller = null;
-            width = new AnsiOutputStream.WidthSupplier() {
-                @Override
-                public int getTerminalWidth() {
-                    WinSize sz = new WinSize();
-                    ioctl(fd, CLibrary.TIOCGWINSZ, sz);
-                    return sz.ws_col;
-                }
-            };
-        }
-
-        AnsiMode mode;
-
-        // If the jansi.mode property is set, use it
-        String jansiMode = System.getProperty(stdout ? JANSI_OUT_MODE : JANSI_ERR_MODE, System.getProperty(JANSI_MODE));
-        if (JANSI_MODE_FORCE.equals(jansiMode)) {
-            mode = AnsiMode.Force;
-        } else if (JANSI_MODE_STRIP.equals(jansiMode)) {
-            mode = AnsiMode.Strip;
-        } else if (jansiMode != null) {
-            mode = isatty ? AnsiMode.Default : AnsiMode.Strip;
-        }
-
-        // If the jansi.passthrough property is set, then don't interpret
-        // any of the ansi sequences.
-        else if (getBoolean(JANSI_PASSTHROUGH)) {
-            mode = AnsiMode.Force;
-        }
-
-        // If the jansi.strip property is set, then we just strip the
-        // the ansi escapes.
-        else if (getBoolean(JANSI_STRIP)) {
-            mode = AnsiMode.Strip;
+            CachedWidthSupplier size = new CachedWidthSupplier(
+                    () -> {
+                        try {
+                            WinSize sz = new WinSize();
+                            Object event = JansiEvents.beginNativeCall();
+                            ioctl(fd, CLibrary.TIOCGWINSZ, sz);
+                            JansiEvents.endNativeCall(event, "ioctl");
+                            return new int[] {sz.ws_col, sz.ws_row};
+                        } catch (Throwable t) {
+                            // the native library can not be loaded
+                            return new int[] {0, 0};
+                        }
+                    },
+                    sizeTtl);
+            // only query the size again when the terminal is resized, if possible
+            size.watchResize();
+            width = size;
         }
 
-        // If the jansi.force property is set, then we force to output
-        // the ansi escapes for piping it into ansi color aware commands (e.g. less -r)
-        else if (getBoolean(JANSI_FORCE)) {
-            mode = AnsiMode.Force;
-        } else {
-            mode = isatty ? AnsiMode.Default : AnsiMode.Strip;
-        }
+        AnsiMode mode = configuredMode != null
+                ? configuredMode
+                : ring != null ? AnsiMode.Force : isatty ? AnsiMode.Default : AnsiMode.Strip;
 
         AnsiColors colors;
 
@@ -430,27 +663,113 @@ public class AnsiConsole {
         // when the stream is closed
         boolean resetAtUninstall = type != AnsiType.Unsupported && !getBoolean(JANSI_NORESET);
 
-        Charset cs = Charset.defaultCharset();
-        if (enc != null) {
+        AnsiOutputStream ansi;
+        if (processor == null && isatty && getBoolean(JANSI_SGR_MINIMIZE)) {
+            StyleAnsiProcessor style = new StyleAnsiProcessor(out, colors, cs);
+            ansi = new AnsiOutputStream(
+                    style.getTextStream(),
+                    width,
+                    mode,
+                    style,
+                    type,
+                    colors,
+                    cs,
+                    installer,
+                    uninstaller,
+                    resetAtUninstall);
+        } else {
+            ansi = new AnsiOutputStream(
+                    out, width, mode, processor, type, colors, cs, installer, uninstaller, resetAtUninstall);
+        }
+        if (getBoolean(JANSI_METRICS)) {
+            AnsiStatistics statistics = new AnsiStatistics();
+            // the counts are still available from the stream if the MXBean can not be registered
+            statistics.tryRegister(stdout ? "out" : "err");
+            ansi.setMetrics(statistics);
+        }
+        return ansi;
+    }
+
+    /**
+     * @return the ring shared by the console streams, or null if the {@link #JANSI_RING} property
+     * is not set or the file can not be mapped
+     */
+    private static synchronized RingBuffer ringBuffer() {
+        String file = System.getProperty(JANSI_RING);
+        if (ring == null && file != null) {
             try {
-                cs = Charset.forName(enc);
-            } catch (UnsupportedCharsetException e) {
+                ring = RingBuffer.create(Paths.get(file), getInteger(JANSI_RING_SIZE, RingBuffer.DEFAULT_SIZE));
+            } catch (IOException | RuntimeException e) {
+                // fall back to the terminal
             }
         }
-        return newPrintStream(
-                new AnsiOutputStream(
-                        out, width, mode, processor, type, colors, cs, installer, uninstaller, resetAtUninstall),
-                cs.name());
+        return ring;
+    }
+
+    /**
+     * @return false if the escape sequences are stripped or passed through whatever the terminal,
+     * which then needs not be probed
+     */
+    private static boolean probesTerminal(boolean stdout) {
+        AnsiMode mode = configuredMode(stdout);
+        return mode != AnsiMode.Strip && !(mode == AnsiMode.Force && getBoolean(JANSI_PASSTHROUGH));
+    }
+
+    /**
+     * @return the mode set by the system properties or the environment, or null if it depends on the terminal
+     */
+    private static AnsiMode configuredMode(boolean stdout) {
+        // If the jansi.mode property is set, use it
+        String jansiMode = System.getProperty(stdout ? JANSI_OUT_MODE : JANSI_ERR_MODE, System.getProperty(JANSI_MODE));
+        if (JANSI_MODE_FORCE.equals(jansiMode)) {
+            return AnsiMode.Force;
+        } else if (JANSI_MODE_STRIP.equals(jansiMode)) {
+            return AnsiMode.Strip;
+        } else if (jansiMode != null) {
+            return null;
+        }
+
+        // If the jansi.passthrough property is set, then don't interpret
+        // any of the ansi sequences.
+        else if (getBoolean(JANSI_PASSTHROUGH)) {
+            return AnsiMode.Force;
+        }
+
+        // If the jansi.strip property is set, then we just strip the
+        // the ansi escapes.
+        else if (getBoolean(JANSI_STRIP)) {
+            return AnsiMode.Strip;
+        }
+
+        // If the jansi.force property is set, then we force to output
+        // the ansi escapes for piping it into ansi color aware commands (e.g. less -r)
+        else if (getBoolean(JANSI_FORCE)) {
+            return AnsiMode.Force;
+        }
+
+        // Colors are disabled by the NO_COLOR convention, see https://no-color.org,
+        // and dumb terminals do not interpret escape sequences, except for the Emacs shell
+        String noColor = System.getenv("NO_COLOR");
+        String term = System.getenv("TERM");
+        String emacs = System.getenv("INSIDE_EMACS");
+        if (noColor != null && !noColor.isEmpty()
+                || "dumb".equals(term) && (emacs == null || !emacs.contains("comint"))) {
+            return AnsiMode.Strip;
+        }
+        return null;
     }
 
-    private static AnsiPrintStream newPrintStream(AnsiOutputStream out, String enc) {
+    private static AnsiPrintStream newPrintStream(LazyAnsiStream out, AnsiFlushPolicy flushPolicy, String enc) {
+        boolean lines = getBoolean(JANSI_LINES);
         if (enc != null) {
             try {
-                return new AnsiPrintStream(out, true, enc);
+                return lines
+                        ? new AnsiLinePrintStream(out, flushPolicy, enc)
+                        : new AnsiPrintStream(out, flushPolicy, enc);
             } catch (UnsupportedEncodingException e) {
             }
         }
-        return new AnsiPrintStream(out, true);
+        return lines ? new AnsiLinePrintStream(out, flushPolicy) : new AnsiPrintStream(out, flushPolicy);
     }
 
     static boolean getBoolean(String name) {
@@ -463,6 +782,20 @@ public class AnsiConsole {
         return result;
     }
 
+    static int getInteger(String name, int defaultValue) {
+        try {
+            String val = System.getProperty(name);
+            if (val != null) {
+                int result = Integer.parseInt(val.trim());
+                if (result > 0) {
+                    return result;
+                }
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        return defaultValue;
+    }
+
     /**
      * If the standard out natively supports ANSI escape codes, then this just
      * returns System.out, otherwise it will provide an ANSI aware PrintStream
@@ -513,6 +846,7 @@ public class AnsiConsole {
      * @see #systemUninstall()
      */
     public static synchronized void systemInstall() {
+        Object event = JansiEvents.beginInstall();
         if (installed == 0) {
             initStreams();
             try {
@@ -525,6 +859,7 @@ public class AnsiConsole {
             System.setErr(err);
         }
         installed++;
+        JansiEvents.endInstall(event, true, installed);
     }
 
     /**
@@ -540,11 +875,15 @@ public class AnsiConsole {
      * it is actually uninstalled.
      */
     public static synchronized void systemUninstall() {
+        Object event = JansiEvents.beginInstall();
         installed--;
         if (installed == 0) {
             try {
                 ((AnsiPrintStream) out).uninstall();
                 ((AnsiPrintStream) err).uninstall();
+                // the streams are created again by the next installation
+                ((AnsiPrintStream) out).release();
+                ((AnsiPrintStream) err).release();
             } catch (IOException e) {
                 throw new IOError(e);
             }
@@ -552,6 +891,7 @@ public class AnsiConsole {
             System.setOut(system_out);
             System.setErr(system_err);
         }
+        JansiEvents.endInstall(event, false, installed);
     }
 
     /**
@@ -562,6 +902,26 @@ public class AnsiConsole {
             out = ansiStream(true);
             err = ansiStream(false);
             initialized = true;
+            if (!flushAtShutdown) {
+                // a single hook for all the streams created by the installation cycles
+                Runtime.getRuntime().addShutdownHook(new Thread(AnsiConsole::flushStreams, "jansi-flush-shutdown"));
+                flushAtShutdown = true;
+            }
+        }
+    }
+
+    /**
+     * Flushes the current console streams, without locking AnsiConsole.class
+     * which may be held by a thread blocked by the shutdown.
+     */
+    private static void flushStreams() {
+        PrintStream o = out;
+        PrintStream e = err;
+        if (o != null) {
+            o.flush();
+        }
+        if (e != null) {
+            e.flush();
         }
     }
 }
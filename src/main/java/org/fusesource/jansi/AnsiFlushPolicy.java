@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2009-2023 the original author(s).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.jansi;
+
+/**
+ * When an {@link AnsiPrintStream} flushes the bytes written to it.
+ *
+ * @since 2.4.3
+ */
+public enum AnsiFlushPolicy {
+    Always("Flush after each write"),
+    Newline("Flush when a line separator is written"),
+    Periodic("Flush when the buffer is full or shortly after a write"),
+    Manual("Flush when the buffer is full or when explicitly flushed");
+
+    private final String description;
+
+    AnsiFlushPolicy(String description) {
+        this.description = description;
+    }
+
+    String getDescription() {
+        return description;
+    }
+}
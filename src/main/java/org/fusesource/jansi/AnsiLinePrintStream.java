@@ -0,0 +1,508 @@
+/*
+ * Copyright (C) 2009-2023 the original author(s).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.jansi;
+
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.fusesource.jansi.io.AnsiOutputStream;
+import org.fusesource.jansi.io.AnsiScanner;
+
+/**
+ * An AnsiPrintStream in which each thread assembles its own lines.
+ * <p>
+ * The text printed by a thread, including its escape sequences, is encoded into a buffer
+ * owned by that thread and only written to the underlying stream once a line is complete,
+ * so that concurrent threads neither wait on each other while formatting their output nor
+ * interleave partial lines or partial escape sequences.  The lock of the stream is only held
+ * while writing complete lines.
+ * <p>
+ * Text not followed by a line separator is written when the thread which printed it calls
+ * {@link #flush()}, when it has been left incomplete for the {@linkplain #getFlushInterval() flush
+ * interval}, or when the stream is closed.  Only the bytes up to the end of the last complete
+ * escape sequence or character are written then, so that the lines of other threads are never
+ * written in the middle of an escape sequence: the rest is written once complete, when the
+ * stream is closed, or when the line exceeds {@value #MAX_LINE_LENGTH} bytes.
+ *
+ * @since 2.4.3
+ */
+public class AnsiLinePrintStream extends AnsiPrintStream {
+
+    /**
+     * The length in bytes after which an incomplete line is written anyway.
+     */
+    public static final int MAX_LINE_LENGTH = 64 * 1024;
+
+    // what a line publishes
+    private static final int COMPLETE_LINES = 0;
+    private static final int COMPLETE_SEQUENCES = 1;
+    private static final int ALL = 2;
+
+    private final Charset charset;
+    private final boolean ascii;
+    private final ThreadLocal<Line> lines = ThreadLocal.withInitial(Line::new);
+    private final Set<Line> pending = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean publishScheduled = new AtomicBoolean();
+
+    public AnsiLinePrintStream(AnsiOutputStream ansi, OutputStream out, AnsiFlushPolicy flushPolicy) {
+        super(ansi, out, flushPolicy);
+        this.charset = Charset.defaultCharset();
+        this.ascii = isAsciiCompatible(charset);
+    }
+
+    public AnsiLinePrintStream(AnsiOutputStream ansi, OutputStream out, AnsiFlushPolicy flushPolicy, String encoding)
+            throws UnsupportedEncodingException {
+        super(ansi, out, flushPolicy, encoding);
+        try {
+            this.charset = Charset.forName(encoding);
+        } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+            throw new UnsupportedEncodingException(encoding);
+        }
+        this.ascii = isAsciiCompatible(charset);
+    }
+
+    AnsiLinePrintStream(LazyAnsiStream lazy, AnsiFlushPolicy flushPolicy) {
+        super(lazy, flushPolicy);
+        this.charset = Charset.defaultCharset();
+        this.ascii = isAsciiCompatible(charset);
+    }
+
+    AnsiLinePrintStream(LazyAnsiStream lazy, AnsiFlushPolicy flushPolicy, String encoding)
+            throws UnsupportedEncodingException {
+        super(lazy, flushPolicy, encoding);
+        try {
+            this.charset = Charset.forName(encoding);
+        } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+            throw new UnsupportedEncodingException(encoding);
+        }
+        this.ascii = isAsciiCompatible(charset);
+    }
+
+    /**
+     * @return true if the charset encodes all ascii characters as single bytes of the same value
+     */
+    private static boolean isAsciiCompatible(Charset charset) {
+        if (!charset.canEncode()) {
+            return false;
+        }
+        byte[] ascii = new byte[0x80];
+        for (int i = 0; i < ascii.length; i++) {
+            ascii[i] = (byte) i;
+        }
+        return Arrays.equals(ascii, new String(ascii, StandardCharsets.ISO_8859_1).getBytes(charset));
+    }
+
+    /**
+     * The pending bytes of a thread.  The buffer is guarded by the line itself, as
+     * it is published by other threads when it is stale or the stream is closed.  Publishing takes the
+     * lock of the stream before the one of the line, so the owner never holds the lock
+     * of its line while writing to the stream.
+     */
+    private final class Line {
+        private final CharsetEncoder encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final AnsiScanner scanner = new AnsiScanner(charset);
+        private byte[] buf = new byte[256];
+        private int count;
+        // the bytes scanned, and the ends of the last complete sequence and of the last complete line
+        private int scanned;
+        private int sequenceEnd;
+        private int lineEnd;
+        private boolean registered;
+        private volatile long since;
+
+        void append(int b) {
+            boolean complete;
+            synchronized (this) {
+                ensureCapacity(1);
+                buf[count++] = (byte) b;
+                complete = b == '\n' || count >= MAX_LINE_LENGTH;
+                register();
+            }
+            if (complete) {
+                publish(COMPLETE_LINES);
+            }
+        }
+
+        void append(byte[] b, int off, int len) {
+            boolean complete;
+            synchronized (this) {
+                ensureCapacity(len);
+                System.arraycopy(b, off, buf, count, len);
+                count += len;
+                complete = hasNewline(count - len) || count >= MAX_LINE_LENGTH;
+                register();
+            }
+            if (complete) {
+                publish(COMPLETE_LINES);
+            }
+        }
+
+        void append(String s) {
+            boolean complete;
+            synchronized (this) {
+                int start = count;
+                int length = s.length();
+                ensureCapacity(length);
+                int i = 0;
+                if (ascii) {
+                    // most console output is ascii, which the charset encodes as is
+                    while (i < length) {
+                        char c = s.charAt(i);
+                        if (c >= 0x80) {
+                            break;
+                        }
+                        buf[count++] = (byte) c;
+                        i++;
+                    }
+                }
+                if (i < length) {
+                    encode(CharBuffer.wrap(s, i, length));
+                }
+                complete = hasNewline(start) || count >= MAX_LINE_LENGTH;
+                register();
+            }
+            if (complete) {
+                publish(COMPLETE_LINES);
+            }
+        }
+
+        private void encode(CharBuffer in) {
+            encoder.reset();
+            ByteBuffer out = ByteBuffer.wrap(buf, count, buf.length - count);
+            while (encoder.encode(in, out, true).isOverflow()) {
+                out = grow(out, in.remaining());
+            }
+            while (encoder.flush(out).isOverflow()) {
+                out = grow(out, 0);
+            }
+            count = out.position();
+        }
+
+        private ByteBuffer grow(ByteBuffer out, int remaining) {
+            count = out.position();
+            ensureCapacity(Math.max(16, remaining * 2));
+            return ByteBuffer.wrap(buf, count, buf.length - count);
+        }
+
+        private boolean hasNewline(int from) {
+            for (int i = count - 1; i >= from; i--) {
+                if (buf[i] == '\n') {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Keeps track of the lines holding an incomplete line, so that they are published by
+         * {@link #flush()} or after the flush interval, even if their thread is gone.
+         */
+        private void register() {
+            if (count > 0 && !registered) {
+                registered = true;
+                since = System.nanoTime();
+                pending.add(this);
+                schedulePublish();
+            }
+        }
+
+        /**
+         * Writes the complete lines, the complete escape sequences and characters, or all the pending bytes.
+         * @param what {@link #COMPLETE_LINES}, {@link #COMPLETE_SEQUENCES} or {@link #ALL}
+         * @return true if any byte has been written
+         */
+        boolean publish(int what) {
+            synchronized (AnsiLinePrintStream.this) {
+                synchronized (this) {
+                    scan();
+                    int end = what == ALL ? count : what == COMPLETE_SEQUENCES ? sequenceEnd : lineEnd;
+                    if (count >= MAX_LINE_LENGTH) {
+                        // do not buffer a line forever, even if it ends with a partial sequence
+                        end = sequenceEnd > 0 ? Math.max(end, sequenceEnd) : count;
+                    }
+                    if (end > 0) {
+                        write(buf, end);
+                        System.arraycopy(buf, end, buf, 0, count - end);
+                        count -= end;
+                        scanned -= end;
+                        sequenceEnd = Math.max(0, sequenceEnd - end);
+                        lineEnd = Math.max(0, lineEnd - end);
+                    }
+                    if (count == 0 && registered) {
+                        registered = false;
+                        pending.remove(this);
+                    } else if (end > 0) {
+                        since = System.nanoTime();
+                    }
+                    return end > 0;
+                }
+            }
+        }
+
+        /**
+         * Follows the parser of the stream through the bytes appended since the last call.
+         */
+        private void scan() {
+            for (; scanned < count; scanned++) {
+                byte b = buf[scanned];
+                if (scanner.next(b)) {
+                    sequenceEnd = scanned + 1;
+                    if (b == '\n') {
+                        lineEnd = sequenceEnd;
+                    }
+                }
+            }
+        }
+
+        private void ensureCapacity(int len) {
+            if (count + len > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, count + len));
+            }
+        }
+    }
+
+    private void write(byte[] buf, int len) {
+        super.write(buf, 0, len);
+    }
+
+    private void schedulePublish() {
+        if (publishScheduled.compareAndSet(false, true)) {
+            schedule(
+                    () -> {
+                        publishScheduled.set(false);
+                        if (publishStale()) {
+                            super.flush();
+                        }
+                    },
+                    getFlushInterval());
+        }
+    }
+
+    /**
+     * Publishes the lines which have been incomplete for the flush interval.
+     * @return true if any line has been published
+     */
+    private boolean publishStale() {
+        long now = System.nanoTime();
+        long interval = TimeUnit.MILLISECONDS.toNanos(getFlushInterval());
+        boolean published = false;
+        for (Line line : pending) {
+            // the thread of the line may still complete its last escape sequence
+            if (now - line.since >= interval && line.publish(COMPLETE_SEQUENCES)) {
+                published = true;
+            }
+        }
+        if (!pending.isEmpty()) {
+            schedulePublish();
+        }
+        return published;
+    }
+
+    /**
+     * Publishes the lines of all threads, ending with the partial escape sequences, if any,
+     * so that they do not swallow the text of other lines.
+     */
+    private void publishPending() {
+        for (Line line : pending) {
+            line.publish(COMPLETE_SEQUENCES);
+        }
+        for (Line line : pending) {
+            line.publish(ALL);
+        }
+    }
+
+    @Override
+    public void write(int b) {
+        lines.get().append(b);
+    }
+
+    @Override
+    public void write(byte[] buf, int off, int len) {
+        lines.get().append(buf, off, len);
+    }
+
+    /**
+     * Writes the incomplete line of the current thread, up to its last complete escape sequence
+     * or character, and flushes the stream.  The lines of the other threads are written when
+     * they complete them or once they are stale.
+     */
+    @Override
+    public void flush() {
+        lines.get().publish(COMPLETE_SEQUENCES);
+        super.flush();
+    }
+
+    /**
+     * Writes the incomplete lines of all threads and closes the stream.
+     */
+    @Override
+    public void close() {
+        publishPending();
+        super.close();
+    }
+
+    @Override
+    public void print(boolean b) {
+        print(String.valueOf(b));
+    }
+
+    @Override
+    public void print(char c) {
+        print(String.valueOf(c));
+    }
+
+    @Override
+    public void print(int i) {
+        print(String.valueOf(i));
+    }
+
+    @Override
+    public void print(long l) {
+        print(String.valueOf(l));
+    }
+
+    @Override
+    public void print(float f) {
+        print(String.valueOf(f));
+    }
+
+    @Override
+    public void print(double d) {
+        print(String.valueOf(d));
+    }
+
+    @Override
+    public void print(char[] s) {
+        print(new String(s));
+    }
+
+    @Override
+    public void print(String s) {
+        lines.get().append(String.valueOf(s));
+    }
+
+    @Override
+    public void print(Object obj) {
+        print(String.valueOf(obj));
+    }
+
+    @Override
+    public void println() {
+        print(System.lineSeparator());
+    }
+
+    @Override
+    public void println(boolean x) {
+        println(String.valueOf(x));
+    }
+
+    @Override
+    public void println(char x) {
+        println(String.valueOf(x));
+    }
+
+    @Override
+    public void println(int x) {
+        println(String.valueOf(x));
+    }
+
+    @Override
+    public void println(long x) {
+        println(String.valueOf(x));
+    }
+
+    @Override
+    public void println(float x) {
+        println(String.valueOf(x));
+    }
+
+    @Override
+    public void println(double x) {
+        println(String.valueOf(x));
+    }
+
+    @Override
+    public void println(char[] x) {
+        println(new String(x));
+    }
+
+    @Override
+    public void println(String x) {
+        // a single append, so that the line is written at once
+        lines.get().append(String.valueOf(x) + System.lineSeparator());
+    }
+
+    @Override
+    public void println(Object x) {
+        println(String.valueOf(x));
+    }
+
+    @Override
+    public AnsiLinePrintStream format(String format, Object... args) {
+        print(String.format(format, args));
+        return this;
+    }
+
+    @Override
+    public AnsiLinePrintStream format(Locale l, String format, Object... args) {
+        print(String.format(l, format, args));
+        return this;
+    }
+
+    @Override
+    public AnsiLinePrintStream printf(String format, Object... args) {
+        return format(format, args);
+    }
+
+    @Override
+    public AnsiLinePrintStream printf(Locale l, String format, Object... args) {
+        return format(l, format, args);
+    }
+
+    @Override
+    public AnsiLinePrintStream append(CharSequence csq) {
+        print(String.valueOf(csq));
+        return this;
+    }
+
+    @Override
+    public AnsiLinePrintStream append(CharSequence csq, int start, int end) {
+        print(String.valueOf(csq == null ? "null" : csq).substring(start, end));
+        return this;
+    }
+
+    @Override
+    public AnsiLinePrintStream append(char c) {
+        print(c);
+        return this;
+    }
+}
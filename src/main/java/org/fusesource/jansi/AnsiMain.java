@@ -30,6 +30,7 @@ import org.fusesource.jansi.internal.CLibrary;
 import org.fusesource.jansi.internal.JansiLoader;
 import org.fusesource.jansi.internal.Kernel32;
 import org.fusesource.jansi.internal.MingwSupport;
+import org.fusesource.jansi.io.RingBuffer;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.fusesource.jansi.Ansi.ansi;
@@ -50,10 +51,21 @@ import static org.fusesource.jansi.internal.Kernel32.GetConsoleScreenBufferInfo;
  * <code>jansi.force</code> system property, or if you redirect output to a file.
  * <p>If you have a specific situation that is not covered, please report precise conditions to reproduce
  * the issue and ideas on how to detect precisely the affected situation.
+ * <p>With <code>--ring &lt;file&gt; [-f]</code> arguments, the content of a file written with the
+ * <code>jansi.ring</code> system property is rendered instead, and followed with <code>-f</code>.
  * @see AnsiConsole
  */
 public class AnsiMain {
     public static void main(String... args) throws IOException {
+        if (args.length > 0 && "--ring".equals(args[0])) {
+            if (args.length < 2) {
+                System.err.println("Usage: --ring <file> [-f]");
+                return;
+            }
+            renderRing(new File(args[1]), args.length > 2 && "-f".equals(args[2]));
+            return;
+        }
+
         System.out.println("Jansi " + getJansiVersion());
 
         System.out.println();
@@ -147,6 +159,10 @@ public class AnsiMain {
         for (AnsiMode mode : AnsiMode.values()) {
             System.out.println("  - " + mode + ": " + mode.getDescription());
         }
+        System.out.println("Flush policies description:");
+        for (AnsiFlushPolicy flushPolicy : AnsiFlushPolicy.values()) {
+            System.out.println("  - " + flushPolicy + ": " + flushPolicy.getDescription());
+        }
 
         try {
             System.out.println();
@@ -321,6 +337,56 @@ public class AnsiMain {
         }
     }
 
+    /**
+     * Renders the content of a ring file, starting with the oldest complete line,
+     * and keeps rendering the new bytes if <code>follow</code> is set.
+     */
+    private static void renderRing(File f, boolean follow) throws IOException {
+        AnsiConsole.systemInstall();
+        try (RingBuffer ring = RingBuffer.open(f.toPath())) {
+            byte[] buf = new byte[64 * 1024];
+            long position = ring.start();
+            boolean partial = position > 0;
+            while (true) {
+                int l = ring.read(position, buf, 0, buf.length);
+                if (l < 0 || ring.position() < position) {
+                    // the bytes have been overwritten, or the ring has been reinitialized
+                    position = ring.start();
+                    partial = position > 0;
+                    continue;
+                }
+                if (l == 0) {
+                    if (!follow) {
+                        break;
+                    }
+                    System.out.flush();
+                    try {
+                        Thread.sleep(100);
+                    } catch (InterruptedException e) {
+                        break;
+                    }
+                    continue;
+                }
+                int off = 0;
+                if (partial) {
+                    // skip the beginning of the oldest line, which may be an incomplete escape sequence
+                    while (off < l && buf[off] != '\n') {
+                        off++;
+                    }
+                    if (off < l) {
+                        off++;
+                        partial = false;
+                    }
+                }
+                System.out.write(buf, off, l - off);
+                position += l;
+            }
+        } finally {
+            System.out.flush();
+            AnsiConsole.systemUninstall();
+        }
+    }
+
     private static void writeFileContent(File f) throws IOException {
         InputStream in = new FileInputStream(f);
         try {
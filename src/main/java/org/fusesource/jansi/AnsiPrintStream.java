@@ -16,10 +16,16 @@
 package org.fusesource.jansi;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintStream;
 import java.io.UnsupportedEncodingException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+import org.fusesource.jansi.io.AnsiMetrics;
 import org.fusesource.jansi.io.AnsiOutputStream;
+import org.fusesource.jansi.io.AsyncOutputStream;
 
 /**
  * Simple PrintStream holding an AnsiOutputStream.
@@ -27,17 +33,175 @@ import org.fusesource.jansi.io.AnsiOutputStream;
  */
 public class AnsiPrintStream extends PrintStream {
 
+    /**
+     * The default delay in milliseconds after which a {@link AnsiFlushPolicy#Periodic} stream is flushed.
+     * @since 2.4.3
+     */
+    public static final long DEFAULT_FLUSH_INTERVAL = 100;
+
+    private final AnsiOutputStream ansi;
+    private final LazyAnsiStream lazy;
+    private volatile AnsiFlushPolicy flushPolicy;
+    private volatile long flushInterval = DEFAULT_FLUSH_INTERVAL;
+    private boolean flushScheduled; // synchronized on this
+
     public AnsiPrintStream(AnsiOutputStream out, boolean autoFlush) {
-        super(out, autoFlush);
+        this(out, out, autoFlush ? AnsiFlushPolicy.Always : AnsiFlushPolicy.Manual);
     }
 
     public AnsiPrintStream(AnsiOutputStream out, boolean autoFlush, String encoding)
             throws UnsupportedEncodingException {
-        super(out, autoFlush, encoding);
+        this(out, out, autoFlush ? AnsiFlushPolicy.Always : AnsiFlushPolicy.Manual, encoding);
+    }
+
+    /**
+     * Creates a stream writing to <code>out</code>, which eventually feeds <code>ansi</code>,
+     * for example through an {@link AsyncOutputStream}.
+     * @since 2.4.3
+     */
+    public AnsiPrintStream(AnsiOutputStream ansi, OutputStream out, AnsiFlushPolicy flushPolicy) {
+        super(out, false);
+        this.ansi = ansi;
+        this.lazy = null;
+        this.flushPolicy = flushPolicy;
+    }
+
+    /**
+     * Creates a stream writing to <code>out</code>, which eventually feeds <code>ansi</code>,
+     * for example through an {@link AsyncOutputStream}.
+     * @since 2.4.3
+     */
+    public AnsiPrintStream(AnsiOutputStream ansi, OutputStream out, AnsiFlushPolicy flushPolicy, String encoding)
+            throws UnsupportedEncodingException {
+        super(out, false, encoding);
+        this.ansi = ansi;
+        this.lazy = null;
+        this.flushPolicy = flushPolicy;
+    }
+
+    /**
+     * Creates a stream whose AnsiOutputStream is only created when it is first used.
+     */
+    AnsiPrintStream(LazyAnsiStream lazy, AnsiFlushPolicy flushPolicy) {
+        super(lazy, false);
+        this.ansi = null;
+        this.lazy = lazy;
+        this.flushPolicy = flushPolicy;
+    }
+
+    AnsiPrintStream(LazyAnsiStream lazy, AnsiFlushPolicy flushPolicy, String encoding)
+            throws UnsupportedEncodingException {
+        super(lazy, false, encoding);
+        this.ansi = null;
+        this.lazy = lazy;
+        this.flushPolicy = flushPolicy;
     }
 
     protected AnsiOutputStream getOut() {
-        return (AnsiOutputStream) out;
+        return out == null ? null : lazy != null ? lazy.ansi() : ansi;
+    }
+
+    /**
+     * Waits for the bytes queued by an asynchronous stream to reach the
+     * AnsiOutputStream, so that it can be safely reconfigured.
+     */
+    private void drain() throws IOException {
+        OutputStream target = lazy != null ? lazy.resolved() : out;
+        if (target instanceof AsyncOutputStream) {
+            ((AsyncOutputStream) target).drain();
+        }
+    }
+
+    /**
+     * @since 2.4.3
+     */
+    public AnsiFlushPolicy getFlushPolicy() {
+        return flushPolicy;
+    }
+
+    /**
+     * @since 2.4.3
+     */
+    public void setFlushPolicy(AnsiFlushPolicy flushPolicy) {
+        this.flushPolicy = flushPolicy;
+    }
+
+    /**
+     * @return the delay in milliseconds after which a {@link AnsiFlushPolicy#Periodic} stream is flushed
+     * @since 2.4.3
+     */
+    public long getFlushInterval() {
+        return flushInterval;
+    }
+
+    /**
+     * @since 2.4.3
+     */
+    public void setFlushInterval(long flushInterval) {
+        if (flushInterval <= 0) {
+            throw new IllegalArgumentException("flushInterval must be positive");
+        }
+        this.flushInterval = flushInterval;
+    }
+
+    // the policies flush the underlying stream through super.flush(), as subclasses may override flush()
+
+    @Override
+    public void write(int b) {
+        super.write(b);
+        AnsiFlushPolicy policy = flushPolicy;
+        if (policy == AnsiFlushPolicy.Periodic) {
+            scheduleFlush();
+        } else if (b == '\n' && policy != AnsiFlushPolicy.Manual) {
+            super.flush();
+        }
+    }
+
+    @Override
+    public void write(byte[] buf, int off, int len) {
+        super.write(buf, off, len);
+        switch (flushPolicy) {
+            case Always:
+                super.flush();
+                break;
+            case Newline:
+                for (int i = off, end = off + len; i < end; i++) {
+                    if (buf[i] == '\n') {
+                        super.flush();
+                        break;
+                    }
+                }
+                break;
+            case Periodic:
+                scheduleFlush();
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void scheduleFlush() {
+        synchronized (this) {
+            if (flushScheduled) {
+                return;
+            }
+            flushScheduled = true;
+        }
+        Flusher.EXECUTOR.schedule(this::periodicFlush, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs a task on the thread flushing the periodic streams.
+     */
+    void schedule(Runnable task, long delay) {
+        Flusher.EXECUTOR.schedule(task, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void periodicFlush() {
+        synchronized (this) {
+            flushScheduled = false;
+            super.flush();
+        }
     }
 
     public AnsiType getType() {
@@ -53,6 +217,13 @@ public class AnsiPrintStream extends PrintStream {
     }
 
     public void setMode(AnsiMode ansiMode) {
+        // send what is pending, such as a style, with the current mode
+        flush();
+        try {
+            drain();
+        } catch (IOException e) {
+            setError();
+        }
         getOut().setMode(ansiMode);
     }
 
@@ -72,15 +243,76 @@ public class AnsiPrintStream extends PrintStream {
         return getOut().getTerminalWidth();
     }
 
+    /**
+     * Returns the height of the terminal associated with this stream or 0.
+     * @since 2.4.3
+     */
+    public int getTerminalHeight() {
+        return getOut().getTerminalHeight();
+    }
+
+    /**
+     * Registers a listener notified when the terminal associated with this stream is resized.
+     * @return false if resizes can not be detected for this stream
+     * @since 2.4.3
+     */
+    public boolean addResizeListener(AnsiResizeListener listener) {
+        return getOut().addResizeListener(listener);
+    }
+
+    /**
+     * @since 2.4.3
+     */
+    public void removeResizeListener(AnsiResizeListener listener) {
+        getOut().removeResizeListener(listener);
+    }
+
+    /**
+     * @see AnsiOutputStream#getMetrics()
+     * @since 2.4.3
+     */
+    public AnsiMetrics getMetrics() {
+        return getOut().getMetrics();
+    }
+
+    /**
+     * @see AnsiOutputStream#setMetrics(AnsiMetrics)
+     * @since 2.4.3
+     */
+    public void setMetrics(AnsiMetrics metrics) {
+        getOut().setMetrics(metrics);
+    }
+
     public void install() throws IOException {
-        getOut().install();
+        drain();
+        if (lazy != null) {
+            lazy.install();
+        } else {
+            getOut().install();
+        }
     }
 
     public void uninstall() throws IOException {
         // If the system output stream has been closed, out should be null, so avoid a NPE
-        AnsiOutputStream out = getOut();
-        if (out != null) {
-            out.uninstall();
+        if (out == null) {
+            return;
+        }
+        // write the buffered bytes before restoring the console
+        flush();
+        drain();
+        if (lazy != null) {
+            lazy.uninstall();
+        } else {
+            ansi.uninstall();
+        }
+    }
+
+    /**
+     * Releases the resources of a console stream replaced by a new one, see {@link AnsiConsole#systemUninstall()}.
+     */
+    void release() throws IOException {
+        if (lazy != null) {
+            lazy.release();
         }
     }
 
@@ -91,6 +323,15 @@ public class AnsiPrintStream extends PrintStream {
                 + ", colors=" + getColors()
                 + ", mode=" + getMode()
                 + ", resetAtUninstall=" + isResetAtUninstall()
+                + ", flushPolicy=" + getFlushPolicy()
                 + "}";
     }
+
+    private static final class Flusher {
+        static final ScheduledExecutorService EXECUTOR = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "jansi-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
 }
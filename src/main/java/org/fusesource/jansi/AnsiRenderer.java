@@ -16,7 +16,10 @@
 package org.fusesource.jansi;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Locale;
+import java.util.Map;
 
 import org.fusesource.jansi.Ansi.Attribute;
 import org.fusesource.jansi.Ansi.Color;
@@ -40,10 +43,20 @@ import org.fusesource.jansi.Ansi.Color;
  *   &#64;|bold,red Warning!|&#64;
  * </pre>
  *
+ * Markup which is rendered repeatedly can be compiled once with {@link #compile(String)}.
+ *
  * @since 2.2
  */
 public class AnsiRenderer {
 
+    /**
+     * The maximum number of compiled templates cached by the {@link #render(String)} and
+     * {@link #render(String, Appendable)} methods, 0 (the default) to disable the cache.
+     *
+     * @since 2.4.3
+     */
+    public static final String JANSI_RENDERER_CACHE = "jansi.renderer.cache";
+
     public static final String BEGIN_TOKEN = "@|";
 
     public static final String END_TOKEN = "|@";
@@ -56,7 +69,12 @@ public class AnsiRenderer {
 
     private static final int END_TOKEN_LEN = 2;
 
+    private static final Map<String, Template> cache = newCache(Integer.getInteger(JANSI_RENDERER_CACHE, 0));
+
     public static String render(final String input) throws IllegalArgumentException {
+        if (cache != null) {
+            return compileCached(input).render();
+        }
         try {
             return render(input, new StringBuilder()).toString();
         } catch (IOException e) {
@@ -77,6 +95,53 @@ public class AnsiRenderer {
      *             If an I/O error occurs
      */
     public static Appendable render(final String input, Appendable target) throws IOException {
+        if (cache != null) {
+            return compileCached(input).render(target);
+        }
+        return render(input, target, Ansi.isEnabled());
+    }
+
+    /**
+     * Compiles the given input so that it can be rendered repeatedly without being parsed again.
+     *
+     * @param input the markup to compile
+     * @return the compiled template
+     * @throws IllegalArgumentException if the input contains an invalid token or an unknown code
+     * @since 2.4.3
+     */
+    public static Template compile(final String input) throws IllegalArgumentException {
+        try {
+            String enabled = render(input, new StringBuilder(), true).toString();
+            String disabled = render(input, new StringBuilder(), false).toString();
+            return new Template(input, enabled, disabled);
+        } catch (IOException e) {
+            // Cannot happen because StringBuilder does not throw IOException
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private static Template compileCached(final String input) {
+        Template template = cache.get(input);
+        if (template == null) {
+            template = compile(input);
+            cache.put(input, template);
+        }
+        return template;
+    }
+
+    private static Map<String, Template> newCache(final int size) {
+        if (size <= 0) {
+            return null;
+        }
+        return Collections.synchronizedMap(new LinkedHashMap<String, Template>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Template> eldest) {
+                return size() > size;
+            }
+        });
+    }
+
+    private static Appendable render(final String input, Appendable target, boolean enabled) throws IOException {
 
         int i = 0;
         int j, k;
@@ -111,7 +176,7 @@ public class AnsiRenderer {
                 target.append(input);
                 return target;
             }
-            String replacement = render(items[1], items[0].split(CODE_LIST_SEPARATOR));
+            String replacement = render(items[1], items[0].split(CODE_LIST_SEPARATOR), enabled);
 
             target.append(replacement);
 
@@ -120,7 +185,12 @@ public class AnsiRenderer {
     }
 
     public static String render(final String text, final String... codes) {
-        return render(Ansi.ansi(), codes).a(text).reset().toString();
+        return render(text, codes, Ansi.isEnabled());
+    }
+
+    private static String render(final String text, final String[] codes, boolean enabled) {
+        Ansi ansi = render(new Ansi(), codes);
+        return enabled ? ansi.a(text).reset().toString() : text;
     }
 
     /**
@@ -161,6 +231,58 @@ public class AnsiRenderer {
         return text != null && text.contains(BEGIN_TOKEN);
     }
 
+    /**
+     * A compiled markup string, see {@link AnsiRenderer#compile(String)}.
+     * <p>
+     * The output is rendered once at compile time, both with and without escape sequences,
+     * so that rendering only needs to check whether {@link Ansi#isEnabled() ANSI is enabled}.
+     * Templates are immutable and can be shared between threads.
+     *
+     * @since 2.4.3
+     */
+    public static final class Template {
+
+        private final String input;
+        private final String enabled;
+        private final String disabled;
+
+        private Template(String input, String enabled, String disabled) {
+            this.input = input;
+            this.enabled = enabled;
+            this.disabled = disabled;
+        }
+
+        /**
+         * @return the rendered template
+         */
+        public String render() {
+            return Ansi.isEnabled() ? enabled : disabled;
+        }
+
+        /**
+         * Renders the template to the target Appendable.
+         *
+         * @param target render onto this target Appendable.
+         * @return the given Appendable
+         * @throws IOException If an I/O error occurs
+         */
+        public Appendable render(Appendable target) throws IOException {
+            return target.append(render());
+        }
+
+        /**
+         * @return the markup this template was compiled from
+         */
+        public String getInput() {
+            return input;
+        }
+
+        @Override
+        public String toString() {
+            return render();
+        }
+    }
+
     @SuppressWarnings("unused")
     public enum Code {
         //
@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2009-2023 the original author(s).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.jansi;
+
+/**
+ * Notified when the size of the terminal changes.
+ *
+ * @since 2.4.3
+ * @see AnsiConsole#addResizeListener(AnsiResizeListener)
+ */
+@FunctionalInterface
+public interface AnsiResizeListener {
+
+    /**
+     * @param width the new width of the terminal
+     * @param height the new height of the terminal, or 0 if unknown
+     */
+    void onResize(int width, int height);
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2009-2023 the original author(s).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.jansi;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.fusesource.jansi.Ansi.Attribute;
+import org.fusesource.jansi.Ansi.Color;
+
+/**
+ * An immutable combination of a foreground color, a background color and a set of attributes.
+ * <p>
+ * The <code>SGR</code> escape sequence of a style is rendered once, when the style is created,
+ * so that it can be cheaply applied with {@link Ansi#style(AnsiStyle)} or written directly to an
+ * output stream with {@link #writeTo(OutputStream)}.  Styles are meant to be created once and shared:
+ *
+ * <pre>
+ * static final AnsiStyle ERROR = AnsiStyle.style().fg(Color.RED).a(Attribute.INTENSITY_BOLD);
+ *
+ * ansi().style(ERROR).a("error").reset();
+ * </pre>
+ *
+ * Applying a style does not reset the attributes which are already set.
+ *
+ * @since 2.4.3
+ */
+public final class AnsiStyle {
+
+    private static final int[] NO_COLOR = new int[0];
+    private static final Attribute[] ATTRIBUTES = Attribute.values();
+    private static final AnsiStyle EMPTY = new AnsiStyle(0, NO_COLOR, NO_COLOR);
+
+    private final int attributes;
+    private final int[] fg;
+    private final int[] bg;
+    private final String sequence;
+    private final byte[] bytes;
+
+    private AnsiStyle(int attributes, int[] fg, int[] bg) {
+        this.attributes = attributes;
+        this.fg = fg;
+        this.bg = bg;
+        this.sequence = render();
+        this.bytes = sequence.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @return the empty style, which does not change anything
+     */
+    public static AnsiStyle style() {
+        return EMPTY;
+    }
+
+    public AnsiStyle fg(Color color) {
+        return withFg(color.fg());
+    }
+
+    public AnsiStyle fgBright(Color color) {
+        return withFg(color.fgBright());
+    }
+
+    public AnsiStyle fg(int color) {
+        return withFg(38, 5, color & 0xff);
+    }
+
+    public AnsiStyle fgRgb(int r, int g, int b) {
+        return withFg(38, 2, r & 0xff, g & 0xff, b & 0xff);
+    }
+
+    public AnsiStyle bg(Color color) {
+        return withBg(color.bg());
+    }
+
+    public AnsiStyle bgBright(Color color) {
+        return withBg(color.bgBright());
+    }
+
+    public AnsiStyle bg(int color) {
+        return withBg(48, 5, color & 0xff);
+    }
+
+    public AnsiStyle bgRgb(int r, int g, int b) {
+        return withBg(48, 2, r & 0xff, g & 0xff, b & 0xff);
+    }
+
+    public AnsiStyle a(Attribute attribute) {
+        return new AnsiStyle(attributes | (1 << attribute.ordinal()), fg, bg);
+    }
+
+    /**
+     * Writes the escape sequence of this style.
+     *
+     * @param out the stream to write to
+     * @throws IOException if an error occurs
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(bytes);
+    }
+
+    /**
+     * @return the length of the escape sequence of this style
+     */
+    public int length() {
+        return bytes.length;
+    }
+
+    /**
+     * @return the escape sequence of this style, or an empty string for the empty style
+     */
+    @Override
+    public String toString() {
+        return sequence;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof AnsiStyle)) {
+            return false;
+        }
+        AnsiStyle that = (AnsiStyle) o;
+        return attributes == that.attributes && Arrays.equals(fg, that.fg) && Arrays.equals(bg, that.bg);
+    }
+
+    @Override
+    public int hashCode() {
+        return (attributes * 31 + Arrays.hashCode(fg)) * 31 + Arrays.hashCode(bg);
+    }
+
+    private AnsiStyle withFg(int... fg) {
+        return new AnsiStyle(attributes, fg, bg);
+    }
+
+    private AnsiStyle withBg(int... bg) {
+        return new AnsiStyle(attributes, fg, bg);
+    }
+
+    private String render() {
+        if (attributes == 0 && fg.length == 0 && bg.length == 0) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(16);
+        sb.append("\033[");
+        for (Attribute attribute : ATTRIBUTES) {
+            if ((attributes & (1 << attribute.ordinal())) != 0) {
+                sb.append(attribute.value()).append(';');
+            }
+        }
+        for (int option : fg) {
+            sb.append(option).append(';');
+        }
+        for (int option : bg) {
+            sb.append(option).append(';');
+        }
+        sb.setCharAt(sb.length() - 1, 'm');
+        return sb.toString();
+    }
+}
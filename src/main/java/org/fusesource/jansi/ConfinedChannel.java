@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2009-2023 the original author(s).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.jansi;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A channel writing to a {@link FileOutputStream} through its {@link FileChannel} from a single
+ * thread only.
+ * <p>
+ * Interrupting a thread blocked on a {@link FileChannel} closes the channel, and thus the file
+ * descriptor, for the whole process.  The console streams hand their channel to the writer thread
+ * of their {@link org.fusesource.jansi.io.AsyncOutputStream}, which is never interrupted, while
+ * the bytes written by any other thread, for instance once the writer thread has been stopped,
+ * are copied to the heap and written through the stream, which ignores interrupts.
+ */
+class ConfinedChannel implements GatheringByteChannel {
+
+    private static final int SCRATCH_SIZE = 8192;
+
+    private final FileOutputStream stream;
+    private final FileChannel channel;
+    private final BooleanSupplier owner;
+    private byte[] scratch;
+
+    /**
+     * @param stream the stream written to
+     * @param owner tells whether the current thread may write to the channel
+     */
+    ConfinedChannel(FileOutputStream stream, BooleanSupplier owner) {
+        this.stream = stream;
+        this.channel = stream.getChannel();
+        this.owner = owner;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        if (owner.getAsBoolean()) {
+            return channel.write(src);
+        }
+        int len = src.remaining();
+        if (src.hasArray()) {
+            stream.write(src.array(), src.arrayOffset() + src.position(), len);
+            src.position(src.limit());
+        } else {
+            if (scratch == null) {
+                scratch = new byte[SCRATCH_SIZE];
+            }
+            while (src.hasRemaining()) {
+                int n = Math.min(src.remaining(), scratch.length);
+                src.get(scratch, 0, n);
+                stream.write(scratch, 0, n);
+            }
+        }
+        return len;
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+        if (owner.getAsBoolean()) {
+            return channel.write(srcs, offset, length);
+        }
+        long written = 0;
+        for (int i = offset; i < offset + length; i++) {
+            written += write(srcs[i]);
+        }
+        return written;
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs) throws IOException {
+        return write(srcs, 0, srcs.length);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2009-2023 the original author(s).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.jansi;
+
+import java.io.IOError;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.fusesource.jansi.io.AnsiOutputStream;
+import org.fusesource.jansi.io.AsyncOutputStream;
+
+/**
+ * An output stream creating its AnsiOutputStream on first use, so that the terminal
+ * is only probed, and the native library only loaded, when a console stream is
+ * actually written to or queried.
+ * <p>
+ * Installations requested before that point are counted and replayed once the
+ * AnsiOutputStream has been created.
+ */
+class LazyAnsiStream extends OutputStream {
+
+    private final Function<LazyAnsiStream, AnsiOutputStream> factory;
+    private final String asyncName;
+    private final Object lock;
+    private Consumer<AnsiOutputStream> listener; // synchronized on lock
+    private int installed; // synchronized on lock
+    private volatile AnsiOutputStream ansi;
+    private volatile OutputStream target;
+
+    /**
+     * @param factory creates the AnsiOutputStream written by the given stream
+     * @param asyncName the name of the writer thread of an {@link AsyncOutputStream}
+     *                  put in front of the AnsiOutputStream, or <code>null</code> to write synchronously
+     * @param lock the lock held by the installers of the AnsiOutputStream, which are replayed
+     *             while creating it
+     */
+    LazyAnsiStream(Function<LazyAnsiStream, AnsiOutputStream> factory, String asyncName, Object lock) {
+        this.factory = factory;
+        this.asyncName = asyncName;
+        this.lock = lock;
+    }
+
+    /**
+     * Sets a listener called once the AnsiOutputStream has been created.
+     */
+    void setListener(Consumer<AnsiOutputStream> listener) {
+        synchronized (lock) {
+            this.listener = listener;
+        }
+    }
+
+    /**
+     * @return the AnsiOutputStream, which is created if needed
+     */
+    AnsiOutputStream ansi() {
+        AnsiOutputStream a = ansi;
+        return a != null ? a : resolve();
+    }
+
+    /**
+     * @return the stream written to, or <code>null</code> if it has not been created yet
+     */
+    OutputStream resolved() {
+        return ansi != null ? target : null;
+    }
+
+    boolean isResolved() {
+        return ansi != null;
+    }
+
+    /**
+     * @return whether the current thread is the writer thread of the {@link AsyncOutputStream}
+     * put in front of the AnsiOutputStream, while it is running
+     */
+    boolean isWriterThread() {
+        OutputStream out = target;
+        return out instanceof AsyncOutputStream && ((AsyncOutputStream) out).isWriterThread();
+    }
+
+    private AnsiOutputStream resolve() {
+        synchronized (lock) {
+            if (ansi != null) {
+                return ansi;
+            }
+            AnsiOutputStream a = factory.apply(this);
+            target = asyncName != null ? new AsyncOutputStream(a, asyncName, AsyncOutputStream.DEFAULT_CAPACITY) : a;
+            try {
+                for (; installed > 0; installed--) {
+                    a.install();
+                }
+            } catch (IOException e) {
+                throw new IOError(e);
+            }
+            ansi = a;
+            if (listener != null) {
+                listener.accept(a);
+            }
+            return a;
+        }
+    }
+
+    private OutputStream target() {
+        // target is assigned before ansi
+        ansi();
+        return target;
+    }
+
+    void install() throws IOException {
+        synchronized (lock) {
+            if (ansi != null) {
+                ansi.install();
+            } else {
+                installed++;
+            }
+        }
+    }
+
+    void uninstall() throws IOException {
+        synchronized (lock) {
+            if (ansi != null) {
+                ansi.uninstall();
+            } else if (installed > 0) {
+                // nothing has been written, so there is nothing to reset
+                installed--;
+            }
+        }
+    }
+
+    /**
+     * Stops the writer thread of the {@link AsyncOutputStream}, if any, once the console
+     * stream is not used by the console any more.  Later writes are done synchronously.
+     */
+    void release() throws IOException {
+        OutputStream out = resolved();
+        if (out instanceof AsyncOutputStream) {
+            ((AsyncOutputStream) out).detach();
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        target().write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        target().write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        OutputStream out = resolved();
+        if (out != null) {
+            out.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        OutputStream out = resolved();
+        if (out != null) {
+            out.close();
+        }
+    }
+}
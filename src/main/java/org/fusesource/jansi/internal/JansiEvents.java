@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2009-2023 the original author(s).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.jansi.internal;
+
+/**
+ * Emits JDK Flight Recorder events for console flushes, installation, native library loading
+ * and native calls.
+ * <p>
+ * The events themselves are only compiled for Java 11, in the <code>META-INF/versions/11</code>
+ * directory of the multi-release jar, and loaded reflectively, so on older runtimes, or when the
+ * <code>jdk.jfr</code> module is not available, all methods are no-ops.
+ * Each event is started by a <code>begin</code> method returning a token, which is
+ * <code>null</code> when the event is not enabled in any recording, and the token is then given
+ * to the matching <code>end</code> method, so that disabled events cost next to nothing.
+ *
+ * @since 2.4.3
+ */
+public final class JansiEvents {
+
+    /**
+     * The implementation of the events, see <code>JansiFlightRecorder</code>.
+     */
+    public interface Recorder {
+
+        Object beginFlush();
+
+        void endFlush(Object token, int bytes);
+
+        Object beginInstall();
+
+        void endInstall(Object token, boolean install, int count);
+
+        Object beginLibraryLoad();
+
+        void endLibraryLoad(Object token, String path, boolean extracted, boolean loaded);
+
+        Object beginNativeCall();
+
+        void endNativeCall(Object token, String function);
+    }
+
+    private static final Recorder RECORDER = load();
+
+    private JansiEvents() {}
+
+    /**
+     * @return true if the flight recorder events are available on this runtime
+     */
+    public static boolean isAvailable() {
+        return RECORDER != null;
+    }
+
+    public static Object beginFlush() {
+        return RECORDER != null ? RECORDER.beginFlush() : null;
+    }
+
+    /**
+     * @param token the token returned by {@link #beginFlush()}
+     * @param bytes the number of bytes written by the flush
+     */
+    public static void endFlush(Object token, int bytes) {
+        if (token != null) {
+            RECORDER.endFlush(token, bytes);
+        }
+    }
+
+    public static Object beginInstall() {
+        return RECORDER != null ? RECORDER.beginInstall() : null;
+    }
+
+    /**
+     * @param token the token returned by {@link #beginInstall()}
+     * @param install true for an installation, false for an uninstallation
+     * @param count the number of installations after the call
+     */
+    public static void endInstall(Object token, boolean install, int count) {
+        if (token != null) {
+            RECORDER.endInstall(token, install, count);
+        }
+    }
+
+    public static Object beginLibraryLoad() {
+        return RECORDER != null ? RECORDER.beginLibraryLoad() : null;
+    }
+
+    /**
+     * @param token the token returned by {@link #beginLibraryLoad()}
+     * @param path the path of the native library
+     * @param extracted true if the library has been extracted from the jar
+     * @param loaded true if the library has been loaded successfully
+     */
+    public static void endLibraryLoad(Object token, String path, boolean extracted, boolean loaded) {
+        if (token != null) {
+            RECORDER.endLibraryLoad(token, path, extracted, loaded);
+        }
+    }
+
+    public static Object beginNativeCall() {
+        return RECORDER != null ? RECORDER.beginNativeCall() : null;
+    }
+
+    /**
+     * @param token the token returned by {@link #beginNativeCall()}
+     * @param function the name of the native function
+     */
+    public static void endNativeCall(Object token, String function) {
+        if (token != null) {
+            RECORDER.endNativeCall(token, function);
+        }
+    }
+
+    private static Recorder load() {
+        if (Boolean.getBoolean("jansi.jfr.disable")) {
+            return null;
+        }
+        try {
+            Class.forName("jdk.jfr.FlightRecorder", false, JansiEvents.class.getClassLoader());
+            return (Recorder) Class.forName("org.fusesource.jansi.internal.JansiFlightRecorder")
+                    .getDeclaredConstructor()
+                    .newInstance();
+        } catch (Throwable t) {
+            // Java 8, or a runtime without the jdk.jfr module
+            return null;
+        }
+    }
+}
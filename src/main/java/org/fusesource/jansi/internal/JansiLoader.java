@@ -37,14 +37,23 @@ import java.io.FileOutputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.JarURLConnection;
 import java.net.URL;
+import java.net.URLConnection;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Properties;
 import java.util.Random;
+import java.util.jar.JarEntry;
+import java.util.zip.CRC32;
 
 import org.fusesource.jansi.AnsiConsole;
 
@@ -56,6 +65,11 @@ import org.fusesource.jansi.AnsiConsole;
  * The library files are automatically extracted from this project's package
  * (JAR).
  * <p>
+ * By default, the library is extracted to a new file in the temporary directory on each start.
+ * If the <code>jansi.cachedir</code> system property points to a directory, the library is instead
+ * extracted there once, under a name derived from the jansi version and the size and CRC-32 of the library,
+ * and later JVMs load the already extracted file.
+ * <p>
  * usage: call {@link #initialize()} before using Jansi.
  */
 public class JansiLoader {
@@ -71,8 +85,8 @@ public class JansiLoader {
      * otherwise.
      */
     public static synchronized boolean initialize() {
-        // only cleanup before the first extract
-        if (!loaded) {
+        // only cleanup before the first extract, the cache does not leave stale files
+        if (!loaded && getCacheDir() == null) {
             Thread cleanup = new Thread(JansiLoader::cleanup, "cleanup");
             cleanup.setPriority(Thread.MIN_PRIORITY);
             cleanup.setDaemon(true);
@@ -102,6 +116,11 @@ public class JansiLoader {
         return new File(System.getProperty("jansi.tmpdir", System.getProperty("java.io.tmpdir")));
     }
 
+    private static File getCacheDir() {
+        String dir = System.getProperty("jansi.cachedir");
+        return dir != null && !dir.isEmpty() ? new File(dir) : null;
+    }
+
     /**
      * Deleted old native libraries e.g. on Windows the DLL file is not removed
      * on VM-Exit (bug #80)
@@ -193,6 +212,7 @@ public class JansiLoader {
         File extractedLibFile = new File(targetFolder, extractedLibFileName);
         File extractedLckFile = new File(targetFolder, extractedLckFileName);
 
+        Object event = JansiEvents.beginLibraryLoad();
         try {
             // Extract a native library file into the target directory
             try (InputStream in = JansiLoader.class.getResourceAsStream(nativeLibraryFilePath)) {
@@ -223,17 +243,138 @@ public class JansiLoader {
             }
 
             // Load library
-            if (loadNativeLibrary(extractedLibFile)) {
+            if (loadNativeLibrary(extractedLibFile, event, true)) {
+                nativeLibrarySourceUrl =
+                        JansiLoader.class.getResource(nativeLibraryFilePath).toExternalForm();
+                return true;
+            }
+        } catch (IOException e) {
+            JansiEvents.endLibraryLoad(event, extractedLibFile.getAbsolutePath(), true, false);
+            System.err.println(e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Loads the library from the cache directory, extracting it first if needed.
+     */
+    private static boolean loadCachedLibraryFile(String libFolderForCurrentOS, String libraryFileName, File cacheDir) {
+        String nativeLibraryFilePath = libFolderForCurrentOS + "/" + libraryFileName;
+        Object event = JansiEvents.beginLibraryLoad();
+        try {
+            File libFile = cachedLibraryFile(nativeLibraryFilePath, libraryFileName, cacheDir);
+            if (loadNativeLibrary(libFile, event, true)) {
                 nativeLibrarySourceUrl =
                         JansiLoader.class.getResource(nativeLibraryFilePath).toExternalForm();
                 return true;
             }
         } catch (IOException e) {
+            JansiEvents.endLibraryLoad(event, cacheDir.getAbsolutePath(), true, false);
             System.err.println(e.getMessage());
         }
         return false;
     }
 
+    /**
+     * Returns the cached copy of a library resource, extracting it if it does not exist yet.
+     * The file is written under a temporary name, checked and atomically renamed while holding
+     * a file lock, so that concurrent JVMs never see a partially written library.
+     *
+     * @param nativeLibraryFilePath the path of the resource
+     * @param libraryFileName the name of the library
+     * @param cacheDir the cache directory
+     * @return the extracted library
+     * @throws IOException if the library can not be extracted
+     */
+    static File cachedLibraryFile(String nativeLibraryFilePath, String libraryFileName, File cacheDir)
+            throws IOException {
+        URL url = JansiLoader.class.getResource(nativeLibraryFilePath);
+        if (url == null) {
+            throw new IOException("No native library resource " + nativeLibraryFilePath);
+        }
+        long[] checksum = checksum(url);
+        long size = checksum[0];
+        long crc = checksum[1];
+        // the name must not start with jansi-<version>, or cleanup() would delete it
+        String cachedLibFileName = String.format("jansi-cache-%s-%x-%08x-%s", getVersion(), size, crc, libraryFileName);
+        File cachedLibFile = new File(cacheDir, cachedLibFileName);
+        if (cachedLibFile.length() == size) {
+            return cachedLibFile;
+        }
+
+        Files.createDirectories(cacheDir.toPath());
+        Path lockFile = new File(cacheDir, cachedLibFileName + ".lck").toPath();
+        try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                FileLock lock = channel.lock()) {
+            // another JVM may have extracted it while we were waiting for the lock
+            if (cachedLibFile.length() == size) {
+                return cachedLibFile;
+            }
+            File tmpFile = new File(cacheDir, cachedLibFileName + "." + randomUUID() + ".tmp");
+            try {
+                try (InputStream in = url.openStream()) {
+                    Files.copy(in, tmpFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+                try (InputStream in = new FileInputStream(tmpFile)) {
+                    long[] written = checksum(in);
+                    if (written[0] != size || written[1] != crc) {
+                        throw new IOException(String.format(
+                                "Failed to write a native library file at %s because the content differs", tmpFile));
+                    }
+                }
+                tmpFile.setReadable(true);
+                tmpFile.setExecutable(true);
+                try {
+                    Files.move(
+                            tmpFile.toPath(),
+                            cachedLibFile.toPath(),
+                            StandardCopyOption.ATOMIC_MOVE,
+                            StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmpFile.toPath(), cachedLibFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(tmpFile.toPath());
+            }
+        }
+        // JVMs still waiting on the lock find the library once they get it, later ones never need the lock
+        try {
+            Files.deleteIfExists(lockFile);
+        } catch (IOException e) {
+            // ignore
+        }
+        return cachedLibFile;
+    }
+
+    /**
+     * Returns the size and CRC-32 of a resource, read from the jar entry when the resource is packaged,
+     * so that the library does not have to be read on each start.
+     */
+    private static long[] checksum(URL url) throws IOException {
+        URLConnection connection = url.openConnection();
+        if (connection instanceof JarURLConnection) {
+            JarEntry entry = ((JarURLConnection) connection).getJarEntry();
+            if (entry != null && entry.getSize() >= 0 && entry.getCrc() >= 0) {
+                return new long[] {entry.getSize(), entry.getCrc()};
+            }
+        }
+        try (InputStream in = connection.getInputStream()) {
+            return checksum(in);
+        }
+    }
+
+    private static long[] checksum(InputStream in) throws IOException {
+        CRC32 crc = new CRC32();
+        long size = 0;
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) >= 0) {
+            crc.update(buffer, 0, n);
+            size += n;
+        }
+        return new long[] {size, crc.getValue()};
+    }
+
     private static String randomUUID() {
         return Long.toHexString(new Random().nextLong());
     }
@@ -245,9 +386,31 @@ public class JansiLoader {
      * @return True for successfully loading; false otherwise.
      */
     private static boolean loadNativeLibrary(File libPath) {
+        return loadNativeLibrary(libPath, JansiEvents.beginLibraryLoad(), false);
+    }
+
+    /**
+     * Loads native library using the given path and name of the library.
+     *
+     * @param libPath Path of the native library.
+     * @param event The library load event started before the library has been extracted, if any.
+     * @param extracted True if the library has been extracted from the jar file.
+     * @return True for successfully loading; false otherwise.
+     */
+    private static boolean loadNativeLibrary(File libPath, Object event, boolean extracted) {
+        String path = libPath.getAbsolutePath();
+        boolean success = false;
+        try {
+            success = loadNativeLibrary(libPath, path);
+            return success;
+        } finally {
+            JansiEvents.endLibraryLoad(event, path, extracted, success);
+        }
+    }
+
+    private static boolean loadNativeLibrary(File libPath, String path) {
         if (libPath.exists()) {
             try {
-                String path = libPath.getAbsolutePath();
                 System.load(path);
                 nativeLibraryPath = path;
                 return true;
@@ -321,6 +484,16 @@ public class JansiLoader {
                 String.format("/%s/native/%s", packagePath, OSInfo.getNativeLibFolderPathForCurrentOS());
         boolean hasNativeLib = hasResource(jansiNativeLibraryPath + "/" + jansiNativeLibraryName);
 
+        File cacheDir = getCacheDir();
+        if (hasNativeLib && cacheDir != null) {
+            if (loadCachedLibraryFile(jansiNativeLibraryPath, jansiNativeLibraryName, cacheDir)) {
+                loaded = true;
+                return;
+            } else {
+                triedPaths.add(cacheDir.getAbsolutePath());
+            }
+        }
+
         if (hasNativeLib) {
             // temporary library folder
             String tempFolder = getTempDir().getAbsolutePath();
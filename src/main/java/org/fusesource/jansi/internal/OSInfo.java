@@ -34,6 +34,7 @@ package org.fusesource.jansi.internal;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.HashMap;
@@ -41,7 +42,10 @@ import java.util.Locale;
 
 /**
  * Provides OS name and architecture name.
- *
+ * <p>
+ * Both names are resolved once and kept for the lifetime of the JVM.  When building a
+ * native image, they are resolved at build time (see the <code>native-image.properties</code>
+ * of this library), so that the image does not need to probe the platform when it starts.
  */
 public class OSInfo {
 
@@ -115,7 +119,7 @@ public class OSInfo {
     }
 
     public static String getOSName() {
-        return translateOSNameToFolderName(System.getProperty("os.name"));
+        return Snapshot.OS_NAME;
     }
 
     public static boolean isAndroid() {
@@ -136,6 +140,11 @@ public class OSInfo {
     }
 
     static String getHardwareName() {
+        // the kernel exposes the machine hardware name, which avoids running a process
+        String arch = readKernelArch();
+        if (arch != null) {
+            return arch;
+        }
         try {
             Process p = Runtime.getRuntime().exec("uname -m");
             p.waitFor();
@@ -152,6 +161,16 @@ public class OSInfo {
         }
     }
 
+    static String readKernelArch() {
+        try {
+            byte[] bytes = Files.readAllBytes(Paths.get("/proc/sys/kernel/arch"));
+            String arch = new String(bytes, StandardCharsets.US_ASCII).trim();
+            return arch.isEmpty() ? null : arch;
+        } catch (Throwable ignored) {
+            return null;
+        }
+    }
+
     private static String readFully(InputStream in) throws IOException {
         int readLen = 0;
         ByteArrayOutputStream b = new ByteArrayOutputStream();
@@ -192,6 +211,10 @@ public class OSInfo {
     }
 
     public static String getArchName() {
+        return Snapshot.ARCH_NAME;
+    }
+
+    static String resolveArchName() {
         String osArch = System.getProperty("os.arch");
         // For Android
         if (isAndroid()) {
@@ -226,4 +249,12 @@ public class OSInfo {
     static String translateArchNameToFolderName(String archName) {
         return archName.replaceAll("\\W", "");
     }
+
+    /**
+     * The names of the current platform, resolved when first needed.
+     */
+    private static final class Snapshot {
+        static final String OS_NAME = translateOSNameToFolderName(System.getProperty("os.name"));
+        static final String ARCH_NAME = resolveArchName();
+    }
 }
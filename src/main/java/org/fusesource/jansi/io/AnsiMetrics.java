@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2009-2023 the original author(s).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.jansi.io;
+
+/**
+ * Receives what an {@link AnsiOutputStream} is doing, see {@link AnsiOutputStream#setMetrics(AnsiMetrics)}.
+ * <p>
+ * The methods are called from the thread writing to the stream, on each write and escape sequence,
+ * so implementations must be cheap and thread safe.
+ *
+ * @since 2.4.3
+ * @see AnsiStatistics
+ */
+public interface AnsiMetrics {
+
+    /**
+     * The kinds of escape sequences.
+     */
+    enum Sequence {
+        Csi("Control sequences, such as SGR or cursor moves"),
+        Escape("Escape sequences of a single character, or selecting a character set"),
+        Osc("Operating system commands, such as window titles or hyperlinks"),
+        ControlString("Device control, start of string, privacy message and application program command strings");
+
+        private final String description;
+
+        Sequence(String description) {
+            this.description = description;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    /**
+     * Called when bytes are written to the stream.
+     */
+    void written(int bytes);
+
+    /**
+     * Called when plain text is written to the target of the stream.
+     */
+    void text(int bytes);
+
+    /**
+     * Called when an escape sequence is complete.
+     * @param sequence the kind of sequence
+     * @param processed true if the sequence was processed, i.e. emulated, rewritten or stripped,
+     *                  false if it was written as is
+     * @param nanos the time spent by the {@link AnsiProcessor} on the sequence
+     */
+    void sequence(Sequence sequence, boolean processed, long nanos);
+
+    /**
+     * Called when an invalid or interrupted escape sequence is written as is.
+     */
+    void aborted();
+
+    /**
+     * Called when the content of an OSC or control string is too long to be buffered.
+     */
+    void overflowed();
+
+    /**
+     * Called when the stream has been flushed.
+     * @param nanos the time spent flushing the target
+     */
+    void flushed(long nanos);
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright (C) 2009-2023 the original author(s).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.jansi.io;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * The options of an escape sequence, stored in primitive arrays so that parsing
+ * numeric arguments does not create any garbage.
+ * <p>
+ * Each option is either {@link #NONE} (an omitted argument, such as in <code>ESC[;5H</code>),
+ * an {@link #INT}, a {@link #CHAR} (for example the <code>?</code> private mode marker)
+ * or a {@link #STRING}.  Numbers that do not fit in an int are reported as {@link #OVERFLOW}.
+ * <p>
+ * Instances are reused by {@link AnsiOutputStream} from one escape sequence to the next,
+ * so processors must not keep a reference to them.
+ *
+ * @since 2.4.3
+ * @see AnsiProcessor#processEscapeCommand(AnsiOptions, int)
+ */
+public final class AnsiOptions {
+
+    public static final int NONE = 0;
+    public static final int INT = 1;
+    public static final int CHAR = 2;
+    public static final int STRING = 3;
+    /**
+     * A numeric option which is too large to be represented as an int.
+     */
+    public static final int OVERFLOW = 4;
+
+    private byte[] types;
+    private int[] values;
+    private String[] strings;
+    private int size;
+
+    public AnsiOptions() {
+        this(16);
+    }
+
+    public AnsiOptions(int capacity) {
+        types = new byte[capacity];
+        values = new int[capacity];
+    }
+
+    /**
+     * Builds options from a legacy list of <code>null</code>, {@link Integer},
+     * {@link Character} or {@link String} values.
+     * @param options the options
+     * @return the options
+     */
+    public static AnsiOptions of(ArrayList<Object> options) {
+        AnsiOptions result = new AnsiOptions(Math.max(options.size(), 1));
+        for (Object option : options) {
+            if (option == null) {
+                result.addNone();
+            } else if (option instanceof Integer) {
+                result.addInt((Integer) option);
+            } else if (option instanceof Character) {
+                result.addChar((Character) option);
+            } else {
+                result.addString(option.toString());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of options
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index the option index
+     * @return the type of the option, one of {@link #NONE}, {@link #INT}, {@link #CHAR}, {@link #STRING}
+     * or {@link #OVERFLOW}
+     */
+    public int type(int index) {
+        checkIndex(index);
+        return types[index];
+    }
+
+    /**
+     * @param index the option index
+     * @return the value of an {@link #INT} option
+     * @throws IllegalArgumentException if the option is not an int
+     */
+    public int intValue(int index) {
+        if (type(index) != INT) throw new IllegalArgumentException();
+        return values[index];
+    }
+
+    /**
+     * @param index the option index
+     * @param defaultValue the value to return if the option is missing or {@link #NONE}
+     * @return the value of an {@link #INT} option
+     * @throws IllegalArgumentException if the option is neither an int nor omitted
+     */
+    public int intValue(int index, int defaultValue) {
+        if (index >= size || types[index] == NONE) {
+            return defaultValue;
+        }
+        return intValue(index);
+    }
+
+    /**
+     * @param index the option index
+     * @return the value of a {@link #CHAR} option
+     * @throws IllegalArgumentException if the option is not a char
+     */
+    public char charValue(int index) {
+        if (type(index) != CHAR) throw new IllegalArgumentException();
+        return (char) values[index];
+    }
+
+    /**
+     * @param index the option index
+     * @return the value of a {@link #STRING} option
+     * @throws IllegalArgumentException if the option is not a string
+     */
+    public String stringValue(int index) {
+        if (type(index) != STRING) throw new IllegalArgumentException();
+        return strings[index];
+    }
+
+    /**
+     * @return true if any option is an {@link #OVERFLOW}
+     */
+    public boolean hasOverflow() {
+        for (int i = 0; i < size; i++) {
+            if (types[i] == OVERFLOW) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if all options are either {@link #INT} or {@link #NONE}
+     */
+    public boolean isNumeric() {
+        for (int i = 0; i < size; i++) {
+            if (types[i] != INT && types[i] != NONE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Converts those options to the list of boxed values used by the legacy
+     * <code>process*</code> methods.  {@link #OVERFLOW} options can not be represented
+     * and are converted to <code>null</code>.
+     * @return a new list
+     */
+    public ArrayList<Object> toList() {
+        ArrayList<Object> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            switch (types[i]) {
+                case INT:
+                    list.add(values[i]);
+                    break;
+                case CHAR:
+                    list.add((char) values[i]);
+                    break;
+                case STRING:
+                    list.add(strings[i]);
+                    break;
+                default:
+                    list.add(null);
+                    break;
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public String toString() {
+        return toList().toString();
+    }
+
+    void clear() {
+        if (strings != null) {
+            Arrays.fill(strings, 0, size, null);
+        }
+        size = 0;
+    }
+
+    void addNone() {
+        add(NONE, 0);
+    }
+
+    void addInt(int value) {
+        add(INT, value);
+    }
+
+    void addChar(char value) {
+        add(CHAR, value);
+    }
+
+    void addString(String value) {
+        add(STRING, 0);
+        if (strings == null) {
+            strings = new String[types.length];
+        }
+        strings[size - 1] = value;
+    }
+
+    /**
+     * Appends a decimal digit to the last option, which must be an int.
+     * The option becomes an {@link #OVERFLOW} if the value does not fit in an int.
+     */
+    void appendDigit(int digit) {
+        int value = values[size - 1];
+        if (types[size - 1] == OVERFLOW) {
+            return;
+        }
+        if (value > (Integer.MAX_VALUE - digit) / 10) {
+            types[size - 1] = OVERFLOW;
+        } else {
+            values[size - 1] = value * 10 + digit;
+        }
+    }
+
+    private void add(int type, int value) {
+        if (size == types.length) {
+            int capacity = size * 2;
+            types = Arrays.copyOf(types, capacity);
+            values = Arrays.copyOf(values, capacity);
+            if (strings != null) {
+                strings = Arrays.copyOf(strings, capacity);
+            }
+        }
+        types[size] = (byte) type;
+        values[size] = value;
+        size++;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) throw new IllegalArgumentException();
+    }
+}
@@ -19,19 +19,31 @@ import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.charset.Charset;
-import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 import org.fusesource.jansi.AnsiColors;
 import org.fusesource.jansi.AnsiMode;
+import org.fusesource.jansi.AnsiResizeListener;
 import org.fusesource.jansi.AnsiType;
+import org.fusesource.jansi.io.AnsiMetrics.Sequence;
 
 import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.fusesource.jansi.io.AnsiStateTable.*;
 
 /**
  * A ANSI print stream extracts ANSI escape codes written to
  * an output stream and calls corresponding <code>AnsiProcessor.process*</code> methods.
  * This particular class is not synchronized for improved performances.
  *
+ * <p>Escape sequences are delimited by a table driven parser following the ECMA-48 syntax
+ * (see {@link AnsiStateTable}).  <code>CSI</code>, <code>OSC</code>, charset selection and
+ * other <code>ESC</code> sequences are handed to the processor, which decides whether they
+ * are consumed or written as is.  Control strings (<code>DCS</code>, <code>SOS</code>,
+ * <code>PM</code> and <code>APC</code>) are streamed through or dropped as a whole.
+ * Malformed or interrupted sequences are written as is.
+ * In {@link AnsiMode#Strip} mode, no processor is involved and all sequences are dropped.
+ *
  * <p>For more information about ANSI escape codes, see
  * <a href="http://en.wikipedia.org/wiki/ANSI_escape_code">Wikipedia article</a>
  *
@@ -50,6 +62,14 @@ public class AnsiOutputStream extends FilterOutputStream {
     @FunctionalInterface
     public interface WidthSupplier {
         int getTerminalWidth();
+
+        /**
+         * @return the height of the terminal, or 0 if unknown
+         * @since 2.4.3
+         */
+        default int getTerminalHeight() {
+            return 0;
+        }
     }
 
     public static class ZeroWidthSupplier implements WidthSupplier {
@@ -59,32 +79,38 @@ public class AnsiOutputStream extends FilterOutputStream {
         }
     }
 
-    private static final int LOOKING_FOR_FIRST_ESC_CHAR = 0;
-    private static final int LOOKING_FOR_SECOND_ESC_CHAR = 1;
-    private static final int LOOKING_FOR_NEXT_ARG = 2;
-    private static final int LOOKING_FOR_STR_ARG_END = 3;
-    private static final int LOOKING_FOR_INT_ARG_END = 4;
-    private static final int LOOKING_FOR_OSC_COMMAND = 5;
-    private static final int LOOKING_FOR_OSC_COMMAND_END = 6;
-    private static final int LOOKING_FOR_OSC_PARAM = 7;
-    private static final int LOOKING_FOR_ST = 8;
-    private static final int LOOKING_FOR_CHARSET = 9;
+    private static final int MAX_ESCAPE_SEQUENCE_LENGTH = 100;
+    private static final int MAX_STRING_LENGTH = 64 * 1024;
 
-    private static final int FIRST_ESC_CHAR = 27;
-    private static final int SECOND_ESC_CHAR = '[';
-    private static final int SECOND_OSC_CHAR = ']';
+    private static final int ESC = 27;
     private static final int BEL = 7;
-    private static final int SECOND_ST_CHAR = '\\';
-    private static final int SECOND_CHARSET0_CHAR = '(';
-    private static final int SECOND_CHARSET1_CHAR = ')';
+
+    // what to do with the content of an OSC or control string
+    private static final int STRING_BUFFER = 0;
+    private static final int STRING_WRITE = 1;
+    private static final int STRING_SKIP = 2;
+
+    private static final byte[] SPACES = new byte[80];
+    private static final byte[] NEW_LINES = new byte[80];
+
+    static {
+        Arrays.fill(SPACES, (byte) ' ');
+        Arrays.fill(NEW_LINES, (byte) '\n');
+    }
 
     private AnsiProcessor ap;
-    private static final int MAX_ESCAPE_SEQUENCE_LENGTH = 100;
-    private final byte[] buffer = new byte[MAX_ESCAPE_SEQUENCE_LENGTH];
+    private final byte[] table;
+    private byte[] buffer = new byte[MAX_ESCAPE_SEQUENCE_LENGTH];
     private int pos = 0;
     private int startOfValue;
-    private final ArrayList<Object> options = new ArrayList<>();
-    private int state = LOOKING_FOR_FIRST_ESC_CHAR;
+    private final AnsiOptions options = new AnsiOptions();
+    private boolean number;
+    private int intermediate;
+    private int stringType;
+    private int stringMode;
+    private int state = GROUND;
+    private boolean strip;
+    private boolean drop;
     private final Charset cs;
 
     private final WidthSupplier width;
@@ -95,6 +121,7 @@ public class AnsiOutputStream extends FilterOutputStream {
     private final IoRunnable uninstaller;
     private AnsiMode mode;
     private boolean resetAtUninstall;
+    private AnsiMetrics metrics;
 
     public AnsiOutputStream(
             OutputStream os,
@@ -116,6 +143,8 @@ public class AnsiOutputStream extends FilterOutputStream {
         this.uninstaller = uninstaller;
         this.resetAtUninstall = resetAtUninstall;
         this.cs = cs;
+        // 8-bit controls are only meaningful when they can not be part of a multi-byte character
+        this.table = StandardCharsets.ISO_8859_1.equals(cs) ? TABLE_8BIT : TABLE_7BIT;
         setMode(mode);
     }
 
@@ -123,6 +152,35 @@ public class AnsiOutputStream extends FilterOutputStream {
         return width.getTerminalWidth();
     }
 
+    /**
+     * @since 2.4.3
+     */
+    public int getTerminalHeight() {
+        return width.getTerminalHeight();
+    }
+
+    /**
+     * Registers a listener notified when the terminal is resized.
+     * @return false if the size of the terminal is not cached, so that resizes can not be detected
+     * @since 2.4.3
+     */
+    public boolean addResizeListener(AnsiResizeListener listener) {
+        if (width instanceof CachedWidthSupplier) {
+            ((CachedWidthSupplier) width).addResizeListener(listener);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @since 2.4.3
+     */
+    public void removeResizeListener(AnsiResizeListener listener) {
+        if (width instanceof CachedWidthSupplier) {
+            ((CachedWidthSupplier) width).removeResizeListener(listener);
+        }
+    }
+
     public AnsiType getType() {
         return type;
     }
@@ -139,6 +197,9 @@ public class AnsiOutputStream extends FilterOutputStream {
         ap = mode == AnsiMode.Strip
                 ? new AnsiProcessor(out)
                 : mode == AnsiMode.Force || processor == null ? new ColorsAnsiProcessor(out, colors) : processor;
+        this.strip = mode == AnsiMode.Strip;
+        // nothing but text may reach a stripped stream
+        this.drop = strip || ap.dropsUnprocessedSequences();
         this.mode = mode;
     }
 
@@ -155,183 +216,544 @@ public class AnsiOutputStream extends FilterOutputStream {
      */
     @Override
     public void write(int data) throws IOException {
-        switch (state) {
-            case LOOKING_FOR_FIRST_ESC_CHAR:
-                if (data == FIRST_ESC_CHAR) {
-                    buffer[pos++] = (byte) data;
-                    state = LOOKING_FOR_SECOND_ESC_CHAR;
-                } else {
-                    out.write(data);
-                }
-                break;
+        AnsiMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.written(1);
+        }
+        process(data);
+    }
 
-            case LOOKING_FOR_SECOND_ESC_CHAR:
-                buffer[pos++] = (byte) data;
-                if (data == SECOND_ESC_CHAR) {
-                    state = LOOKING_FOR_NEXT_ARG;
-                } else if (data == SECOND_OSC_CHAR) {
-                    state = LOOKING_FOR_OSC_COMMAND;
-                } else if (data == SECOND_CHARSET0_CHAR) {
-                    options.add(0);
-                    state = LOOKING_FOR_CHARSET;
-                } else if (data == SECOND_CHARSET1_CHAR) {
-                    options.add(1);
-                    state = LOOKING_FOR_CHARSET;
-                } else {
-                    reset(false);
+    private void process(int data) throws IOException {
+        data &= 0xff;
+        int entry = table[state << 8 | data];
+        int prev = state;
+        state = state(entry);
+        switch (action(entry)) {
+            case PRINT:
+                out.write(data);
+                if (metrics != null) {
+                    metrics.text(1);
                 }
-                break;
+                return;
 
-            case LOOKING_FOR_NEXT_ARG:
-                buffer[pos++] = (byte) data;
-                if ('"' == data) {
-                    startOfValue = pos - 1;
-                    state = LOOKING_FOR_STR_ARG_END;
-                } else if ('0' <= data && data <= '9') {
-                    startOfValue = pos - 1;
-                    state = LOOKING_FOR_INT_ARG_END;
-                } else if (';' == data) {
-                    options.add(null);
-                } else if ('?' == data) {
-                    options.add('?');
-                } else if ('=' == data) {
-                    options.add('=');
-                } else {
-                    processEscapeCommand(data);
-                }
+            case COLLECT:
+                append(data);
                 break;
-            default:
+
+            case ESCAPE_START:
+                abort(prev);
+                state = ESCAPE;
+                append(data);
                 break;
 
-            case LOOKING_FOR_INT_ARG_END:
-                buffer[pos++] = (byte) data;
-                if (!('0' <= data && data <= '9')) {
-                    String strValue = new String(buffer, startOfValue, (pos - 1) - startOfValue);
-                    Integer value = Integer.valueOf(strValue);
-                    options.add(value);
-                    if (data == ';') {
-                        state = LOOKING_FOR_NEXT_ARG;
-                    } else {
-                        processEscapeCommand(data);
-                    }
+            case CSI_START:
+                if (data >= 0x80) {
+                    abort(prev);
+                    state = CSI_ENTRY;
                 }
+                append(data);
                 break;
 
-            case LOOKING_FOR_STR_ARG_END:
-                buffer[pos++] = (byte) data;
-                if ('"' != data) {
-                    String value = new String(buffer, startOfValue, (pos - 1) - startOfValue, cs);
-                    options.add(value);
-                    if (data == ';') {
-                        state = LOOKING_FOR_NEXT_ARG;
-                    } else {
-                        processEscapeCommand(data);
-                    }
+            case INTERMEDIATE:
+                append(data);
+                if (prev == ESCAPE || prev == ESCAPE_INTERMEDIATE) {
+                    // only a single intermediate byte is supported in escape sequences
+                    intermediate = intermediate == 0 ? data : -1;
+                } else if (!strip) {
+                    options.addChar((char) data);
                 }
                 break;
 
-            case LOOKING_FOR_OSC_COMMAND:
-                buffer[pos++] = (byte) data;
-                if ('0' <= data && data <= '9') {
-                    startOfValue = pos - 1;
-                    state = LOOKING_FOR_OSC_COMMAND_END;
+            case PARAM:
+                append(data);
+                if (strip) {
+                    // dropped sequences do not need any option, see stripEscapeCommand
+                    break;
+                } else if (data == ';') {
+                    if (!number) {
+                        options.addNone();
+                    }
+                    number = false;
+                } else if (number) {
+                    options.appendDigit(data - '0');
                 } else {
-                    reset(false);
+                    options.addInt(data - '0');
+                    number = true;
                 }
                 break;
 
-            case LOOKING_FOR_OSC_COMMAND_END:
-                buffer[pos++] = (byte) data;
-                if (';' == data) {
-                    String strValue = new String(buffer, startOfValue, (pos - 1) - startOfValue);
-                    Integer value = Integer.valueOf(strValue);
-                    options.add(value);
-                    startOfValue = pos;
-                    state = LOOKING_FOR_OSC_PARAM;
-                } else if ('0' <= data && data <= '9') {
-                    // already pushed digit to buffer, just keep looking
-                } else {
-                    // oops, did not expect this
-                    reset(false);
+            case ESC_DISPATCH:
+                append(data);
+                processEscapeSequence(data);
+                return;
+
+            case CSI_DISPATCH:
+                append(data);
+                processEscapeCommand(data);
+                return;
+
+            case CSI_IGNORED:
+                append(data);
+                if (metrics != null && !strip) {
+                    metrics.aborted();
                 }
-                break;
+                reset(strip);
+                return;
 
-            case LOOKING_FOR_OSC_PARAM:
-                buffer[pos++] = (byte) data;
-                if (BEL == data) {
-                    String value = new String(buffer, startOfValue, (pos - 1) - startOfValue, cs);
-                    options.add(value);
-                    processOperatingSystemCommand();
-                } else if (FIRST_ESC_CHAR == data) {
-                    state = LOOKING_FOR_ST;
-                } else {
-                    // just keep looking while adding text
+            case STRING_START:
+                if (data >= 0x80) {
+                    abort(prev);
+                    state = state(entry);
                 }
-                break;
+                append(data);
+                startString(data < 0x80 ? data : data - 0x40);
+                return;
+
+            case STRING_PUT:
+                putString(data);
+                return;
+
+            case STRING_ESC:
+                if (stringMode == STRING_BUFFER) {
+                    if (pos == MAX_STRING_LENGTH) {
+                        // the ESC byte is written with the terminator or when the string is aborted
+                        overflowString();
+                    } else {
+                        append(data);
+                    }
+                }
+                return;
+
+            case STRING_END:
+                endString(prev, data);
+                return;
+
+            case STRING_ABORT:
+                abortString(prev, true);
+                // the ESC byte starts a new sequence
+                process(ESC);
+                process(data);
+                return;
+
+            case ABORT:
+                abort(prev);
+                out.write(data);
+                return;
+        }
 
-            case LOOKING_FOR_ST:
-                buffer[pos++] = (byte) data;
-                if (SECOND_ST_CHAR == data) {
-                    String value = new String(buffer, startOfValue, (pos - 2) - startOfValue, cs);
-                    options.add(value);
-                    processOperatingSystemCommand();
-                } else {
-                    state = LOOKING_FOR_OSC_PARAM;
+        // Is it just too long?
+        if (pos >= MAX_ESCAPE_SEQUENCE_LENGTH) {
+            if (metrics != null) {
+                metrics.aborted();
+            }
+            reset(false);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Plain text runs, as well as the content of OSC and control strings, are processed
+     * in bulk, the state machine is only run at escape sequence boundaries.
+     */
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if ((off | len | (b.length - (len + off)) | (off + len)) < 0) {
+            throw new IndexOutOfBoundsException();
+        }
+        AnsiMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.written(len);
+        }
+        int end = off + len;
+        int i = off;
+        while (i < end) {
+            if (state == GROUND || state == OSC_STRING || state == CONTROL_STRING) {
+                int start = i;
+                int row = state << 8;
+                int same = table[row | (b[i] & 0xff)];
+                while (i < end && table[row | (b[i] & 0xff)] == same) {
+                    i++;
                 }
-                break;
+                if (i > start) {
+                    int action = action(same);
+                    if (action == PRINT) {
+                        out.write(b, start, i - start);
+                        if (metrics != null) {
+                            metrics.text(i - start);
+                        }
+                    } else if (action == STRING_PUT) {
+                        putString(b, start, i - start);
+                    } else {
+                        i = start;
+                    }
+                }
+                if (i == end) {
+                    break;
+                }
+            }
+            // process the escape sequence one byte at a time
+            process(b[i++] & 0xff);
+        }
+    }
 
-            case LOOKING_FOR_CHARSET:
-                options.add((char) data);
-                processCharsetSelect();
-                break;
+    private void append(int data) {
+        if (pos == buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.min(buffer.length * 2, MAX_STRING_LENGTH));
         }
+        buffer[pos++] = (byte) data;
+    }
 
-        // Is it just too long?
-        if (pos >= buffer.length) {
+    /**
+     * Aborts the sequence which was being parsed in the given state, writing it as is.
+     */
+    private void abort(int state) throws IOException {
+        if (metrics != null && (pos > 0 || state != GROUND)) {
+            metrics.aborted();
+        }
+        if (state == OSC_STRING || state == CONTROL_STRING || state == STRING_ESCAPE) {
+            abortString(state, false);
+        } else {
             reset(false);
         }
     }
 
-    private void processCharsetSelect() throws IOException {
+    private void startString(int type) throws IOException {
+        stringType = type;
+        startOfValue = pos;
+        stringMode = STRING_BUFFER;
+        if (type != ']' && !strip) {
+            try {
+                stringMode = ap != null && ap.processControlString(type) || drop ? STRING_SKIP : STRING_WRITE;
+            } catch (RuntimeException e) {
+                reset(true);
+                throw e;
+            }
+            if (stringMode == STRING_WRITE) {
+                out.write(buffer, 0, pos);
+            }
+            pos = 0;
+        }
+    }
+
+    private void putString(int data) throws IOException {
+        if (stringMode == STRING_BUFFER && pos == MAX_STRING_LENGTH) {
+            overflowString();
+        }
+        if (stringMode == STRING_BUFFER) {
+            append(data);
+        } else if (stringMode == STRING_WRITE) {
+            out.write(data);
+        }
+    }
+
+    private void putString(byte[] b, int off, int len) throws IOException {
+        if (stringMode == STRING_BUFFER && pos + len > MAX_STRING_LENGTH) {
+            overflowString();
+        }
+        if (stringMode == STRING_BUFFER) {
+            if (pos + len > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.min(Math.max(buffer.length * 2, pos + len), MAX_STRING_LENGTH));
+            }
+            System.arraycopy(b, off, buffer, pos, len);
+            pos += len;
+        } else if (stringMode == STRING_WRITE) {
+            out.write(b, off, len);
+        }
+    }
+
+    /**
+     * The string is too long to be buffered, write it as is, or drop it if unprocessed sequences are dropped.
+     */
+    private void overflowString() throws IOException {
+        if (metrics != null) {
+            metrics.overflowed();
+        }
+        if (drop) {
+            stringMode = STRING_SKIP;
+        } else {
+            out.write(buffer, 0, pos);
+            stringMode = STRING_WRITE;
+        }
+        pos = 0;
+    }
+
+    private void endString(int prev, int data) throws IOException {
+        if (stringMode == STRING_WRITE) {
+            if (prev == STRING_ESCAPE) {
+                out.write(ESC);
+            }
+            out.write(data);
+            sequence(stringType == ']' ? Sequence.Osc : Sequence.ControlString, false, 0);
+            reset(true);
+        } else if (stringMode == STRING_SKIP || stringType != ']' || strip) {
+            sequence(stringType == ']' ? Sequence.Osc : Sequence.ControlString, true, 0);
+            reset(true);
+        } else if (pos == MAX_STRING_LENGTH) {
+            // no room left for the terminator, the buffer already holds the ESC byte if any
+            overflowString();
+            if (!drop) {
+                out.write(data);
+            }
+            sequence(Sequence.Osc, false, 0);
+            reset(true);
+        } else {
+            append(data);
+            processOperatingSystemCommand(pos - (prev == STRING_ESCAPE ? 2 : 1));
+        }
+    }
+
+    /**
+     * Aborts the current string, writing it as is if it was buffered or written.
+     * @param state the state of the parser
+     * @param restart true if the pending ESC byte starts a new sequence and must not be written
+     */
+    private void abortString(int state, boolean restart) throws IOException {
+        if (stringMode == STRING_BUFFER) {
+            if (restart) {
+                pos--;
+            }
+            reset(false);
+        } else {
+            if (stringMode == STRING_WRITE && state == STRING_ESCAPE && !restart) {
+                out.write(ESC);
+            }
+            reset(true);
+        }
+    }
+
+    private void processEscapeSequence(int command) throws IOException {
+        if (strip) {
+            sequence(Sequence.Escape, true, 0);
+            reset(true);
+            return;
+        }
         try {
-            reset(ap != null && ap.processCharsetSelect(options));
+            long start = metrics != null ? System.nanoTime() : 0;
+            boolean processed;
+            int set = intermediate > 0 ? "()*+".indexOf(intermediate) : -1;
+            if (set >= 0) {
+                options.addInt(set);
+                options.addChar((char) command);
+                processed = ap != null && ap.processCharsetSelect(options.toList());
+            } else {
+                processed = ap != null && intermediate == 0 && ap.processEscapeSequence(command);
+            }
+            sequence(Sequence.Escape, processed, start);
+            reset(processed);
         } catch (RuntimeException e) {
             reset(true);
             throw e;
         }
     }
 
-    private void processOperatingSystemCommand() throws IOException {
+    private void processOperatingSystemCommand(int end) throws IOException {
+        // the command is a number followed by a ';' and the text
+        int command = 0;
+        int i = startOfValue;
+        while (i < end && '0' <= buffer[i] && buffer[i] <= '9' && command <= (Integer.MAX_VALUE - 9) / 10) {
+            command = command * 10 + (buffer[i++] - '0');
+        }
+        if (i == startOfValue || i == end || buffer[i] != ';') {
+            sequence(Sequence.Osc, false, 0);
+            reset(false);
+            return;
+        }
+        options.addInt(command);
+        options.addString(new String(buffer, i + 1, end - (i + 1), cs));
         try {
-            reset(ap != null && ap.processOperatingSystemCommand(options));
+            long start = metrics != null ? System.nanoTime() : 0;
+            boolean processed = ap != null && ap.processOperatingSystemCommand(options.toList());
+            sequence(Sequence.Osc, processed, start);
+            reset(processed);
         } catch (RuntimeException e) {
             reset(true);
             throw e;
         }
     }
 
+    /**
+     * @return true if no escape sequence is being parsed, so that text can be written directly
+     */
+    boolean isGround() {
+        return state == GROUND;
+    }
+
+    Charset getCharset() {
+        return cs;
+    }
+
+    /**
+     * Writes encoded text which does not contain any escape sequence, see {@link AnsiWriter}.
+     */
+    void writeText(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        if (metrics != null) {
+            metrics.written(len);
+            metrics.text(len);
+        }
+    }
+
+    /**
+     * Processes a complete OSC whose text has already been decoded, see {@link AnsiWriter}.
+     * @param text the content of the command, between <code>ESC ]</code> and the terminator
+     * @param terminator the terminator, used to write the command as is if it is not processed
+     */
+    void writeOperatingSystemCommand(String text, String terminator) throws IOException {
+        if (strip) {
+            sequence(Sequence.Osc, true, 0);
+            return;
+        }
+        int command = 0;
+        int i = 0;
+        while (i < text.length()
+                && '0' <= text.charAt(i)
+                && text.charAt(i) <= '9'
+                && command <= (Integer.MAX_VALUE - 9) / 10) {
+            command = command * 10 + (text.charAt(i++) - '0');
+        }
+        boolean processed = false;
+        if (i > 0 && i < text.length() && text.charAt(i) == ';') {
+            options.addInt(command);
+            options.addString(text.substring(i + 1));
+            try {
+                long start = metrics != null ? System.nanoTime() : 0;
+                processed = ap != null && ap.processOperatingSystemCommand(options.toList());
+                sequence(Sequence.Osc, processed, start);
+            } finally {
+                options.clear();
+            }
+        } else {
+            sequence(Sequence.Osc, false, 0);
+        }
+        if (!processed && !drop) {
+            out.write(("\033]" + text + terminator).getBytes(cs));
+        }
+    }
+
     private void processEscapeCommand(int data) throws IOException {
+        if (strip) {
+            sequence(Sequence.Csi, true, 0);
+            stripEscapeCommand(data);
+            return;
+        }
         try {
-            reset(ap != null && ap.processEscapeCommand(options, data));
+            long start = metrics != null ? System.nanoTime() : 0;
+            boolean processed = ap != null && ap.processEscapeCommand(options, data);
+            sequence(Sequence.Csi, processed, start);
+            reset(processed);
         } catch (RuntimeException e) {
             reset(true);
             throw e;
         }
     }
 
+    /**
+     * Drops the sequence, rendering cursor moves as spaces and new lines
+     * as done by the default {@link AnsiProcessor}.  No options are collected in this mode,
+     * so the count is parsed from the buffered sequence.  Sequences with a private marker
+     * or an intermediate byte are not cursor moves and are only dropped.
+     */
+    private void stripEscapeCommand(int command) throws IOException {
+        int count = command == 'C' || command == 'E' ? cursorCount() : 0;
+        reset(true);
+        byte[] bytes = command == 'C' ? SPACES : NEW_LINES;
+        while (count > 0) {
+            int n = Math.min(count, bytes.length);
+            out.write(bytes, 0, n);
+            count -= n;
+        }
+    }
+
+    /**
+     * @return the count of the buffered cursor move, i.e. its first parameter, or 0 if it can not be rendered
+     */
+    private int cursorCount() {
+        // skip ESC [ or the 8-bit CSI, the parameters end before the final byte
+        int i = buffer[0] == ESC ? 2 : 1;
+        int end = pos - 1;
+        int count = 0;
+        boolean first = true;
+        boolean digits = false;
+        for (; i < end; i++) {
+            int b = buffer[i];
+            if (b == ';') {
+                first = false;
+            } else if ('0' <= b && b <= '9') {
+                if (first) {
+                    if (count > (Integer.MAX_VALUE - (b - '0')) / 10) {
+                        // too large to be rendered
+                        return 0;
+                    }
+                    count = count * 10 + (b - '0');
+                    digits = true;
+                }
+            } else {
+                // a private marker or an intermediate byte
+                return 0;
+            }
+        }
+        return digits ? count : 1;
+    }
+
+    /**
+     * Reports a complete sequence to the metrics, if any.
+     * @param start the time the processor was called at, or 0 if it was not
+     */
+    private void sequence(Sequence sequence, boolean processed, long start) {
+        if (metrics != null) {
+            metrics.sequence(sequence, processed, start != 0 ? System.nanoTime() - start : 0);
+        }
+    }
+
     /**
      * Resets all state to continue with regular parsing
      * @param skipBuffer if current buffer should be skipped or written to out
      * @throws IOException
      */
     private void reset(boolean skipBuffer) throws IOException {
-        if (!skipBuffer) {
+        if (!skipBuffer && pos > 0 && !drop) {
             out.write(buffer, 0, pos);
         }
         pos = 0;
         startOfValue = 0;
         options.clear();
-        state = LOOKING_FOR_FIRST_ESC_CHAR;
+        number = false;
+        intermediate = 0;
+        state = GROUND;
+        if (buffer.length > MAX_ESCAPE_SEQUENCE_LENGTH) {
+            buffer = new byte[MAX_ESCAPE_SEQUENCE_LENGTH];
+        }
+    }
+
+    /**
+     * @return the metrics receiving what this stream is doing, or <code>null</code>
+     * @since 2.4.3
+     */
+    public AnsiMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the metrics receiving what this stream is doing, such as {@link AnsiStatistics}.
+     * Metrics are disabled by default, and cost a field check per write and escape sequence when disabled.
+     * @param metrics the metrics, or <code>null</code> to disable them
+     * @since 2.4.3
+     */
+    public void setMetrics(AnsiMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        AnsiMetrics metrics = this.metrics;
+        if (metrics == null) {
+            out.flush();
+            return;
+        }
+        long start = System.nanoTime();
+        out.flush();
+        metrics.flushed(System.nanoTime() - start);
     }
 
     public void install() throws IOException {
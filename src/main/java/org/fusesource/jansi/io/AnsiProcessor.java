@@ -32,6 +32,24 @@ import java.util.Iterator;
  */
 @SuppressWarnings("unused")
 public class AnsiProcessor {
+    /**
+     * Whether a subclass still overrides the deprecated list based {@link #processEscapeCommand(ArrayList, int)}.
+     */
+    private static final ClassValue<Boolean> LEGACY_ESCAPE_COMMAND = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            for (Class<?> c = type; c != AnsiProcessor.class && c != null; c = c.getSuperclass()) {
+                try {
+                    c.getDeclaredMethod("processEscapeCommand", ArrayList.class, int.class);
+                    return true;
+                } catch (NoSuchMethodException e) {
+                    // check the super class
+                }
+            }
+            return false;
+        }
+    };
+
     protected final OutputStream os;
 
     public AnsiProcessor(OutputStream os) {
@@ -51,70 +69,92 @@ public class AnsiProcessor {
         }
     }
 
+    /**
+     * Process an escape command, reading its options from a primitive view.
+     * <p>
+     * Subclasses still overriding {@link #processEscapeCommand(ArrayList, int)} get their
+     * method called with boxed options instead.
+     * @param options the command options, only valid during this call
+     * @param command the final command character
+     * @return true if the escape command was processed.
+     * @throws IOException if an error occurs
+     * @since 2.4.3
+     */
+    protected boolean processEscapeCommand(AnsiOptions options, int command) throws IOException {
+        if (LEGACY_ESCAPE_COMMAND.get(getClass())) {
+            // overflowed numbers can not be converted, leave the sequence unprocessed
+            return !options.hasOverflow() && processEscapeCommand(options.toList(), command);
+        }
+        return doProcessEscapeCommand(options, command);
+    }
+
     /**
      * @return true if the escape command was processed.
+     * @deprecated use {@link #processEscapeCommand(AnsiOptions, int)} which does not box options
      */
+    @Deprecated
     protected boolean processEscapeCommand(ArrayList<Object> options, int command) throws IOException {
+        return doProcessEscapeCommand(AnsiOptions.of(options), command);
+    }
+
+    private boolean doProcessEscapeCommand(AnsiOptions options, int command) throws IOException {
         try {
             switch (command) {
                 case 'A':
-                    processCursorUp(optionInt(options, 0, 1));
+                    processCursorUp(options.intValue(0, 1));
                     return true;
                 case 'B':
-                    processCursorDown(optionInt(options, 0, 1));
+                    processCursorDown(options.intValue(0, 1));
                     return true;
                 case 'C':
-                    processCursorRight(optionInt(options, 0, 1));
+                    processCursorRight(options.intValue(0, 1));
                     return true;
                 case 'D':
-                    processCursorLeft(optionInt(options, 0, 1));
+                    processCursorLeft(options.intValue(0, 1));
                     return true;
                 case 'E':
-                    processCursorDownLine(optionInt(options, 0, 1));
+                    processCursorDownLine(options.intValue(0, 1));
                     return true;
                 case 'F':
-                    processCursorUpLine(optionInt(options, 0, 1));
+                    processCursorUpLine(options.intValue(0, 1));
                     return true;
                 case 'G':
-                    processCursorToColumn(optionInt(options, 0));
+                    processCursorToColumn(options.intValue(0));
                     return true;
                 case 'H':
                 case 'f':
-                    processCursorTo(optionInt(options, 0, 1), optionInt(options, 1, 1));
+                    processCursorTo(options.intValue(0, 1), options.intValue(1, 1));
                     return true;
                 case 'J':
-                    processEraseScreen(optionInt(options, 0, 0));
+                    processEraseScreen(options.intValue(0, 0));
                     return true;
                 case 'K':
-                    processEraseLine(optionInt(options, 0, 0));
+                    processEraseLine(options.intValue(0, 0));
                     return true;
                 case 'L':
-                    processInsertLine(optionInt(options, 0, 1));
+                    processInsertLine(options.intValue(0, 1));
                     return true;
                 case 'M':
-                    processDeleteLine(optionInt(options, 0, 1));
+                    processDeleteLine(options.intValue(0, 1));
                     return true;
                 case 'S':
-                    processScrollUp(optionInt(options, 0, 1));
+                    processScrollUp(options.intValue(0, 1));
                     return true;
                 case 'T':
-                    processScrollDown(optionInt(options, 0, 1));
+                    processScrollDown(options.intValue(0, 1));
                     return true;
                 case 'm':
                     // Validate all options are ints...
-                    for (Object next : options) {
-                        if (next != null && next.getClass() != Integer.class) {
-                            throw new IllegalArgumentException();
-                        }
+                    if (!options.isNumeric()) {
+                        throw new IllegalArgumentException();
                     }
 
                     int count = 0;
-                    Iterator<Object> optionsIterator = options.iterator();
-                    while (optionsIterator.hasNext()) {
-                        Object next = optionsIterator.next();
-                        if (next != null) {
+                    int size = options.size();
+                    for (int i = 0; i < size; i++) {
+                        if (options.type(i) != AnsiOptions.NONE) {
                             count++;
-                            int value = (Integer) next;
+                            int value = options.intValue(i);
                             if (30 <= value && value <= 37) {
                                 processSetForegroundColor(value - 30);
                             } else if (40 <= value && value <= 47) {
@@ -124,16 +164,20 @@ public class AnsiProcessor {
                             } else if (100 <= value && value <= 107) {
                                 processSetBackgroundColor(value - 100, true);
                             } else if (value == 38 || value == 48) {
-                                if (!optionsIterator.hasNext()) {
+                                if (i + 1 >= size) {
                                     continue;
                                 }
                                 // extended color like `esc[38;5;<index>m` or `esc[38;2;<r>;<g>;<b>m`
-                                int arg2or5 = getNextOptionInt(optionsIterator);
+                                i = nextOption(options, i);
+                                int arg2or5 = options.intValue(i);
                                 if (arg2or5 == 2) {
                                     // 24 bit color style like `esc[38;2;<r>;<g>;<b>m`
-                                    int r = getNextOptionInt(optionsIterator);
-                                    int g = getNextOptionInt(optionsIterator);
-                                    int b = getNextOptionInt(optionsIterator);
+                                    i = nextOption(options, i);
+                                    int r = options.intValue(i);
+                                    i = nextOption(options, i);
+                                    int g = options.intValue(i);
+                                    i = nextOption(options, i);
+                                    int b = options.intValue(i);
                                     if (r >= 0 && r <= 255 && g >= 0 && g <= 255 && b >= 0 && b <= 255) {
                                         if (value == 38) processSetForegroundColorExt(r, g, b);
                                         else processSetBackgroundColorExt(r, g, b);
@@ -142,7 +186,8 @@ public class AnsiProcessor {
                                     }
                                 } else if (arg2or5 == 5) {
                                     // 256 color style like `esc[38;5;<index>m`
-                                    int paletteIndex = getNextOptionInt(optionsIterator);
+                                    i = nextOption(options, i);
+                                    int paletteIndex = options.intValue(i);
                                     if (paletteIndex >= 0 && paletteIndex <= 255) {
                                         if (value == 38) processSetForegroundColorExt(paletteIndex);
                                         else processSetBackgroundColorExt(paletteIndex);
@@ -182,11 +227,11 @@ public class AnsiProcessor {
 
                 default:
                     if ('a' <= command && command <= 'z') {
-                        processUnknownExtension(options, command);
+                        processUnknownExtension(options.toList(), command);
                         return true;
                     }
                     if ('A' <= command && command <= 'Z') {
-                        processUnknownExtension(options, command);
+                        processUnknownExtension(options.toList(), command);
                         return true;
                     }
                     return false;
@@ -196,6 +241,23 @@ public class AnsiProcessor {
         return false;
     }
 
+    /**
+     * Helper for processEscapeCommand() to find the next non omitted option
+     * @param options the options
+     * @param index the index of the current option
+     * @return the index of the next option which is not {@link AnsiOptions#NONE}
+     * @throws IllegalArgumentException if no more non-null values left
+     * @since 2.4.3
+     */
+    protected static int nextOption(AnsiOptions options, int index) {
+        for (int i = index + 1; i < options.size(); i++) {
+            if (options.type(i) != AnsiOptions.NONE) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException();
+    }
+
     /**
      * @return true if the operating system command was processed.
      */
@@ -226,6 +288,51 @@ public class AnsiProcessor {
         return false;
     }
 
+    /**
+     * Process an escape sequence without intermediate bytes, i.e. <code>ESC</code> followed by a
+     * single character, such as <code>ESC 7</code> (save cursor) or <code>ESC 8</code> (restore cursor).
+     * @param command the final character
+     * @return true if the escape sequence was processed.
+     * @throws IOException if an error occurs
+     * @since 2.4.3
+     */
+    protected boolean processEscapeSequence(int command) throws IOException {
+        switch (command) {
+            case '7':
+                processSaveCursorPosition();
+                return true;
+            case '8':
+                processRestoreCursorPosition();
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Tells whether the sequences which are not processed, or which can not be parsed, are dropped
+     * instead of being written as is to the stream of the text.  The default implementation keeps them,
+     * so that the terminal can still interpret them.
+     * @return true to drop unprocessed sequences
+     * @since 2.4.3
+     */
+    protected boolean dropsUnprocessedSequences() {
+        return false;
+    }
+
+    /**
+     * Called at the start of a control string, i.e. <code>DCS</code>, <code>SOS</code>, <code>PM</code>
+     * or <code>APC</code>, to decide what to do with its content, which is then streamed up to and
+     * including the string terminator.  The default implementation drops control strings.
+     * @param type the character introducing the string: <code>'P'</code> (DCS), <code>'X'</code> (SOS),
+     *             <code>'^'</code> (PM) or <code>'_'</code> (APC)
+     * @return true if the control string is processed and should be dropped, false to write it as is.
+     * @since 2.4.3
+     */
+    protected boolean processControlString(int type) {
+        return true;
+    }
+
     /**
      * Process character set sequence.
      * @param options options
@@ -246,17 +353,6 @@ public class AnsiProcessor {
         return (Integer) value;
     }
 
-    private int optionInt(ArrayList<Object> options, int index, int defaultValue) {
-        if (options.size() > index) {
-            Object value = options.get(index);
-            if (value == null) {
-                return defaultValue;
-            }
-            return (Integer) value;
-        }
-        return defaultValue;
-    }
-
     /**
      * Process <code>CSI u</code> ANSI code, corresponding to <code>RCP – Restore Cursor Position</code>
      * @throws IOException IOException
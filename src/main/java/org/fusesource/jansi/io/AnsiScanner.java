@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2009-2023 the original author(s).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.jansi.io;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import static org.fusesource.jansi.io.AnsiStateTable.ESCAPE;
+import static org.fusesource.jansi.io.AnsiStateTable.GROUND;
+import static org.fusesource.jansi.io.AnsiStateTable.STRING_ABORT;
+import static org.fusesource.jansi.io.AnsiStateTable.TABLE_7BIT;
+import static org.fusesource.jansi.io.AnsiStateTable.TABLE_8BIT;
+import static org.fusesource.jansi.io.AnsiStateTable.action;
+import static org.fusesource.jansi.io.AnsiStateTable.state;
+
+/**
+ * Follows the bytes written to an {@link AnsiOutputStream} to tell where they can be split, that is
+ * where its parser is back to plain text, so that bytes written in between are not taken as part
+ * of an escape sequence.  In UTF-8, the bytes are also only split between characters.
+ *
+ * @since 2.4.3
+ */
+public final class AnsiScanner {
+
+    private final byte[] table;
+    private final boolean utf8;
+    private int state = GROUND;
+    private int continuations;
+
+    /**
+     * @param cs the charset of the {@link AnsiOutputStream}
+     */
+    public AnsiScanner(Charset cs) {
+        this.table = StandardCharsets.ISO_8859_1.equals(cs) ? TABLE_8BIT : TABLE_7BIT;
+        this.utf8 = StandardCharsets.UTF_8.equals(cs);
+    }
+
+    /**
+     * Scans the next byte.
+     * @param b the byte
+     * @return true if the bytes scanned so far can be followed by unrelated bytes
+     */
+    public boolean next(int b) {
+        b &= 0xff;
+        int entry = table[state << 8 | b];
+        if (action(entry) == STRING_ABORT) {
+            // the parser restarts with the ESC byte which did not terminate the string
+            entry = table[ESCAPE << 8 | b];
+        }
+        state = state(entry);
+        if (utf8) {
+            if (b >= 0x80 && b < 0xc0) {
+                continuations = Math.max(0, continuations - 1);
+            } else {
+                continuations = b >= 0xf0 ? 3 : b >= 0xe0 ? 2 : b >= 0xc0 ? 1 : 0;
+            }
+        }
+        return state == GROUND && continuations == 0;
+    }
+}
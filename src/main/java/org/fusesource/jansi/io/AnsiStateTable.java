@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2009-2023 the original author(s).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.jansi.io;
+
+/**
+ * The transition tables of the escape sequence parser used by {@link AnsiOutputStream},
+ * modeled after the DEC VT500 state diagram (see https://vt100.net/emu/dec_ansi_parser).
+ * <p>
+ * Each table has 256 entries per state, indexed by <code>state &lt;&lt; 8 | byte</code>.
+ * Each entry packs the action to perform in its high nibble and the next state in its low nibble.
+ * <p>
+ * The parser differs from the VT500 one on a few points, as it is a filter rather than a terminal:
+ * <ul>
+ *     <li>the parameters of device control strings are not parsed, DCS, SOS, PM and APC strings
+ *     are all handled as opaque control strings up to the string terminator</li>
+ *     <li>OSC strings are also terminated by BEL, as done by xterm</li>
+ *     <li>C0 controls inside an escape sequence abort it instead of being executed, so that the order
+ *     of the bytes is kept when the sequence is written as is</li>
+ *     <li>non ASCII bytes inside an escape sequence abort it, as they are most probably text</li>
+ *     <li>8-bit C1 controls are only recognized by the {@link #TABLE_8BIT} table, which must only be used
+ *     with single byte charsets where these bytes can not be part of a character</li>
+ * </ul>
+ */
+final class AnsiStateTable {
+
+    static final int GROUND = 0;
+    static final int ESCAPE = 1;
+    static final int ESCAPE_INTERMEDIATE = 2;
+    static final int CSI_ENTRY = 3;
+    static final int CSI_PARAM = 4;
+    static final int CSI_INTERMEDIATE = 5;
+    static final int CSI_IGNORE = 6;
+    static final int OSC_STRING = 7;
+    static final int CONTROL_STRING = 8;
+    static final int STRING_ESCAPE = 9;
+
+    private static final int STATES = 10;
+
+    /** Append the byte to the current sequence. */
+    static final int COLLECT = 0;
+    /** Write the byte through, it is either text or a C0 control. */
+    static final int PRINT = 1;
+    /** Abort the current sequence if any, and start an escape sequence. */
+    static final int ESCAPE_START = 2;
+    /** Start a CSI sequence, aborting the current sequence if introduced by a C1 control. */
+    static final int CSI_START = 3;
+    /** A private marker or an intermediate byte. */
+    static final int INTERMEDIATE = 4;
+    /** A digit or a separator of the CSI parameters. */
+    static final int PARAM = 5;
+
+    static final int ESC_DISPATCH = 6;
+    static final int CSI_DISPATCH = 7;
+    /** The final byte of a CSI sequence which could not be parsed. */
+    static final int CSI_IGNORED = 8;
+    /** Start an OSC or control string, aborting the current sequence if introduced by a C1 control. */
+    static final int STRING_START = 9;
+
+    static final int STRING_PUT = 10;
+    /** An ESC byte inside a string, which may start a string terminator. */
+    static final int STRING_ESC = 11;
+
+    static final int STRING_END = 12;
+    /** An ESC byte inside a string which is not followed by a string terminator. */
+    static final int STRING_ABORT = 13;
+    /** Abort the current sequence, which is written as is along with the byte. */
+    static final int ABORT = 14;
+
+    /** The table recognizing 7-bit controls only. */
+    static final byte[] TABLE_7BIT = build(false);
+    /** The table also recognizing 8-bit C1 controls. */
+    static final byte[] TABLE_8BIT = build(true);
+
+    private AnsiStateTable() {}
+
+    static int action(int entry) {
+        return (entry & 0xff) >>> 4;
+    }
+
+    static int state(int entry) {
+        return entry & 0x0f;
+    }
+
+    private static byte[] build(boolean c1) {
+        byte[] t = new byte[STATES << 8];
+
+        set(t, GROUND, 0x00, 0xff, PRINT, GROUND);
+
+        for (int state : new int[] {ESCAPE, ESCAPE_INTERMEDIATE, CSI_ENTRY, CSI_PARAM, CSI_INTERMEDIATE, CSI_IGNORE}) {
+            set(t, state, 0x00, 0x1f, ABORT, GROUND);
+            set(t, state, 0x7f, 0x7f, COLLECT, state);
+            set(t, state, 0x80, 0xff, ABORT, GROUND);
+        }
+
+        set(t, ESCAPE, 0x20, 0x2f, INTERMEDIATE, ESCAPE_INTERMEDIATE);
+        set(t, ESCAPE, 0x30, 0x7e, ESC_DISPATCH, GROUND);
+        set(t, ESCAPE, '[', '[', CSI_START, CSI_ENTRY);
+        set(t, ESCAPE, ']', ']', STRING_START, OSC_STRING);
+        set(t, ESCAPE, 'P', 'P', STRING_START, CONTROL_STRING);
+        set(t, ESCAPE, 'X', 'X', STRING_START, CONTROL_STRING);
+        set(t, ESCAPE, '^', '^', STRING_START, CONTROL_STRING);
+        set(t, ESCAPE, '_', '_', STRING_START, CONTROL_STRING);
+
+        set(t, ESCAPE_INTERMEDIATE, 0x20, 0x2f, INTERMEDIATE, ESCAPE_INTERMEDIATE);
+        set(t, ESCAPE_INTERMEDIATE, 0x30, 0x7e, ESC_DISPATCH, GROUND);
+
+        set(t, CSI_ENTRY, 0x20, 0x2f, INTERMEDIATE, CSI_INTERMEDIATE);
+        set(t, CSI_ENTRY, 0x30, 0x39, PARAM, CSI_PARAM);
+        set(t, CSI_ENTRY, ':', ':', COLLECT, CSI_IGNORE);
+        set(t, CSI_ENTRY, ';', ';', PARAM, CSI_PARAM);
+        set(t, CSI_ENTRY, 0x3c, 0x3f, INTERMEDIATE, CSI_PARAM);
+        set(t, CSI_ENTRY, 0x40, 0x7e, CSI_DISPATCH, GROUND);
+
+        set(t, CSI_PARAM, 0x20, 0x2f, INTERMEDIATE, CSI_INTERMEDIATE);
+        set(t, CSI_PARAM, 0x30, 0x39, PARAM, CSI_PARAM);
+        set(t, CSI_PARAM, ':', ':', COLLECT, CSI_IGNORE);
+        set(t, CSI_PARAM, ';', ';', PARAM, CSI_PARAM);
+        set(t, CSI_PARAM, 0x3c, 0x3f, COLLECT, CSI_IGNORE);
+        set(t, CSI_PARAM, 0x40, 0x7e, CSI_DISPATCH, GROUND);
+
+        set(t, CSI_INTERMEDIATE, 0x20, 0x2f, INTERMEDIATE, CSI_INTERMEDIATE);
+        set(t, CSI_INTERMEDIATE, 0x30, 0x3f, COLLECT, CSI_IGNORE);
+        set(t, CSI_INTERMEDIATE, 0x40, 0x7e, CSI_DISPATCH, GROUND);
+
+        set(t, CSI_IGNORE, 0x20, 0x3f, COLLECT, CSI_IGNORE);
+        set(t, CSI_IGNORE, 0x40, 0x7e, CSI_IGNORED, GROUND);
+
+        set(t, OSC_STRING, 0x00, 0xff, STRING_PUT, OSC_STRING);
+        set(t, OSC_STRING, 0x07, 0x07, STRING_END, GROUND);
+        set(t, OSC_STRING, 0x1b, 0x1b, STRING_ESC, STRING_ESCAPE);
+
+        set(t, CONTROL_STRING, 0x00, 0xff, STRING_PUT, CONTROL_STRING);
+        set(t, CONTROL_STRING, 0x1b, 0x1b, STRING_ESC, STRING_ESCAPE);
+
+        set(t, STRING_ESCAPE, 0x00, 0xff, STRING_ABORT, GROUND);
+        set(t, STRING_ESCAPE, '\\', '\\', STRING_END, GROUND);
+
+        for (int state = ESCAPE; state < STATES; state++) {
+            // CAN and SUB cancel any sequence
+            set(t, state, 0x18, 0x18, ABORT, GROUND);
+            set(t, state, 0x1a, 0x1a, ABORT, GROUND);
+            if (state != OSC_STRING && state != CONTROL_STRING) {
+                set(t, state, 0x1b, 0x1b, state == STRING_ESCAPE ? STRING_ABORT : ESCAPE_START, ESCAPE);
+            }
+        }
+        set(t, GROUND, 0x1b, 0x1b, ESCAPE_START, ESCAPE);
+
+        if (c1) {
+            for (int state = GROUND; state < STATES; state++) {
+                if (state != GROUND) {
+                    set(t, state, 0x80, 0x9f, ABORT, GROUND);
+                }
+                set(t, state, 0x9b, 0x9b, CSI_START, CSI_ENTRY);
+                set(t, state, 0x9d, 0x9d, STRING_START, OSC_STRING);
+                set(t, state, 0x90, 0x90, STRING_START, CONTROL_STRING);
+                set(t, state, 0x98, 0x98, STRING_START, CONTROL_STRING);
+                set(t, state, 0x9e, 0x9f, STRING_START, CONTROL_STRING);
+            }
+            set(t, OSC_STRING, 0x9c, 0x9c, STRING_END, GROUND);
+            set(t, CONTROL_STRING, 0x9c, 0x9c, STRING_END, GROUND);
+        }
+        return t;
+    }
+
+    private static void set(byte[] table, int state, int from, int to, int action, int next) {
+        for (int i = from; i <= to; i++) {
+            table[state << 8 | i] = (byte) (action << 4 | next);
+        }
+    }
+}
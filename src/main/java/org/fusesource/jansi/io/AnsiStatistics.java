@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) 2009-2023 the original author(s).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.jansi.io;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counts what {@link AnsiOutputStream}s are doing, with {@link LongAdder}s so that concurrent
+ * writers do not contend on the counters.
+ * <p>
+ * The counters can be published as an MXBean with {@link #register(String)}, for example to
+ * alert on a library flooding the console with escape sequences.
+ *
+ * @since 2.4.3
+ */
+public class AnsiStatistics implements AnsiMetrics, AnsiStatisticsMXBean {
+
+    /**
+     * The domain of the registered MXBeans.
+     */
+    public static final String DOMAIN = "org.fusesource.jansi";
+
+    private final LongAdder written = new LongAdder();
+    private final LongAdder text = new LongAdder();
+    private final LongAdder[] sequences = new LongAdder[Sequence.values().length];
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder aborted = new LongAdder();
+    private final LongAdder overflowed = new LongAdder();
+    private final LongAdder processorNanos = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder flushNanos = new LongAdder();
+
+    public AnsiStatistics() {
+        for (int i = 0; i < sequences.length; i++) {
+            sequences[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Registers those statistics in the platform MBean server, as
+     * <code>org.fusesource.jansi:type=AnsiStatistics,name=&lt;name&gt;</code>,
+     * replacing the statistics previously registered with that name.
+     * @param name the name of the stream
+     * @return the name of the MXBean
+     * @throws JMException if the MXBean can not be registered
+     */
+    public ObjectName register(String name) throws JMException {
+        ObjectName objectName = ObjectName.getInstance(DOMAIN + ":type=AnsiStatistics,name=" + ObjectName.quote(name));
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        if (server.isRegistered(objectName)) {
+            server.unregisterMBean(objectName);
+        }
+        server.registerMBean(this, objectName);
+        return objectName;
+    }
+
+    /**
+     * Registers those statistics like {@link #register(String)}, ignoring any failure, including
+     * a runtime without the <code>java.management</code> module.  Callers of this method do not
+     * need the JMX classes to be present.
+     * @param name the name of the stream
+     * @return true if the MXBean has been registered
+     */
+    public boolean tryRegister(String name) {
+        try {
+            register(name);
+            return true;
+        } catch (Exception | LinkageError e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void written(int bytes) {
+        written.add(bytes);
+    }
+
+    @Override
+    public void text(int bytes) {
+        text.add(bytes);
+    }
+
+    @Override
+    public void sequence(Sequence sequence, boolean processed, long nanos) {
+        sequences[sequence.ordinal()].increment();
+        if (processed) {
+            this.processed.increment();
+        }
+        if (nanos > 0) {
+            processorNanos.add(nanos);
+        }
+    }
+
+    @Override
+    public void aborted() {
+        aborted.increment();
+    }
+
+    @Override
+    public void overflowed() {
+        overflowed.increment();
+    }
+
+    @Override
+    public void flushed(long nanos) {
+        flushes.increment();
+        flushNanos.add(nanos);
+    }
+
+    /**
+     * @return the number of sequences of the given kind
+     */
+    public long getSequences(Sequence sequence) {
+        return sequences[sequence.ordinal()].sum();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return written.sum();
+    }
+
+    @Override
+    public long getTextBytes() {
+        return text.sum();
+    }
+
+    /**
+     * @return the bytes written which are not plain text, i.e. escape sequences and their strings
+     */
+    @Override
+    public long getEscapeBytes() {
+        return Math.max(0, written.sum() - text.sum());
+    }
+
+    @Override
+    public long getCsiSequences() {
+        return getSequences(Sequence.Csi);
+    }
+
+    @Override
+    public long getEscapeSequences() {
+        return getSequences(Sequence.Escape);
+    }
+
+    @Override
+    public long getOscSequences() {
+        return getSequences(Sequence.Osc);
+    }
+
+    @Override
+    public long getControlStrings() {
+        return getSequences(Sequence.ControlString);
+    }
+
+    /**
+     * @return the number of sequences emulated, rewritten (such as colors converted by
+     * {@link ColorsAnsiProcessor}) or stripped, instead of being written as is
+     */
+    @Override
+    public long getProcessedSequences() {
+        return processed.sum();
+    }
+
+    @Override
+    public long getAbortedSequences() {
+        return aborted.sum();
+    }
+
+    @Override
+    public long getOverflowedStrings() {
+        return overflowed.sum();
+    }
+
+    @Override
+    public long getProcessorNanos() {
+        return processorNanos.sum();
+    }
+
+    @Override
+    public long getFlushes() {
+        return flushes.sum();
+    }
+
+    @Override
+    public long getFlushNanos() {
+        return flushNanos.sum();
+    }
+
+    @Override
+    public void reset() {
+        written.reset();
+        text.reset();
+        for (LongAdder sequence : sequences) {
+            sequence.reset();
+        }
+        processed.reset();
+        aborted.reset();
+        overflowed.reset();
+        processorNanos.reset();
+        flushes.reset();
+        flushNanos.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "AnsiStatistics{"
+                + "bytesWritten=" + getBytesWritten()
+                + ", textBytes=" + getTextBytes()
+                + ", csiSequences=" + getCsiSequences()
+                + ", escapeSequences=" + getEscapeSequences()
+                + ", oscSequences=" + getOscSequences()
+                + ", controlStrings=" + getControlStrings()
+                + ", processedSequences=" + getProcessedSequences()
+                + ", abortedSequences=" + getAbortedSequences()
+                + ", overflowedStrings=" + getOverflowedStrings()
+                + ", processorNanos=" + getProcessorNanos()
+                + ", flushes=" + getFlushes()
+                + ", flushNanos=" + getFlushNanos()
+                + "}";
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright (C) 2009-2023 the original author(s).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.jansi.io;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A writer recognizing escape sequences on characters, and encoding the text directly
+ * for an {@link AnsiOutputStream}.
+ * <p>
+ * Text between escape sequences is encoded with a reused encoder, in the charset of the
+ * AnsiOutputStream, and written to its target without going through the escape sequence
+ * parser.  The text of OSC commands, such as window titles, is handed to the
+ * {@link AnsiProcessor} as is, instead of being encoded and decoded again.  The other
+ * escape sequences are parsed by the AnsiOutputStream.
+ * <p>
+ * Bytes must not be written to the AnsiOutputStream while a sequence written to this
+ * writer is not complete.
+ *
+ * @since 2.4.3
+ */
+public class AnsiWriter extends Writer {
+
+    private static final char ESC = 27;
+    private static final char BEL = 7;
+    private static final int MAX_OSC_LENGTH = 64 * 1024;
+
+    private static final int GROUND = 0;
+    private static final int ESCAPE = 1;
+    private static final int OSC = 2;
+    private static final int OSC_ESCAPE = 3;
+    private static final int SEQUENCE = 4;
+
+    private final AnsiOutputStream out;
+    private final CharsetEncoder encoder;
+    private final boolean asciiCompatible;
+    private final boolean eightBit;
+    private final ByteBuffer bytes = ByteBuffer.allocate(8192);
+    private final char[] single = new char[1];
+    private final char[] pair = new char[2];
+    private final StringBuilder osc = new StringBuilder();
+    private int state = GROUND;
+    private char highSurrogate;
+
+    public AnsiWriter(AnsiOutputStream out) {
+        this.out = out;
+        Charset cs = out.getCharset();
+        this.encoder = cs.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.asciiCompatible = isAsciiCompatible(cs);
+        // the same condition as the AnsiOutputStream to recognize 8-bit controls
+        this.eightBit = StandardCharsets.ISO_8859_1.equals(cs);
+    }
+
+    private static boolean isAsciiCompatible(Charset cs) {
+        char[] ascii = new char[128];
+        for (int i = 0; i < ascii.length; i++) {
+            ascii[i] = (char) i;
+        }
+        byte[] encoded = new String(ascii).getBytes(cs);
+        if (encoded.length != ascii.length) {
+            return false;
+        }
+        for (int i = 0; i < encoded.length; i++) {
+            if (encoded[i] != i) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        synchronized (lock) {
+            single[0] = (char) c;
+            write(single, 0, 1);
+        }
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        if ((off | len | (cbuf.length - (len + off)) | (off + len)) < 0) {
+            throw new IndexOutOfBoundsException();
+        }
+        synchronized (lock) {
+            int end = off + len;
+            int i = off;
+            while (i < end) {
+                char c = cbuf[i];
+                switch (state) {
+                    case GROUND:
+                        if (!out.isGround()) {
+                            // a sequence has been started on the stream itself
+                            state = SEQUENCE;
+                            break;
+                        }
+                        int start = i;
+                        while (i < end && !isControl(cbuf[i])) {
+                            i++;
+                        }
+                        if (i > start) {
+                            encode(cbuf, start, i, true);
+                        }
+                        if (i < end && highSurrogate != 0) {
+                            // not followed by the second half
+                            byte[] replacement = encoder.replacement();
+                            out.writeText(replacement, 0, replacement.length);
+                            highSurrogate = 0;
+                        }
+                        if (i < end) {
+                            if (cbuf[i] == ESC) {
+                                state = ESCAPE;
+                                i++;
+                            } else {
+                                state = SEQUENCE;
+                            }
+                        }
+                        break;
+                    case ESCAPE:
+                        if (c == ']') {
+                            osc.setLength(0);
+                            state = OSC;
+                            i++;
+                        } else {
+                            out.write(ESC);
+                            state = SEQUENCE;
+                        }
+                        break;
+                    case OSC:
+                        i++;
+                        if (c == BEL) {
+                            endOsc("\007");
+                        } else if (c == ESC) {
+                            state = OSC_ESCAPE;
+                        } else if (osc.length() < MAX_OSC_LENGTH) {
+                            osc.append(c);
+                        } else {
+                            // too long to be buffered, let the stream handle it
+                            abortOsc("");
+                            i--;
+                        }
+                        break;
+                    case OSC_ESCAPE:
+                        if (c == '\\') {
+                            i++;
+                            endOsc("\033\\");
+                        } else {
+                            abortOsc("\033");
+                        }
+                        break;
+                    default:
+                        // let the stream parse the sequence up to its end
+                        if (c < 0x80) {
+                            out.write(c);
+                            i++;
+                        } else {
+                            int n = Character.isHighSurrogate(c) && i + 1 < end ? 2 : 1;
+                            encode(cbuf, i, i + n, false);
+                            i += n;
+                        }
+                        if (out.isGround()) {
+                            state = GROUND;
+                        }
+                        break;
+                }
+            }
+        }
+    }
+
+    private boolean isControl(char c) {
+        return c == ESC || eightBit && c >= 0x80 && c <= 0x9f;
+    }
+
+    private void endOsc(String terminator) throws IOException {
+        out.writeOperatingSystemCommand(osc.toString(), terminator);
+        osc.setLength(0);
+        state = GROUND;
+    }
+
+    private void abortOsc(String suffix) throws IOException {
+        String text = "\033]" + osc + suffix;
+        osc.setLength(0);
+        out.write(text.getBytes(out.getCharset()));
+        state = out.isGround() ? GROUND : SEQUENCE;
+    }
+
+    /**
+     * Encodes characters, to the target of the stream if they are text, else through its parser.
+     */
+    private void encode(char[] cbuf, int start, int end, boolean text) throws IOException {
+        if (highSurrogate != 0) {
+            pair[0] = highSurrogate;
+            pair[1] = cbuf[start++];
+            highSurrogate = 0;
+            encode(CharBuffer.wrap(pair, 0, 2), text);
+        }
+        if (asciiCompatible) {
+            while (start < end && cbuf[start] < 0x80) {
+                if (!bytes.hasRemaining()) {
+                    drain(text);
+                }
+                bytes.put((byte) cbuf[start++]);
+            }
+        }
+        if (start < end) {
+            CharBuffer in = CharBuffer.wrap(cbuf, start, end - start);
+            encode(in, text);
+            if (in.hasRemaining()) {
+                // the first half of a surrogate pair, completed by the next write
+                highSurrogate = in.get();
+            }
+        }
+        drain(text);
+    }
+
+    private void encode(CharBuffer in, boolean text) throws IOException {
+        while (encoder.encode(in, bytes, false).isOverflow()) {
+            drain(text);
+        }
+    }
+
+    private void drain(boolean text) throws IOException {
+        bytes.flip();
+        if (text) {
+            out.writeText(bytes.array(), 0, bytes.limit());
+        } else {
+            out.write(bytes.array(), 0, bytes.limit());
+        }
+        bytes.clear();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        synchronized (lock) {
+            out.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (state == ESCAPE) {
+                out.write(ESC);
+            } else if (state == OSC || state == OSC_ESCAPE) {
+                abortOsc(state == OSC_ESCAPE ? "\033" : "");
+            }
+            if (highSurrogate != 0) {
+                out.write(encoder.replacement());
+                highSurrogate = 0;
+            }
+            state = GROUND;
+            out.close();
+        }
+    }
+}
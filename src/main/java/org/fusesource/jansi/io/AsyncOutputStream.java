@@ -0,0 +1,325 @@
+/*
+ * Copyright (C) 2009-2023 the original author(s).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.jansi.io;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An output stream which hands the written bytes over to a single writer thread.
+ * <p>
+ * Callers copy their chunks into a lock-free queue and return immediately, while the
+ * writer thread drains the queue into the underlying stream, typically an {@link AnsiOutputStream}
+ * which then parses the escape sequences off the callers' threads.  The underlying stream is
+ * flushed each time the queue runs empty, so bursts of small writes end up in large batches.
+ * <p>
+ * The number of queued bytes is bounded: once the capacity is reached, callers block until
+ * the writer thread catches up.  {@link #flush()} does not wait for the queued bytes to be written,
+ * use {@link #drain()} for that.  Pending bytes are also drained by {@link #close()} and when
+ * the JVM shuts down.  {@link #detach()} stops the writer thread without closing the underlying
+ * stream, which is then written synchronously.
+ * <p>
+ * Errors raised by the underlying stream are reported by the next call to this stream,
+ * and any bytes queued afterwards are discarded.
+ *
+ * @since 2.4.3
+ */
+public class AsyncOutputStream extends FilterOutputStream {
+
+    public static final int DEFAULT_CAPACITY = 256 * 1024;
+
+    private static final int OPEN = 0;
+    private static final int DETACHED = 1;
+    private static final int CLOSED = 2;
+
+    private final ConcurrentLinkedQueue<byte[]> queue = new ConcurrentLinkedQueue<>();
+    private final Semaphore space;
+    private final int capacity;
+    private final Thread writer;
+    private final Thread hook;
+    private final AtomicLong submitted = new AtomicLong();
+    private final Object lock = new Object();
+    private final Object stateLock = new Object();
+    private volatile long completed;
+    private volatile boolean waiting;
+    private volatile int state; // written while holding stateLock
+    private volatile IOException failure;
+
+    public AsyncOutputStream(OutputStream out) {
+        this(out, "jansi-async", DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param out the stream written by the writer thread
+     * @param name the name of the writer thread
+     * @param capacity the maximum number of bytes waiting in the queue
+     */
+    public AsyncOutputStream(OutputStream out, String name, int capacity) {
+        super(out);
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.space = new Semaphore(capacity);
+        this.writer = new Thread(this::run, name);
+        this.writer.setDaemon(true);
+        this.writer.start();
+        this.hook = new Thread(this::drainQuietly, name + "-shutdown");
+        Runtime.getRuntime().addShutdownHook(hook);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        enqueue(new byte[] {(byte) b});
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (len > 0) {
+            byte[] chunk = new byte[len];
+            System.arraycopy(b, off, chunk, 0, len);
+            enqueue(chunk);
+        }
+    }
+
+    /**
+     * @return whether the current thread is the writer thread of this stream
+     */
+    public boolean isWriterThread() {
+        return Thread.currentThread() == writer;
+    }
+
+    /**
+     * Checks for errors without waiting: the writer thread flushes the underlying
+     * stream as soon as it has nothing left to write.
+     */
+    @Override
+    public void flush() throws IOException {
+        checkFailure();
+        if (state == DETACHED) {
+            synchronized (stateLock) {
+                if (state == DETACHED) {
+                    out.flush();
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits until all the bytes written so far have been written and flushed
+     * to the underlying stream.
+     * @throws IOException if the underlying stream failed
+     */
+    public void drain() throws IOException {
+        long target = submitted.get();
+        boolean interrupted = false;
+        synchronized (lock) {
+            while (completed < target && writer.isAlive()) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        checkFailure();
+    }
+
+    /**
+     * Drains the pending bytes and stops the writer thread, leaving the underlying stream open.
+     * The bytes written afterwards are written synchronously.
+     * @throws IOException if the underlying stream failed
+     */
+    public void detach() throws IOException {
+        synchronized (stateLock) {
+            if (state == OPEN) {
+                state = DETACHED;
+                stopWriter();
+            }
+        }
+        checkFailure();
+    }
+
+    /**
+     * Drains the pending bytes, stops the writer thread and closes the underlying stream.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (stateLock) {
+            if (state == CLOSED) {
+                return;
+            }
+            boolean running = state == OPEN;
+            state = CLOSED;
+            if (running) {
+                stopWriter();
+            }
+        }
+        try {
+            checkFailure();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Stops the writer thread once the queue is empty, then writes the chunks left behind.
+     * Called while holding the state lock, so that no chunk can be queued any more.
+     */
+    private void stopWriter() throws IOException {
+        try {
+            Runtime.getRuntime().removeShutdownHook(hook);
+        } catch (IllegalStateException e) {
+            // the JVM is already shutting down
+        }
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        boolean dirty = false;
+        for (byte[] chunk; (chunk = queue.poll()) != null; ) {
+            if (failure == null) {
+                try {
+                    out.write(chunk, 0, chunk.length);
+                    dirty = true;
+                } catch (IOException | RuntimeException e) {
+                    fail(e);
+                }
+            }
+            space.release(Math.min(chunk.length, capacity));
+        }
+        if (dirty) {
+            try {
+                out.flush();
+            } catch (IOException | RuntimeException e) {
+                fail(e);
+            }
+        }
+        synchronized (lock) {
+            completed = submitted.get();
+            lock.notifyAll();
+        }
+    }
+
+    private void enqueue(byte[] chunk) throws IOException {
+        checkFailure();
+        if (state == CLOSED) {
+            throw new IOException("Stream closed");
+        }
+        // a chunk larger than the queue may still be written, once the queue is empty
+        int permits = Math.min(chunk.length, capacity);
+        if (!space.tryAcquire(permits)) {
+            try {
+                space.acquire(permits);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+        synchronized (stateLock) {
+            if (state == OPEN) {
+                // counted before being queued, so that drain() never misses a chunk queued ahead
+                submitted.incrementAndGet();
+                queue.offer(chunk);
+            } else {
+                space.release(permits);
+                if (state == CLOSED) {
+                    throw new IOException("Stream closed");
+                }
+                out.write(chunk, 0, chunk.length);
+                return;
+            }
+        }
+        if (waiting) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        IOException e = failure;
+        if (e != null) {
+            throw new IOException("Asynchronous write failed", e);
+        }
+    }
+
+    private void drainQuietly() {
+        try {
+            drain();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void fail(Exception e) {
+        if (failure == null) {
+            failure = e instanceof IOException ? (IOException) e : new IOException(e);
+        }
+    }
+
+    private void run() {
+        long count = 0;
+        boolean dirty = false;
+        while (true) {
+            byte[] chunk = queue.poll();
+            if (chunk != null) {
+                if (failure == null) {
+                    try {
+                        out.write(chunk, 0, chunk.length);
+                        dirty = true;
+                    } catch (IOException | RuntimeException e) {
+                        fail(e);
+                    }
+                }
+                space.release(Math.min(chunk.length, capacity));
+                count++;
+                continue;
+            }
+            if (dirty) {
+                dirty = false;
+                try {
+                    out.flush();
+                } catch (IOException | RuntimeException e) {
+                    fail(e);
+                }
+            }
+            if (completed != count) {
+                synchronized (lock) {
+                    completed = count;
+                    lock.notifyAll();
+                }
+            }
+            if (state != OPEN && queue.isEmpty()) {
+                return;
+            }
+            waiting = true;
+            if (queue.isEmpty() && state == OPEN) {
+                LockSupport.park(this);
+            }
+            waiting = false;
+        }
+    }
+}
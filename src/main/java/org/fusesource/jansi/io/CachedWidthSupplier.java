@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2009-2023 the original author(s).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.jansi.io;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.fusesource.jansi.AnsiResizeListener;
+
+/**
+ * A {@link AnsiOutputStream.WidthSupplier} caching the size of the terminal, so that
+ * querying it does not cost a system call or an external process each time.
+ * <p>
+ * The cached size is refreshed when the terminal is resized, if the JVM lets us
+ * handle the <code>SIGWINCH</code> signal (see {@link #watchResize()}), or else once
+ * the time to live has elapsed.  Listeners are notified when a refresh finds a new size.
+ *
+ * @since 2.4.3
+ */
+public class CachedWidthSupplier implements AnsiOutputStream.WidthSupplier {
+
+    /**
+     * Queries the size of the terminal.
+     */
+    @FunctionalInterface
+    public interface SizeSupplier {
+        /**
+         * @return the width and the height of the terminal, the height being 0 if unknown
+         */
+        int[] getTerminalSize();
+    }
+
+    private static final List<WeakReference<CachedWidthSupplier>> WATCHED = new CopyOnWriteArrayList<>();
+    private static Boolean signalHandled; // synchronized on CachedWidthSupplier.class
+
+    private final SizeSupplier supplier;
+    private final long ttl;
+    private final List<AnsiResizeListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile int[] size;
+    private volatile long expiry;
+    private volatile boolean watched;
+
+    /**
+     * @param supplier the actual size query
+     * @param ttl the time in milliseconds during which the size is cached, unless the
+     *            resizes are watched; a value of 0 or less caches it until {@link #invalidate()}
+     */
+    public CachedWidthSupplier(SizeSupplier supplier, long ttl) {
+        this.supplier = supplier;
+        this.ttl = TimeUnit.MILLISECONDS.toNanos(ttl);
+    }
+
+    @Override
+    public int getTerminalWidth() {
+        return size()[0];
+    }
+
+    @Override
+    public int getTerminalHeight() {
+        return size()[1];
+    }
+
+    /**
+     * Forgets the cached size, which will be queried again on the next call.
+     */
+    public void invalidate() {
+        size = null;
+    }
+
+    /**
+     * Queries the size of the terminal, notifying the listeners if it has changed.
+     * A listener failing does not keep the next ones from being notified, the first
+     * failure is rethrown once all of them have been.
+     */
+    public synchronized void refresh() {
+        int[] previous = size;
+        int[] current = supplier.getTerminalSize();
+        size = current;
+        expiry = System.nanoTime() + ttl;
+        if (previous != null && (previous[0] != current[0] || previous[1] != current[1])) {
+            RuntimeException failure = null;
+            for (AnsiResizeListener listener : listeners) {
+                try {
+                    listener.onResize(current[0], current[1]);
+                } catch (RuntimeException e) {
+                    if (failure == null) {
+                        failure = e;
+                    } else {
+                        failure.addSuppressed(e);
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    public void addResizeListener(AnsiResizeListener listener) {
+        listeners.add(listener);
+        // make sure the next refresh has a size to compare with
+        size();
+    }
+
+    public void removeResizeListener(AnsiResizeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Refreshes the size each time the JVM receives a <code>SIGWINCH</code> signal instead
+     * of when the time to live elapses.
+     * @return true if the signal can be handled, false if the time to live still applies
+     */
+    public boolean watchResize() {
+        if (!watched && handleSignal()) {
+            WATCHED.add(new WeakReference<>(this));
+            watched = true;
+        }
+        return watched;
+    }
+
+    private int[] size() {
+        int[] s = size;
+        if (s == null || !watched && ttl > 0 && System.nanoTime() - expiry >= 0) {
+            synchronized (this) {
+                refresh();
+                s = size;
+            }
+        }
+        return s;
+    }
+
+    private static void onSignal() {
+        for (WeakReference<CachedWidthSupplier> ref : WATCHED) {
+            CachedWidthSupplier supplier = ref.get();
+            if (supplier != null) {
+                try {
+                    supplier.refresh();
+                } catch (RuntimeException e) {
+                    // a failing supplier or listener must not starve the other ones
+                }
+            } else {
+                WATCHED.remove(ref);
+            }
+        }
+    }
+
+    /**
+     * Installs a <code>SIGWINCH</code> handler through <code>sun.misc.Signal</code>, which is
+     * accessed reflectively as it is not available on all JVMs, chaining to any previous handler.
+     */
+    private static synchronized boolean handleSignal() {
+        if (signalHandled == null) {
+            boolean handled;
+            try {
+                ClassLoader loader = CachedWidthSupplier.class.getClassLoader();
+                Class<?> signalClass = Class.forName("sun.misc.Signal");
+                Class<?> handlerClass = Class.forName("sun.misc.SignalHandler");
+                Object signal = signalClass.getConstructor(String.class).newInstance("WINCH");
+                Object dfl = handlerClass.getField("SIG_DFL").get(null);
+                Object ign = handlerClass.getField("SIG_IGN").get(null);
+                Method handle = handlerClass.getMethod("handle", signalClass);
+                Object[] previous = new Object[1];
+                Object handler =
+                        Proxy.newProxyInstance(loader, new Class<?>[] {handlerClass}, (proxy, method, args) -> {
+                            if (method.getDeclaringClass() == Object.class) {
+                                switch (method.getName()) {
+                                    case "equals":
+                                        return proxy == args[0];
+                                    case "hashCode":
+                                        return System.identityHashCode(proxy);
+                                    default:
+                                        return "CachedWidthSupplier.SIGWINCH";
+                                }
+                            }
+                            try {
+                                onSignal();
+                            } finally {
+                                // the previous handler is called whatever happened to ours
+                                Object chained = previous[0];
+                                if (chained != null && chained != dfl && chained != ign) {
+                                    handle.invoke(chained, args);
+                                }
+                            }
+                            return null;
+                        });
+                previous[0] = signalClass
+                        .getMethod("handle", signalClass, handlerClass)
+                        .invoke(null, signal, handler);
+                handled = true;
+            } catch (Throwable t) {
+                // no such signal (Windows) or no sun.misc.Signal
+                handled = false;
+            }
+            signalHandled = handled;
+        }
+        return signalHandled;
+    }
+}
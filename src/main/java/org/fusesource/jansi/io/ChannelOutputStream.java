@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2009-2023 the original author(s).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.jansi.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A buffering output stream writing to a channel through a direct byte buffer, with no synchronization.
+ * <p>
+ * Small writes are accumulated in native memory, so that a flush hands the bytes to the channel
+ * without any further copy.  Writes larger than the buffer bypass it: if the channel supports
+ * gathering writes, the buffered bytes and the large slice are written in a single call.
+ * <p>
+ * Note that {@link java.nio.channels.FileChannel}s are interruptible: if the writing thread is
+ * interrupted, the channel, and thus the underlying file descriptor, is closed.
+ *
+ * @since 2.4.3
+ */
+public class ChannelOutputStream extends OutputStream {
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    private final ByteBuffer[] slices = new ByteBuffer[2];
+
+    public ChannelOutputStream(WritableByteChannel channel) {
+        this(channel, FastBufferedOutputStream.DEFAULT_SIZE);
+    }
+
+    public ChannelOutputStream(WritableByteChannel channel, int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size must be positive");
+        }
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(size);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (!buffer.hasRemaining()) {
+            flushBuffer();
+        }
+        buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (len <= buffer.remaining()) {
+            buffer.put(b, off, len);
+            return;
+        }
+        if (len < buffer.capacity()) {
+            flushBuffer();
+            buffer.put(b, off, len);
+            return;
+        }
+        ByteBuffer src = ByteBuffer.wrap(b, off, len);
+        if (buffer.position() > 0 && channel instanceof GatheringByteChannel) {
+            buffer.flip();
+            slices[0] = buffer;
+            slices[1] = src;
+            try {
+                GatheringByteChannel gathering = (GatheringByteChannel) channel;
+                while (src.hasRemaining()) {
+                    gathering.write(slices);
+                }
+            } finally {
+                slices[1] = null;
+                buffer.clear();
+            }
+        } else {
+            flushBuffer();
+            writeFully(src);
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (buffer.position() > 0) {
+            buffer.flip();
+            try {
+                writeFully(buffer);
+            } finally {
+                buffer.clear();
+            }
+        }
+    }
+
+    private void writeFully(ByteBuffer src) throws IOException {
+        while (src.hasRemaining()) {
+            channel.write(src);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBuffer();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -81,23 +81,88 @@ public class Colors {
     };
     // spotless:on
 
+    /**
+     * The CIELAB coordinates of the default palette, stored as consecutive l, a, b triplets.
+     */
+    private static final double[] DEFAULT_COLORS_256_LAB = new double[DEFAULT_COLORS_256.length * 3];
+
+    /**
+     * The linearized value of each 8 bits sRGB component.
+     */
+    private static final double[] PIVOT_RGB = new double[256];
+
+    /**
+     * The closest ansi color for each color of the default palette.
+     */
+    private static final int[] DEFAULT_COLORS_256_TO_16 = new int[DEFAULT_COLORS_256.length];
+
+    /**
+     * Direct mapped caches of rounded 24-bit colors, for 16 and 256 colors.
+     * Each entry packs the low bits of the hashed color along with the index + 1,
+     * so that a single int read or write is needed and 0 denotes an empty slot.
+     */
+    private static final int CACHE_BITS = 11;
+
+    private static final int[] CACHE_16 = new int[1 << CACHE_BITS];
+    private static final int[] CACHE_256 = new int[1 << CACHE_BITS];
+
+    private static final double epsilon = 216.0 / 24389.0;
+    private static final double kappa = 24389.0 / 27.0;
+
+    static {
+        for (int i = 0; i < PIVOT_RGB.length; i++) {
+            PIVOT_RGB[i] = pivotRgb(i / 255.0);
+        }
+        for (int i = 0; i < DEFAULT_COLORS_256.length; i++) {
+            rgb2cielab(DEFAULT_COLORS_256[i], DEFAULT_COLORS_256_LAB, i * 3);
+        }
+        for (int i = 0; i < DEFAULT_COLORS_256.length; i++) {
+            DEFAULT_COLORS_256_TO_16[i] = i < 16 ? i : closest(DEFAULT_COLORS_256[i], 16);
+        }
+    }
+
     public static int roundColor(int col, int max) {
         if (col >= max) {
-            int c = DEFAULT_COLORS_256[col];
-            col = roundColor(c, DEFAULT_COLORS_256, max);
+            if (max == 16) {
+                return DEFAULT_COLORS_256_TO_16[col];
+            }
+            col = roundRgb(DEFAULT_COLORS_256[col], max);
         }
         return col;
     }
 
     public static int roundRgbColor(int r, int g, int b, int max) {
-        return roundColor((r << 16) + (g << 8) + b, DEFAULT_COLORS_256, max);
+        return roundRgb((r << 16) + (g << 8) + b, max);
+    }
+
+    private static int roundRgb(int color, int max) {
+        int[] cache = max == 256 ? CACHE_256 : max == 16 ? CACHE_16 : null;
+        if (cache == null || (color & ~0xFFFFFF) != 0) {
+            return closest(color, max);
+        }
+        // multiplying by an odd constant is a bijection on 24 bits: the high bits
+        // select the slot and the low bits identify the color within that slot
+        int hash = (color * 0x9E3779B1) & 0xFFFFFF;
+        int slot = hash >>> (24 - CACHE_BITS);
+        int key = hash & ((1 << (24 - CACHE_BITS)) - 1);
+        int entry = cache[slot];
+        if (entry != 0 && entry >>> 9 == key) {
+            return (entry & 0x1FF) - 1;
+        }
+        int index = closest(color, max);
+        cache[slot] = key << 9 | (index + 1);
+        return index;
     }
 
-    private static int roundColor(int color, int[] colors, int max) {
+    private static int closest(int color, int max) {
+        double[] lab = new double[3];
+        rgb2cielab(color, lab, 0);
         double best_distance = Integer.MAX_VALUE;
         int best_index = Integer.MAX_VALUE;
         for (int idx = 0; idx < max; idx++) {
-            double d = cie76(color, colors[idx]);
+            double d = sqr(lab[0] - DEFAULT_COLORS_256_LAB[idx * 3])
+                    + sqr(lab[1] - DEFAULT_COLORS_256_LAB[idx * 3 + 1])
+                    + sqr(lab[2] - DEFAULT_COLORS_256_LAB[idx * 3 + 2]);
             if (d <= best_distance) {
                 best_index = idx;
                 best_distance = d;
@@ -106,57 +171,26 @@ public class Colors {
         return best_index;
     }
 
-    private static double cie76(int c1, int c2) {
-        return scalar(rgb2cielab(c1), rgb2cielab(c2));
-    }
-
-    private static double scalar(double[] c1, double[] c2) {
-        return sqr(c1[0] - c2[0]) + sqr(c1[1] - c2[1]) + sqr(c1[2] - c2[2]);
-    }
-
-    private static double[] rgb(int color) {
-        int r = (color >> 16) & 0xFF;
-        int g = (color >> 8) & 0xFF;
-        int b = (color >> 0) & 0xFF;
-        return new double[] {r / 255.0, g / 255.0, b / 255.0};
-    }
-
-    private static double[] rgb2cielab(int color) {
-        return rgb2cielab(rgb(color));
-    }
-
-    private static double[] rgb2cielab(double[] rgb) {
-        return xyz2lab(rgb2xyz(rgb));
-    }
-
-    private static double[] rgb2xyz(double[] rgb) {
-        double vr = pivotRgb(rgb[0]);
-        double vg = pivotRgb(rgb[1]);
-        double vb = pivotRgb(rgb[2]);
+    private static void rgb2cielab(int color, double[] lab, int offset) {
+        double vr = PIVOT_RGB[(color >> 16) & 0xFF];
+        double vg = PIVOT_RGB[(color >> 8) & 0xFF];
+        double vb = PIVOT_RGB[(color >> 0) & 0xFF];
         // http://www.brucelindbloom.com/index.html?Eqn_RGB_XYZ_Matrix.html
         double x = vr * 0.4124564 + vg * 0.3575761 + vb * 0.1804375;
         double y = vr * 0.2126729 + vg * 0.7151522 + vb * 0.0721750;
         double z = vr * 0.0193339 + vg * 0.1191920 + vb * 0.9503041;
-        return new double[] {x, y, z};
+        double fx = pivotXyz(x);
+        double fy = pivotXyz(y);
+        double fz = pivotXyz(z);
+        lab[offset] = 116.0 * fy - 16.0;
+        lab[offset + 1] = 500.0 * (fx - fy);
+        lab[offset + 2] = 200.0 * (fy - fz);
     }
 
     private static double pivotRgb(double n) {
         return n > 0.04045 ? Math.pow((n + 0.055) / 1.055, 2.4) : n / 12.92;
     }
 
-    private static double[] xyz2lab(double[] xyz) {
-        double fx = pivotXyz(xyz[0]);
-        double fy = pivotXyz(xyz[1]);
-        double fz = pivotXyz(xyz[2]);
-        double l = 116.0 * fy - 16.0;
-        double a = 500.0 * (fx - fy);
-        double b = 200.0 * (fy - fz);
-        return new double[] {l, a, b};
-    }
-
-    private static final double epsilon = 216.0 / 24389.0;
-    private static final double kappa = 24389.0 / 27.0;
-
     private static double pivotXyz(double n) {
         return n > epsilon ? Math.cbrt(n) : (kappa * n + 16) / 116;
     }
@@ -18,7 +18,7 @@ package org.fusesource.jansi.io;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
 
 import org.fusesource.jansi.AnsiColors;
 
@@ -28,6 +28,8 @@ import org.fusesource.jansi.AnsiColors;
 public class ColorsAnsiProcessor extends AnsiProcessor {
 
     private final AnsiColors colors;
+    private byte[] buffer = new byte[32];
+    private int len;
 
     public ColorsAnsiProcessor(OutputStream os, AnsiColors colors) {
         super(os);
@@ -35,102 +37,118 @@ public class ColorsAnsiProcessor extends AnsiProcessor {
     }
 
     @Override
-    protected boolean processEscapeCommand(ArrayList<Object> options, int command) throws IOException {
+    protected boolean processEscapeCommand(AnsiOptions options, int command) throws IOException {
         if (command == 'm' && (colors == AnsiColors.Colors256 || colors == AnsiColors.Colors16)) {
             // Validate all options are ints...
+            if (!options.isNumeric()) {
+                return false;
+            }
             boolean has38or48 = false;
-            for (Object next : options) {
-                if (next != null && next.getClass() != Integer.class) {
-                    throw new IllegalArgumentException();
+            int size = options.size();
+            for (int i = 0; i < size; i++) {
+                if (options.type(i) == AnsiOptions.INT) {
+                    int value = options.intValue(i);
+                    has38or48 |= value == 38 || value == 48;
                 }
-                Integer value = (Integer) next;
-                has38or48 |= value == 38 || value == 48;
             }
             // SGR commands do not contain an extended color, so just transfer the buffer
             if (!has38or48) {
                 return false;
             }
-            StringBuilder sb = new StringBuilder(32);
-            sb.append('\033').append('[');
-            boolean first = true;
-            Iterator<Object> optionsIterator = options.iterator();
-            while (optionsIterator.hasNext()) {
-                Object next = optionsIterator.next();
-                if (next != null) {
-                    int value = (Integer) next;
-                    if (value == 38 || value == 48) {
-                        // extended color like `esc[38;5;<index>m` or `esc[38;2;<r>;<g>;<b>m`
-                        int arg2or5 = getNextOptionInt(optionsIterator);
-                        if (arg2or5 == 2) {
-                            // 24 bit color style like `esc[38;2;<r>;<g>;<b>m`
-                            int r = getNextOptionInt(optionsIterator);
-                            int g = getNextOptionInt(optionsIterator);
-                            int b = getNextOptionInt(optionsIterator);
-                            if (colors == AnsiColors.Colors256) {
-                                int col = Colors.roundRgbColor(r, g, b, 256);
-                                if (!first) {
-                                    sb.append(';');
-                                }
-                                first = false;
-                                sb.append(value);
-                                sb.append(';');
-                                sb.append(5);
-                                sb.append(';');
-                                sb.append(col);
-                            } else {
-                                int col = Colors.roundRgbColor(r, g, b, 16);
-                                if (!first) {
-                                    sb.append(';');
-                                }
-                                first = false;
-                                sb.append(
-                                        value == 38
-                                                ? col >= 8 ? 90 + col - 8 : 30 + col
-                                                : col >= 8 ? 100 + col - 8 : 40 + col);
-                            }
-                        } else if (arg2or5 == 5) {
-                            // 256 color style like `esc[38;5;<index>m`
-                            int paletteIndex = getNextOptionInt(optionsIterator);
-                            if (colors == AnsiColors.Colors256) {
-                                if (!first) {
-                                    sb.append(';');
-                                }
-                                first = false;
-                                sb.append(value);
-                                sb.append(';');
-                                sb.append(5);
-                                sb.append(';');
-                                sb.append(paletteIndex);
-                            } else {
-                                int col = Colors.roundColor(paletteIndex, 16);
-                                if (!first) {
-                                    sb.append(';');
-                                }
-                                first = false;
-                                sb.append(
-                                        value == 38
-                                                ? col >= 8 ? 90 + col - 8 : 30 + col
-                                                : col >= 8 ? 100 + col - 8 : 40 + col);
-                            }
+            try {
+                rewriteColors(options);
+            } catch (IllegalArgumentException e) {
+                // missing extended color arguments, transfer the buffer unchanged
+                return false;
+            }
+            os.write(buffer, 0, len);
+            return true;
+
+        } else {
+            return false;
+        }
+    }
+
+    private void rewriteColors(AnsiOptions options) {
+        len = 0;
+        append('\033');
+        append('[');
+        boolean first = true;
+        int size = options.size();
+        for (int i = 0; i < size; i++) {
+            if (options.type(i) != AnsiOptions.NONE) {
+                int value = options.intValue(i);
+                if (!first) {
+                    append(';');
+                }
+                first = false;
+                if (value == 38 || value == 48) {
+                    // extended color like `esc[38;5;<index>m` or `esc[38;2;<r>;<g>;<b>m`
+                    i = nextOption(options, i);
+                    int arg2or5 = options.intValue(i);
+                    if (arg2or5 == 2) {
+                        // 24 bit color style like `esc[38;2;<r>;<g>;<b>m`
+                        i = nextOption(options, i);
+                        int r = options.intValue(i);
+                        i = nextOption(options, i);
+                        int g = options.intValue(i);
+                        i = nextOption(options, i);
+                        int b = options.intValue(i);
+                        if (r < 0 || r > 255 || g < 0 || g > 255 || b < 0 || b > 255) {
+                            throw new IllegalArgumentException();
+                        }
+                        if (colors == AnsiColors.Colors256) {
+                            appendExtendedColor(value, Colors.roundRgbColor(r, g, b, 256));
                         } else {
+                            appendColor16(value, Colors.roundRgbColor(r, g, b, 16));
+                        }
+                    } else if (arg2or5 == 5) {
+                        // 256 color style like `esc[38;5;<index>m`
+                        i = nextOption(options, i);
+                        int paletteIndex = options.intValue(i);
+                        if (paletteIndex < 0 || paletteIndex > 255) {
                             throw new IllegalArgumentException();
                         }
-                    } else {
-                        if (!first) {
-                            sb.append(';');
+                        if (colors == AnsiColors.Colors256) {
+                            appendExtendedColor(value, paletteIndex);
+                        } else {
+                            appendColor16(value, Colors.roundColor(paletteIndex, 16));
                         }
-                        first = false;
-                        sb.append(value);
+                    } else {
+                        throw new IllegalArgumentException();
                     }
+                } else {
+                    append(value);
                 }
             }
-            sb.append('m');
-            os.write(sb.toString().getBytes());
-            return true;
+        }
+        append('m');
+    }
 
-        } else {
-            return false;
+    private void appendExtendedColor(int value, int paletteIndex) {
+        append(value);
+        append(';');
+        append(5);
+        append(';');
+        append(paletteIndex);
+    }
+
+    private void appendColor16(int value, int col) {
+        append(value == 38 ? col >= 8 ? 90 + col - 8 : 30 + col : col >= 8 ? 100 + col - 8 : 40 + col);
+    }
+
+    private void append(char c) {
+        if (len == buffer.length) {
+            buffer = Arrays.copyOf(buffer, len * 2);
         }
+        buffer[len++] = (byte) c;
+    }
+
+    private void append(int value) {
+        if (value >= 10) {
+            append(value / 10);
+        }
+        append((char) ('0' + value % 10));
     }
 
     @Override
@@ -142,4 +160,14 @@ public class ColorsAnsiProcessor extends AnsiProcessor {
     protected boolean processCharsetSelect(ArrayList<Object> options) {
         return false;
     }
+
+    @Override
+    protected boolean processEscapeSequence(int command) {
+        return false;
+    }
+
+    @Override
+    protected boolean processControlString(int type) {
+        return false;
+    }
 }
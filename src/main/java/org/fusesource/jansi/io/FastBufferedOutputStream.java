@@ -19,16 +19,38 @@ import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 
+import org.fusesource.jansi.internal.JansiEvents;
+
 /**
  * A simple buffering output stream with no synchronization.
+ * <p>
+ * Writes to the underlying stream are reported as <code>org.fusesource.jansi.Flush</code>
+ * flight recorder events, see {@link JansiEvents}.
  */
 public class FastBufferedOutputStream extends FilterOutputStream {
 
-    protected final byte[] buf = new byte[8192];
+    /**
+     * The default buffer size.
+     * @since 2.4.3
+     */
+    public static final int DEFAULT_SIZE = 8192;
+
+    protected final byte[] buf;
     protected int count;
 
     public FastBufferedOutputStream(OutputStream out) {
+        this(out, DEFAULT_SIZE);
+    }
+
+    /**
+     * @since 2.4.3
+     */
+    public FastBufferedOutputStream(OutputStream out, int size) {
         super(out);
+        if (size <= 0) {
+            throw new IllegalArgumentException("size must be positive");
+        }
+        this.buf = new byte[size];
     }
 
     @Override
@@ -43,7 +65,9 @@ public class FastBufferedOutputStream extends FilterOutputStream {
     public void write(byte b[], int off, int len) throws IOException {
         if (len >= buf.length) {
             flushBuffer();
+            Object event = JansiEvents.beginFlush();
             out.write(b, off, len);
+            JansiEvents.endFlush(event, len);
             return;
         }
         if (len > buf.length - count) {
@@ -55,14 +79,22 @@ public class FastBufferedOutputStream extends FilterOutputStream {
 
     private void flushBuffer() throws IOException {
         if (count > 0) {
+            Object event = JansiEvents.beginFlush();
             out.write(buf, 0, count);
+            JansiEvents.endFlush(event, count);
             count = 0;
         }
     }
 
     @Override
     public void flush() throws IOException {
-        flushBuffer();
+        Object event = JansiEvents.beginFlush();
+        int bytes = count;
+        if (count > 0) {
+            out.write(buf, 0, count);
+            count = 0;
+        }
         out.flush();
+        JansiEvents.endFlush(event, bytes);
     }
 }
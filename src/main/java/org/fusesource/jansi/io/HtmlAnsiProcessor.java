@@ -0,0 +1,295 @@
+/*
+ * Copyright (C) 2009-2023 the original author(s).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.jansi.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+import org.fusesource.jansi.AnsiColors;
+import org.fusesource.jansi.AnsiMode;
+import org.fusesource.jansi.AnsiType;
+
+/**
+ * An ANSI processor converting colored text to HTML.
+ * <p>
+ * The text is HTML escaped and the SGR sequences are converted to <code>&lt;span&gt;</code>
+ * elements with inline styles.  A span is only written when styled text follows, so that
+ * consecutive sequences which do not change the style, or which are not followed by any
+ * text, do not produce any markup.  The other escape sequences, including the ones which can not
+ * be parsed, are dropped.  The processor
+ * only keeps the current style, so any amount of text can be converted in constant memory.
+ * <p>
+ * The processor must be used together with its {@link #getTextStream() text stream}:
+ * <pre>
+ * HtmlAnsiProcessor html = new HtmlAnsiProcessor(new FastBufferedOutputStream(file));
+ * AnsiOutputStream out = new AnsiOutputStream(html.getTextStream(), null, AnsiMode.Default,
+ *         html, AnsiType.Emulation, AnsiColors.TrueColor, cs, null, null, false);
+ * </pre>
+ * or, to convert a whole stream, with {@link #convert(InputStream, OutputStream, Charset)}.
+ * The HTML is written in the charset of the text, which must be ASCII compatible, and is meant
+ * to be embedded in a <code>&lt;pre&gt;</code> element.
+ *
+ * @since 2.4.3
+ */
+public class HtmlAnsiProcessor extends RenderingAnsiProcessor {
+
+    private static final byte[] LT = "&lt;".getBytes();
+    private static final byte[] GT = "&gt;".getBytes();
+    private static final byte[] AMP = "&amp;".getBytes();
+    private static final byte[] SPAN_END = "</span>".getBytes();
+
+    private final TextStream text = new TextStream();
+    private final StringBuilder css = new StringBuilder();
+
+    // the current style
+    private int fg;
+    private int bg;
+    private int attributes;
+
+    // the style of the open span
+    private boolean spanOpen;
+    private int spanFg;
+    private int spanBg;
+    private int spanAttributes;
+
+    public HtmlAnsiProcessor(OutputStream os) {
+        super(os);
+    }
+
+    /**
+     * Converts ANSI colored text to HTML.
+     * @param in the text
+     * @param html the stream receiving the HTML, which is flushed but not closed
+     * @param cs the charset of the text, which must be ASCII compatible
+     * @throws IOException if an error occurs
+     */
+    public static void convert(InputStream in, OutputStream html, Charset cs) throws IOException {
+        FastBufferedOutputStream buffered = new FastBufferedOutputStream(html, 64 * 1024);
+        HtmlAnsiProcessor processor = new HtmlAnsiProcessor(buffered);
+        AnsiOutputStream out = new AnsiOutputStream(
+                processor.getTextStream(),
+                null,
+                AnsiMode.Default,
+                processor,
+                AnsiType.Emulation,
+                AnsiColors.TrueColor,
+                cs,
+                null,
+                null,
+                false);
+        byte[] buf = new byte[64 * 1024];
+        int len;
+        while ((len = in.read(buf)) >= 0) {
+            out.write(buf, 0, len);
+        }
+        processor.closeSpan();
+        buffered.flush();
+    }
+
+    /**
+     * @return the stream receiving the text, to be used as the target of the {@link AnsiOutputStream}
+     */
+    public OutputStream getTextStream() {
+        return text;
+    }
+
+    /**
+     * Closes the open span, if any, so that the HTML written so far is well formed.
+     * The next text reopens a span if it is styled.
+     * @throws IOException if an error occurs
+     */
+    public void closeSpan() throws IOException {
+        if (spanOpen) {
+            os.write(SPAN_END);
+            spanOpen = false;
+        }
+    }
+
+    private void updateSpan() throws IOException {
+        if (spanOpen && fg == spanFg && bg == spanBg && attributes == spanAttributes) {
+            return;
+        }
+        closeSpan();
+        if (fg != 0 || bg != 0 || attributes != 0) {
+            css.setLength(0);
+            css.append("<span style=\"");
+            appendStyle();
+            css.append("\">");
+            for (int i = 0; i < css.length(); i++) {
+                os.write(css.charAt(i));
+            }
+            spanOpen = true;
+            spanFg = fg;
+            spanBg = bg;
+            spanAttributes = attributes;
+        }
+    }
+
+    private void appendStyle() {
+        boolean negative = hasAttribute(ATTRIBUTE_NEGATIVE_ON);
+        int color = negative ? bg : fg;
+        int background = negative ? fg : bg;
+        if (color != 0) {
+            appendColor("color:", color);
+        } else if (negative) {
+            css.append("color:Canvas;");
+        }
+        if (background != 0) {
+            appendColor("background-color:", background);
+        } else if (negative) {
+            css.append("background-color:CanvasText;");
+        }
+        if (hasAttribute(ATTRIBUTE_INTENSITY_BOLD)) {
+            css.append("font-weight:bold;");
+        }
+        if (hasAttribute(ATTRIBUTE_INTENSITY_FAINT)) {
+            css.append("opacity:0.5;");
+        }
+        if (hasAttribute(ATTRIBUTE_ITALIC)) {
+            css.append("font-style:italic;");
+        }
+        boolean underline = hasAttribute(ATTRIBUTE_UNDERLINE);
+        boolean crossedOut = hasAttribute(9);
+        if (underline || crossedOut) {
+            css.append("text-decoration:")
+                    .append(underline ? "underline" : "")
+                    .append(underline && crossedOut ? " " : "")
+                    .append(crossedOut ? "line-through" : "")
+                    .append(';');
+        }
+        if (hasAttribute(ATTRIBUTE_CONCEAL_ON)) {
+            css.append("visibility:hidden;");
+        }
+    }
+
+    private void appendColor(String property, int color) {
+        int rgb = (color & RGB) != 0 ? color & 0xffffff : Colors.DEFAULT_COLORS_256[color & 0xff];
+        css.append(property).append('#');
+        for (int shift = 20; shift >= 0; shift -= 4) {
+            css.append(Character.forDigit((rgb >> shift) & 0xf, 16));
+        }
+        css.append(';');
+    }
+
+    private boolean hasAttribute(int attribute) {
+        return (attributes & (1 << attribute)) != 0;
+    }
+
+    @Override
+    void setAttribute(int attribute, boolean on) {
+        if (on) {
+            attributes |= 1 << attribute;
+        } else {
+            attributes &= ~(1 << attribute);
+        }
+    }
+
+    @Override
+    void setForeground(int color) {
+        fg = color;
+    }
+
+    @Override
+    void setBackground(int color) {
+        bg = color;
+    }
+
+    //
+    // AnsiProcessor callbacks
+    //
+
+    @Override
+    protected void processAttributeReset() {
+        fg = 0;
+        bg = 0;
+        attributes = 0;
+    }
+
+    @Override
+    protected void processCursorDownLine(int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            text.write('\n');
+        }
+    }
+
+    @Override
+    protected void processCursorRight(int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            text.write(' ');
+        }
+    }
+
+    /**
+     * Escapes the text written by the {@link AnsiOutputStream} into the html.
+     */
+    private final class TextStream extends OutputStream {
+
+        @Override
+        public void write(int b) throws IOException {
+            updateSpan();
+            byte[] escaped = escape(b);
+            if (escaped != null) {
+                os.write(escaped);
+            } else {
+                os.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return;
+            }
+            updateSpan();
+            int start = off;
+            for (int i = off; i < off + len; i++) {
+                byte[] escaped = escape(b[i]);
+                if (escaped != null) {
+                    os.write(b, start, i - start);
+                    os.write(escaped);
+                    start = i + 1;
+                }
+            }
+            os.write(b, start, off + len - start);
+        }
+
+        private byte[] escape(int b) {
+            switch (b) {
+                case '<':
+                    return LT;
+                case '>':
+                    return GT;
+                case '&':
+                    return AMP;
+                default:
+                    return null;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            os.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            closeSpan();
+            os.close();
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2009-2023 the original author(s).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.jansi.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+
+/**
+ * The base class of the processors rendering the text themselves rather than forwarding
+ * it to a terminal.
+ * <p>
+ * The SGR sequences are decoded into attributes and packed colors, and every sequence
+ * which is not processed, including the ones which can not be parsed, is dropped.
+ */
+abstract class RenderingAnsiProcessor extends AnsiProcessor {
+
+    // a packed color is 0 for the default color, or a palette index or a 24-bit RGB value with a tag
+    static final int INDEXED = 1 << 24;
+    static final int RGB = 2 << 24;
+
+    RenderingAnsiProcessor(OutputStream os) {
+        super(os);
+    }
+
+    static int indexed(int index) {
+        return INDEXED | index;
+    }
+
+    static int rgb(int r, int g, int b) {
+        return RGB | r << 16 | g << 8 | b;
+    }
+
+    /**
+     * Turns an attribute on or off.
+     * @param attribute an attribute from 1 ({@link #ATTRIBUTE_INTENSITY_BOLD}) to 9 (crossed-out)
+     * @param on whether the attribute is set
+     */
+    abstract void setAttribute(int attribute, boolean on);
+
+    /**
+     * @param color the packed foreground color
+     */
+    abstract void setForeground(int color);
+
+    /**
+     * @param color the packed background color
+     */
+    abstract void setBackground(int color);
+
+    //
+    // AnsiProcessor callbacks
+    //
+
+    @Override
+    protected boolean processEscapeCommand(AnsiOptions options, int command) throws IOException {
+        // unsupported sequences must not end up in the rendered text
+        super.processEscapeCommand(options, command);
+        return true;
+    }
+
+    @Override
+    protected boolean dropsUnprocessedSequences() {
+        return true;
+    }
+
+    @Override
+    protected boolean processEscapeSequence(int command) throws IOException {
+        super.processEscapeSequence(command);
+        return true;
+    }
+
+    @Override
+    protected boolean processOperatingSystemCommand(ArrayList<Object> options) {
+        super.processOperatingSystemCommand(options);
+        return true;
+    }
+
+    @Override
+    protected void processSetAttribute(int attribute) {
+        if (attribute >= 1 && attribute <= 9) {
+            setAttribute(attribute, true);
+        } else {
+            switch (attribute) {
+                case ATTRIBUTE_UNDERLINE_DOUBLE:
+                    setAttribute(ATTRIBUTE_UNDERLINE, true);
+                    break;
+                case ATTRIBUTE_INTENSITY_NORMAL:
+                    setAttribute(ATTRIBUTE_INTENSITY_BOLD, false);
+                    setAttribute(ATTRIBUTE_INTENSITY_FAINT, false);
+                    break;
+                case ATTRIBUTE_UNDERLINE_OFF:
+                    setAttribute(ATTRIBUTE_UNDERLINE, false);
+                    break;
+                case ATTRIBUTE_BLINK_OFF:
+                    setAttribute(ATTRIBUTE_BLINK_SLOW, false);
+                    setAttribute(ATTRIBUTE_BLINK_FAST, false);
+                    break;
+                case ATTRIBUTE_NEGATIVE_OFF:
+                    setAttribute(ATTRIBUTE_NEGATIVE_ON, false);
+                    break;
+                case ATTRIBUTE_CONCEAL_OFF:
+                    setAttribute(ATTRIBUTE_CONCEAL_ON, false);
+                    break;
+                default:
+                    // 23 (italic off) and 29 (crossed-out off)
+                    if (attribute == 23 || attribute == 29) {
+                        setAttribute(attribute - 20, false);
+                    }
+                    break;
+            }
+        }
+    }
+
+    @Override
+    protected void processSetForegroundColor(int color, boolean bright) {
+        setForeground(indexed(bright ? color + 8 : color));
+    }
+
+    @Override
+    protected void processSetForegroundColorExt(int paletteIndex) {
+        setForeground(indexed(paletteIndex));
+    }
+
+    @Override
+    protected void processSetForegroundColorExt(int r, int g, int b) {
+        setForeground(rgb(r, g, b));
+    }
+
+    @Override
+    protected void processSetBackgroundColor(int color, boolean bright) {
+        setBackground(indexed(bright ? color + 8 : color));
+    }
+
+    @Override
+    protected void processSetBackgroundColorExt(int paletteIndex) {
+        setBackground(indexed(paletteIndex));
+    }
+
+    @Override
+    protected void processSetBackgroundColorExt(int r, int g, int b) {
+        setBackground(rgb(r, g, b));
+    }
+
+    @Override
+    protected void processDefaultTextColor() {
+        setForeground(0);
+    }
+
+    @Override
+    protected void processDefaultBackgroundColor() {
+        setBackground(0);
+    }
+}
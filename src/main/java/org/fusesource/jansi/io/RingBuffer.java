@@ -0,0 +1,376 @@
+/*
+ * Copyright (C) 2009-2023 the original author(s).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.jansi.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A ring of bytes stored in a memory mapped file, keeping the last bytes written to it.
+ * <p>
+ * Writers reserve a range of positions, announce it in the header of the file, copy their bytes
+ * to the mapping and publish the new position in the header, so writing never waits on a terminal
+ * or a pipe.  As the bytes are in the page cache, they survive a crash of the JVM and can be read
+ * afterwards, or while they are written, by another process, see {@link #open(Path)}.
+ * <p>
+ * The file starts with a {@value #HEADER_SIZE} bytes header holding a magic number, the format
+ * version, the capacity of the ring, the position, i.e. the total number of bytes written, and
+ * the position the writers may be writing up to, followed by the ring itself: the byte at position
+ * <code>p</code> is stored at offset <code>HEADER_SIZE + p % capacity</code>.
+ * <p>
+ * Readers work like a sequence lock: a writer announces the positions it is about to write before
+ * overwriting the oldest bytes, so a reader checks, once it has copied the bytes, that no writer
+ * announced positions overlapping them, and discards what it read otherwise.  The stores to the mapping
+ * are ordered with the fences of <code>sun.misc.Unsafe</code>; on the JVMs without it, they are only
+ * approximated with atomic updates, which order them on the common platforms without the Java memory
+ * model guaranteeing it for another process.
+ * <p>
+ * Writers reserve and announce their positions without locking, but they publish them in order, so
+ * that readers never see a gap: a writer waits for the writers which reserved positions before it,
+ * so a writer descheduled while copying its bytes delays the publication of the next writes, though
+ * not their copy.  A single process may write to a ring file at a time, which {@link #create(Path, int)}
+ * enforces with an exclusive lock on the file.
+ *
+ * @since 2.4.3
+ * @see RingOutputStream
+ */
+public final class RingBuffer implements Closeable {
+
+    /**
+     * The default capacity of a ring, 4 MiB.
+     */
+    public static final int DEFAULT_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * The size of the header of a ring file.
+     */
+    public static final int HEADER_SIZE = 64;
+
+    static final int MAGIC = 0x4a524e47; // "JRNG"
+    static final int VERSION = 1;
+    private static final int VERSION_OFFSET = 4;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int POSITION_OFFSET = 16;
+    private static final int WRITING_OFFSET = 24;
+
+    private static final MethodHandle STORE_FENCE;
+    private static final MethodHandle LOAD_FENCE;
+
+    static {
+        MethodHandle storeFence = null;
+        MethodHandle loadFence = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            Object unsafe = field.get(null);
+            MethodType type = MethodType.methodType(void.class);
+            storeFence = MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "storeFence", type)
+                    .bindTo(unsafe);
+            loadFence = MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "loadFence", type)
+                    .bindTo(unsafe);
+        } catch (Throwable t) {
+            // fall back to atomic updates
+            storeFence = null;
+            loadFence = null;
+        }
+        STORE_FENCE = storeFence;
+        LOAD_FENCE = loadFence;
+    }
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final AtomicLong reserved;
+    private final AtomicLong announced;
+    private final AtomicBoolean storing = new AtomicBoolean();
+    private volatile long stored; // the announced position in the header, written while storing
+    private final AtomicLong published;
+    private final AtomicLong fence = new AtomicLong();
+
+    private RingBuffer(FileChannel channel, MappedByteBuffer buffer, int capacity, long position) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.capacity = capacity;
+        this.reserved = new AtomicLong(position);
+        // a writer which crashed may have announced more than it published
+        this.stored = buffer.getLong(WRITING_OFFSET);
+        this.announced = new AtomicLong(stored);
+        this.published = new AtomicLong(position);
+    }
+
+    /**
+     * Opens a ring file for writing.  If the file already is a ring of the given capacity,
+     * new bytes are appended to the previous ones, else the file is reinitialized.
+     * The file is locked until the ring is closed.
+     *
+     * @param file the ring file
+     * @param capacity the capacity of the ring in bytes
+     * @return the ring
+     * @throws IOException if the file can not be mapped, or is already written by another ring
+     */
+    public static RingBuffer create(Path file, int capacity) throws IOException {
+        if (capacity <= 0 || capacity > Integer.MAX_VALUE - HEADER_SIZE) {
+            throw new IllegalArgumentException("Invalid ring capacity: " + capacity);
+        }
+        FileChannel channel =
+                FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            // two writers would reserve the same positions
+            FileLock lock;
+            try {
+                lock = channel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                lock = null;
+            }
+            if (lock == null) {
+                throw new IOException("Ring file already in use: " + file);
+            }
+            boolean reuse = channel.size() == HEADER_SIZE + capacity;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + capacity);
+            long position = reuse ? checkHeader(buffer, capacity) : -1;
+            if (position >= 0 && buffer.getLong(WRITING_OFFSET) < position) {
+                // the header is only consistent if the announced positions cover the written ones
+                position = -1;
+            }
+            if (position < 0) {
+                for (int i = 0; i < HEADER_SIZE; i += 8) {
+                    buffer.putLong(i, 0);
+                }
+                buffer.putInt(VERSION_OFFSET, VERSION);
+                buffer.putInt(CAPACITY_OFFSET, capacity);
+                buffer.putInt(0, MAGIC);
+                position = 0;
+            }
+            return new RingBuffer(channel, buffer, capacity, position);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens an existing ring file for reading.
+     *
+     * @param file the ring file
+     * @return the ring
+     * @throws IOException if the file is not a ring file or can not be mapped
+     */
+    public static RingBuffer open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                throw new IOException("Not a ring file: " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int capacity = buffer.getInt(CAPACITY_OFFSET);
+            if (size != (long) HEADER_SIZE + capacity || checkHeader(buffer, capacity) < 0) {
+                throw new IOException("Not a ring file: " + file);
+            }
+            return new RingBuffer(channel, buffer, capacity, buffer.getLong(POSITION_OFFSET));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static long checkHeader(ByteBuffer buffer, int capacity) {
+        if (buffer.getInt(0) != MAGIC
+                || buffer.getInt(VERSION_OFFSET) != VERSION
+                || buffer.getInt(CAPACITY_OFFSET) != capacity) {
+            return -1;
+        }
+        return buffer.getLong(POSITION_OFFSET);
+    }
+
+    /**
+     * @return the capacity of the ring in bytes
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the total number of bytes written to the ring, as published in the file
+     */
+    public long position() {
+        return buffer.getLong(POSITION_OFFSET);
+    }
+
+    /**
+     * @return the position of the oldest byte still in the ring
+     */
+    public long start() {
+        return Math.max(0, position() - capacity);
+    }
+
+    /**
+     * Appends bytes to the ring.  If more bytes than the capacity are written at once, only the
+     * last ones are kept.  This method can be called concurrently.
+     *
+     * @param b the bytes
+     * @param off the offset of the first byte
+     * @param len the number of bytes
+     */
+    public void write(byte[] b, int off, int len) {
+        if (len <= 0) {
+            return;
+        }
+        long start = reserve(len);
+        // readers must see the announcement before any byte they may be reading is overwritten
+        storeFence();
+        int skip = Math.max(0, len - capacity);
+        copy(start + skip, b, off + skip, len - skip, true);
+        // positions are published in order, so that readers never see a gap: this waits for
+        // the writers which reserved the previous positions to be done copying their bytes
+        while (published.get() != start) {
+            Thread.yield();
+        }
+        // readers must see the bytes before the position covering them
+        storeFence();
+        buffer.putLong(POSITION_OFFSET, start + len);
+        published.set(start + len);
+    }
+
+    /**
+     * Reserves the positions of the bytes to write and announces them in the file.
+     */
+    private long reserve(int len) {
+        long start = reserved.getAndAdd(len);
+        long end = start + len;
+        long current;
+        while ((current = announced.get()) < end && !announced.compareAndSet(current, end)) {
+            // retry with the position announced by another writer
+        }
+        // the header is stored by one writer at a time, with the largest position announced so far,
+        // so that it never goes backwards; the other writers wait until it covers their positions
+        while (stored < end) {
+            if (storing.compareAndSet(false, true)) {
+                try {
+                    long latest = announced.get();
+                    if (latest > stored) {
+                        buffer.putLong(WRITING_OFFSET, latest);
+                        stored = latest;
+                    }
+                } finally {
+                    storing.set(false);
+                }
+            } else {
+                Thread.yield();
+            }
+        }
+        return start;
+    }
+
+    /**
+     * Reads bytes from the ring.
+     *
+     * @param position the position of the first byte to read
+     * @param b the buffer to read into
+     * @param off the offset in the buffer
+     * @param len the maximum number of bytes to read
+     * @return the number of bytes read, or -1 if the bytes at <code>position</code> have been
+     * overwritten, in which case reading should resume from {@link #start()}
+     */
+    public int read(long position, byte[] b, int off, int len) {
+        long end = position();
+        // the bytes up to the position must not be read before it
+        loadFence();
+        if (position < end - capacity) {
+            return -1;
+        }
+        int count = (int) Math.min(len, Math.max(0, end - position));
+        copy(position, b, off, count, false);
+        // a writer may have started to overwrite the bytes while they were copied, in which case
+        // it announced a position at least one capacity past them before writing
+        loadFence();
+        if (position < buffer.getLong(WRITING_OFFSET) - capacity) {
+            return -1;
+        }
+        return count;
+    }
+
+    private void storeFence() {
+        if (STORE_FENCE != null) {
+            try {
+                STORE_FENCE.invokeExact();
+                return;
+            } catch (Throwable t) {
+                // fall back to an atomic update
+            }
+        }
+        fence.incrementAndGet();
+    }
+
+    private void loadFence() {
+        if (LOAD_FENCE != null) {
+            try {
+                LOAD_FENCE.invokeExact();
+                return;
+            } catch (Throwable t) {
+                // fall back to an atomic update
+            }
+        }
+        fence.incrementAndGet();
+    }
+
+    private void copy(long position, byte[] b, int off, int len, boolean write) {
+        while (len > 0) {
+            int index = (int) (position % capacity);
+            int n = Math.min(len, capacity - index);
+            // a duplicate keeps this thread safe
+            ByteBuffer slice = buffer.duplicate();
+            slice.position(HEADER_SIZE + index);
+            if (write) {
+                slice.put(b, off, n);
+            } else {
+                slice.get(b, off, n);
+            }
+            position += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Forces the content of the ring to the storage device, so that it also survives a crash
+     * of the operating system.
+     */
+    public void force() {
+        buffer.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2009-2023 the original author(s).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.jansi.io;
+
+import java.io.OutputStream;
+
+/**
+ * An output stream appending to a {@link RingBuffer}, with no synchronization.
+ * <p>
+ * Each write is a single copy to the ring, so this stream is usually wrapped in a
+ * {@link FastBufferedOutputStream} which turns the small writes of the escape processing into
+ * one copy per flush.  Several streams can share the same ring, closing a stream does not close
+ * the ring.
+ *
+ * @since 2.4.3
+ */
+public class RingOutputStream extends OutputStream {
+
+    private final RingBuffer ring;
+    private final byte[] single = new byte[1];
+
+    public RingOutputStream(RingBuffer ring) {
+        this.ring = ring;
+    }
+
+    public RingBuffer getRing() {
+        return ring;
+    }
+
+    @Override
+    public void write(int b) {
+        single[0] = (byte) b;
+        ring.write(single, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        ring.write(b, off, len);
+    }
+}
@@ -0,0 +1,678 @@
+/*
+ * Copyright (C) 2009-2023 the original author(s).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.jansi.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+
+/**
+ * An ANSI processor maintaining a virtual screen, and redrawing the terminal with
+ * the minimal changes needed to display it.
+ * <p>
+ * Text and escape sequences update an in-memory grid of cells, each holding a code point
+ * and a packed style (attributes, foreground and background colors).  Nothing is written
+ * to the terminal until the stream is flushed: the grid is then compared with the last frame
+ * sent to the terminal, and only the cells which changed are written, with the shortest
+ * cursor moves and the attribute changes needed.  Full screen applications redrawing
+ * their whole display periodically only send what actually changed.
+ * <p>
+ * The processor must be used together with its {@link #getTextStream() text stream}:
+ * <pre>
+ * ScreenAnsiProcessor screen = new ScreenAnsiProcessor(terminal, cs, 80, 24);
+ * AnsiOutputStream out = new AnsiOutputStream(screen.getTextStream(), screen, AnsiMode.Default,
+ *         screen, AnsiType.Emulation, AnsiColors.TrueColor, cs, null, null, false);
+ * </pre>
+ * Escape sequences which are not supported, or which can not be parsed, are dropped.
+ * All characters are assumed to be one column wide, and the charset to be ASCII compatible.
+ * The processor assumes it owns the whole terminal: the first frame clears the screen.
+ *
+ * @since 2.4.3
+ */
+public class ScreenAnsiProcessor extends RenderingAnsiProcessor implements AnsiOutputStream.WidthSupplier {
+
+    // a style packs the foreground color, the background color and the attributes
+    private static final int COLOR_BITS = 26;
+    private static final long COLOR_MASK = (1L << COLOR_BITS) - 1;
+    private static final int BG_SHIFT = COLOR_BITS;
+    private static final int ATTRIBUTES_SHIFT = 2 * COLOR_BITS;
+    private static final long BG_MASK = COLOR_MASK << BG_SHIFT;
+
+    /**
+     * Unchanged cells shorter than this are rewritten rather than skipped with a cursor move.
+     */
+    private static final int MAX_GAP = 4;
+
+    private final Charset cs;
+    private final TextStream text;
+
+    private int width;
+    private int height;
+    private int[] chars;
+    private long[] styles;
+    private int[] shownChars;
+    private long[] shownStyles;
+    private boolean redraw = true;
+
+    private int row;
+    private int col;
+    private boolean wrapPending;
+    private long style;
+    private int savedRow;
+    private int savedCol;
+
+    private int termRow;
+    private int termCol;
+    private long termStyle;
+
+    public ScreenAnsiProcessor(OutputStream os, Charset cs, int width, int height) {
+        super(os);
+        this.cs = cs;
+        this.text = new TextStream();
+        resize(width, height);
+    }
+
+    /**
+     * @return the stream receiving the text, to be used as the target of the {@link AnsiOutputStream}
+     */
+    public OutputStream getTextStream() {
+        return text;
+    }
+
+    @Override
+    public int getTerminalWidth() {
+        return width;
+    }
+
+    @Override
+    public int getTerminalHeight() {
+        return height;
+    }
+
+    /**
+     * Resizes the virtual screen, keeping the content of its top left corner.
+     * The next flush redraws the whole screen.
+     */
+    public void resize(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("invalid size " + width + "x" + height);
+        }
+        int[] newChars = new int[width * height];
+        long[] newStyles = new long[width * height];
+        Arrays.fill(newChars, ' ');
+        for (int r = 0; r < Math.min(height, this.height); r++) {
+            int n = Math.min(width, this.width);
+            System.arraycopy(chars, r * this.width, newChars, r * width, n);
+            System.arraycopy(styles, r * this.width, newStyles, r * width, n);
+        }
+        this.width = width;
+        this.height = height;
+        this.chars = newChars;
+        this.styles = newStyles;
+        this.shownChars = new int[width * height];
+        this.shownStyles = new long[width * height];
+        row = Math.min(row, height - 1);
+        col = Math.min(col, width - 1);
+        savedRow = Math.min(savedRow, height - 1);
+        savedCol = Math.min(savedCol, width - 1);
+        wrapPending = false;
+        invalidate();
+    }
+
+    /**
+     * Forgets what the terminal displays, so that the next flush redraws the whole screen,
+     * for example after something else wrote to the terminal.
+     */
+    public void invalidate() {
+        redraw = true;
+    }
+
+    /**
+     * Sends the changes made to the virtual screen since the last call to the terminal.
+     * This is called when the text stream is flushed.
+     * @throws IOException if an error occurs
+     */
+    public void render() throws IOException {
+        if (redraw) {
+            writeAscii("\033[0m\033[H\033[2J");
+            Arrays.fill(shownChars, ' ');
+            Arrays.fill(shownStyles, 0);
+            termRow = termCol = 0;
+            termStyle = 0;
+            redraw = false;
+        }
+        for (int r = 0; r < height; r++) {
+            int base = r * width;
+            int c = 0;
+            while (c < width) {
+                if (same(base + c)) {
+                    c++;
+                    continue;
+                }
+                if (blankToEnd(base, c)) {
+                    moveTo(r, c);
+                    setStyle(styles[base + c]);
+                    writeAscii("\033[K");
+                    System.arraycopy(chars, base + c, shownChars, base + c, width - c);
+                    System.arraycopy(styles, base + c, shownStyles, base + c, width - c);
+                    break;
+                }
+                int end = runEnd(base, c);
+                moveTo(r, c);
+                for (int k = c; k < end; k++) {
+                    setStyle(styles[base + k]);
+                    writeCodePoint(chars[base + k]);
+                    shownChars[base + k] = chars[base + k];
+                    shownStyles[base + k] = styles[base + k];
+                }
+                // after writing the last column, the cursor position depends on the terminal
+                termCol = end < width ? end : -1;
+                c = end;
+            }
+        }
+        moveTo(row, col);
+        os.flush();
+    }
+
+    private boolean same(int i) {
+        return chars[i] == shownChars[i] && styles[i] == shownStyles[i];
+    }
+
+    /**
+     * Whether the cells from <code>c</code> can be drawn by erasing the end of the line.
+     */
+    private boolean blankToEnd(int base, int c) {
+        long s = styles[base + c];
+        if ((s & ~BG_MASK) != 0) {
+            return false;
+        }
+        for (int k = base + c; k < base + width; k++) {
+            if (chars[k] != ' ' || styles[k] != s) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the end of the run of cells to write from <code>c</code>, bridging short unchanged gaps.
+     */
+    private int runEnd(int base, int c) {
+        int end = c + 1;
+        int i = end;
+        while (i < width) {
+            if (!same(base + i)) {
+                end = ++i;
+                continue;
+            }
+            int gap = i;
+            while (gap < width && gap - i < MAX_GAP && same(base + gap)) {
+                gap++;
+            }
+            if (gap == width || same(base + gap)) {
+                break;
+            }
+            i = gap;
+        }
+        return end;
+    }
+
+    private void moveTo(int r, int c) throws IOException {
+        if (r == termRow && c == termCol) {
+            return;
+        }
+        if (r == termRow && termCol >= 0) {
+            if (c == 0) {
+                os.write('\r');
+            } else if (c > termCol) {
+                writeCsi(c - termCol, 'C');
+            } else {
+                writeCsi(termCol - c, 'D');
+            }
+        } else if (c == 0 && termCol >= 0 && r == termRow + 1) {
+            os.write('\r');
+            os.write('\n');
+        } else {
+            os.write(27);
+            os.write('[');
+            if (r > 0 || c > 0) {
+                writeInt(r + 1);
+            }
+            if (c > 0) {
+                os.write(';');
+                writeInt(c + 1);
+            }
+            os.write('H');
+        }
+        termRow = r;
+        termCol = c;
+    }
+
+    private void setStyle(long s) throws IOException {
+        if (s == termStyle) {
+            return;
+        }
+        long attributes = s >>> ATTRIBUTES_SHIFT;
+        long termAttributes = termStyle >>> ATTRIBUTES_SHIFT;
+        int fg = (int) (s & COLOR_MASK);
+        int bg = (int) ((s >>> BG_SHIFT) & COLOR_MASK);
+        int termFg = (int) (termStyle & COLOR_MASK);
+        int termBg = (int) ((termStyle >>> BG_SHIFT) & COLOR_MASK);
+        os.write(27);
+        os.write('[');
+        boolean first = true;
+        if ((termAttributes & ~attributes) != 0) {
+            // an attribute was removed, start from scratch
+            os.write('0');
+            first = false;
+            termAttributes = 0;
+            termFg = termBg = 0;
+        }
+        for (int a = 1; a <= 9; a++) {
+            if ((attributes & ~termAttributes & (1L << (a - 1))) != 0) {
+                first = separator(first);
+                writeInt(a);
+            }
+        }
+        if (fg != termFg) {
+            first = separator(first);
+            writeColor(fg, 30, 90, 38, 39);
+        }
+        if (bg != termBg) {
+            separator(first);
+            writeColor(bg, 40, 100, 48, 49);
+        }
+        os.write('m');
+        termStyle = s;
+    }
+
+    private boolean separator(boolean first) throws IOException {
+        if (!first) {
+            os.write(';');
+        }
+        return false;
+    }
+
+    private void writeColor(int color, int normal, int bright, int extended, int reset) throws IOException {
+        if (color == 0) {
+            writeInt(reset);
+        } else if ((color & RGB) != 0) {
+            writeInt(extended);
+            writeAscii(";2;");
+            writeInt((color >> 16) & 0xFF);
+            os.write(';');
+            writeInt((color >> 8) & 0xFF);
+            os.write(';');
+            writeInt(color & 0xFF);
+        } else {
+            int index = color & 0xFF;
+            if (index < 8) {
+                writeInt(normal + index);
+            } else if (index < 16) {
+                writeInt(bright + index - 8);
+            } else {
+                writeInt(extended);
+                writeAscii(";5;");
+                writeInt(index);
+            }
+        }
+    }
+
+    private void writeCsi(int n, char command) throws IOException {
+        os.write(27);
+        os.write('[');
+        if (n != 1) {
+            writeInt(n);
+        }
+        os.write(command);
+    }
+
+    private void writeInt(int n) throws IOException {
+        if (n >= 10) {
+            writeInt(n / 10);
+        }
+        os.write('0' + n % 10);
+    }
+
+    private void writeAscii(String s) throws IOException {
+        for (int i = 0; i < s.length(); i++) {
+            os.write(s.charAt(i));
+        }
+    }
+
+    private void writeCodePoint(int cp) throws IOException {
+        if (cp < 0x80) {
+            os.write(cp);
+        } else {
+            os.write(new String(Character.toChars(cp)).getBytes(cs));
+        }
+    }
+
+    int codePointAt(int r, int c) {
+        return chars[r * width + c];
+    }
+
+    long styleAt(int r, int c) {
+        return styles[r * width + c];
+    }
+
+    //
+    // Screen model
+    //
+
+    private void put(int cp) {
+        if (cp < 0x20 || cp == 0x7F) {
+            control(cp);
+            return;
+        }
+        if (wrapPending) {
+            wrapPending = false;
+            col = 0;
+            lineFeed();
+        }
+        int i = row * width + col;
+        chars[i] = cp;
+        styles[i] = style;
+        if (col == width - 1) {
+            wrapPending = true;
+        } else {
+            col++;
+        }
+    }
+
+    private void control(int c) {
+        switch (c) {
+            case '\n':
+                // as a terminal with output post-processing, a line feed also returns the carriage
+                col = 0;
+                wrapPending = false;
+                lineFeed();
+                break;
+            case '\r':
+                col = 0;
+                wrapPending = false;
+                break;
+            case '\b':
+                if (col > 0 && !wrapPending) {
+                    col--;
+                }
+                wrapPending = false;
+                break;
+            case '\t':
+                col = Math.min(width - 1, (col / 8 + 1) * 8);
+                wrapPending = false;
+                break;
+            default:
+                // bell, escape and other controls do not change the screen
+                break;
+        }
+    }
+
+    private void lineFeed() {
+        if (row == height - 1) {
+            scroll(0, 1);
+        } else {
+            row++;
+        }
+    }
+
+    /**
+     * Scrolls the lines from <code>top</code> to the bottom of the screen up, or down if <code>n</code> is negative.
+     */
+    private void scroll(int top, int n) {
+        int lines = height - top;
+        int count = Math.min(Math.abs(n), lines);
+        int moved = lines - count;
+        if (n > 0) {
+            System.arraycopy(chars, (top + count) * width, chars, top * width, moved * width);
+            System.arraycopy(styles, (top + count) * width, styles, top * width, moved * width);
+            fill((top + moved) * width, height * width);
+        } else {
+            System.arraycopy(chars, top * width, chars, (top + count) * width, moved * width);
+            System.arraycopy(styles, top * width, styles, (top + count) * width, moved * width);
+            fill(top * width, (top + count) * width);
+        }
+    }
+
+    /**
+     * Erases cells, keeping the current background color like most terminals do.
+     */
+    private void fill(int from, int to) {
+        Arrays.fill(chars, from, to, ' ');
+        Arrays.fill(styles, from, to, style & BG_MASK);
+    }
+
+    private void moveCursor(int r, int c) {
+        row = Math.max(0, Math.min(height - 1, r));
+        col = Math.max(0, Math.min(width - 1, c));
+        wrapPending = false;
+    }
+
+    private void setColor(int shift, int color) {
+        style = (style & ~(COLOR_MASK << shift)) | ((long) color << shift);
+    }
+
+    @Override
+    void setForeground(int color) {
+        setColor(0, color);
+    }
+
+    @Override
+    void setBackground(int color) {
+        setColor(BG_SHIFT, color);
+    }
+
+    @Override
+    void setAttribute(int attribute, boolean on) {
+        long bit = 1L << (ATTRIBUTES_SHIFT + attribute - 1);
+        style = on ? style | bit : style & ~bit;
+    }
+
+    //
+    // AnsiProcessor callbacks
+    //
+
+    @Override
+    protected void processSaveCursorPosition() {
+        savedRow = row;
+        savedCol = col;
+    }
+
+    @Override
+    protected void processRestoreCursorPosition() {
+        moveCursor(savedRow, savedCol);
+    }
+
+    @Override
+    protected void processInsertLine(int optionInt) {
+        scroll(row, -optionInt);
+    }
+
+    @Override
+    protected void processDeleteLine(int optionInt) {
+        scroll(row, optionInt);
+    }
+
+    @Override
+    protected void processScrollDown(int optionInt) {
+        scroll(0, -optionInt);
+    }
+
+    @Override
+    protected void processScrollUp(int optionInt) {
+        scroll(0, optionInt);
+    }
+
+    @Override
+    protected void processEraseScreen(int eraseOption) {
+        int cursor = row * width + col;
+        switch (eraseOption) {
+            case ERASE_SCREEN_TO_END:
+                fill(cursor, width * height);
+                break;
+            case ERASE_SCREEN_TO_BEGINING:
+                fill(0, cursor + 1);
+                break;
+            case ERASE_SCREEN:
+                fill(0, width * height);
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    protected void processEraseLine(int eraseOption) {
+        int base = row * width;
+        switch (eraseOption) {
+            case ERASE_LINE_TO_END:
+                fill(base + col, base + width);
+                break;
+            case ERASE_LINE_TO_BEGINING:
+                fill(base, base + col + 1);
+                break;
+            case ERASE_LINE:
+                fill(base, base + width);
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    protected void processAttributeReset() {
+        style = 0;
+    }
+
+    @Override
+    protected void processCursorTo(int row, int col) {
+        moveCursor(row - 1, col - 1);
+    }
+
+    @Override
+    protected void processCursorToColumn(int x) {
+        moveCursor(row, x - 1);
+    }
+
+    @Override
+    protected void processCursorUpLine(int count) {
+        moveCursor(row - count, 0);
+    }
+
+    @Override
+    protected void processCursorDownLine(int count) {
+        moveCursor(row + count, 0);
+    }
+
+    @Override
+    protected void processCursorLeft(int count) {
+        moveCursor(row, col - count);
+    }
+
+    @Override
+    protected void processCursorRight(int count) {
+        moveCursor(row, col + count);
+    }
+
+    @Override
+    protected void processCursorDown(int count) {
+        moveCursor(row + count, col);
+    }
+
+    @Override
+    protected void processCursorUp(int count) {
+        moveCursor(row - count, col);
+    }
+
+    /**
+     * Decodes the text written by the {@link AnsiOutputStream} into the screen.
+     */
+    private final class TextStream extends OutputStream {
+        private final CharsetDecoder decoder = cs.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final CharBuffer decoded = CharBuffer.allocate(256);
+        private final ByteBuffer pending = ByteBuffer.allocate(16);
+        private char highSurrogate;
+
+        @Override
+        public void write(int b) {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            if (pending.position() == 0 && highSurrogate == 0 && isAscii(b, off, len)) {
+                for (int i = off; i < off + len; i++) {
+                    put(b[i]);
+                }
+                return;
+            }
+            ByteBuffer in;
+            if (pending.position() > 0) {
+                pending.flip();
+                in = ByteBuffer.allocate(pending.remaining() + len);
+                in.put(pending).put(b, off, len).flip();
+                pending.clear();
+            } else {
+                in = ByteBuffer.wrap(b, off, len);
+            }
+            CoderResult result;
+            do {
+                result = decoder.decode(in, decoded, false);
+                decoded.flip();
+                while (decoded.hasRemaining()) {
+                    putChar(decoded.get());
+                }
+                decoded.clear();
+            } while (result.isOverflow());
+            // keep an incomplete character for the next write
+            pending.put(in);
+        }
+
+        private boolean isAscii(byte[] b, int off, int len) {
+            for (int i = off; i < off + len; i++) {
+                if (b[i] < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void putChar(char c) {
+            if (Character.isHighSurrogate(c)) {
+                highSurrogate = c;
+            } else if (Character.isLowSurrogate(c) && highSurrogate != 0) {
+                put(Character.toCodePoint(highSurrogate, c));
+                highSurrogate = 0;
+            } else {
+                highSurrogate = 0;
+                put(c);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            render();
+        }
+    }
+}
@@ -0,0 +1,411 @@
+/*
+ * Copyright (C) 2009-2023 the original author(s).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.jansi.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.fusesource.jansi.AnsiColors;
+
+/**
+ * An ANSI processor tracking the style of the terminal to remove redundant SGR sequences.
+ * <p>
+ * SGR sequences only update the requested style.  The style is sent to the terminal, as the
+ * shortest SGR sequence changing what the terminal currently displays, right before the next
+ * text, escape sequence or flush.  Sequences which do not change the style, or whose effect
+ * is undone before any text is written (such as a reset followed by the same colors), are not
+ * sent at all.  Colors are converted to the given {@link AnsiColors} when they are sent.
+ * <p>
+ * SGR sequences using unknown codes are written as is and the tracked style is updated
+ * with the codes it knows, so that the following sequences are still applied on top of them.
+ * <p>
+ * The processor must be used together with its {@link #getTextStream() text stream}:
+ * <pre>
+ * StyleAnsiProcessor style = new StyleAnsiProcessor(terminal, colors, cs);
+ * AnsiOutputStream out = new AnsiOutputStream(style.getTextStream(), width, AnsiMode.Default,
+ *         style, AnsiType.Native, colors, cs, null, null, true);
+ * </pre>
+ *
+ * @since 2.4.3
+ */
+public class StyleAnsiProcessor extends AnsiProcessor {
+
+    private static final int BOLD_OR_FAINT = 1 << ATTRIBUTE_INTENSITY_BOLD | 1 << ATTRIBUTE_INTENSITY_FAINT;
+    private static final int BLINK = 1 << ATTRIBUTE_BLINK_SLOW | 1 << ATTRIBUTE_BLINK_FAST;
+    // attributes turned off by adding 20 to their code
+    private static final int[] SINGLE_ATTRIBUTES = {
+        ATTRIBUTE_ITALIC, ATTRIBUTE_UNDERLINE, ATTRIBUTE_NEGATIVE_ON, ATTRIBUTE_CONCEAL_ON, 9
+    };
+
+    private final AnsiColors colors;
+    private final boolean eightBit;
+    private final TextStream text = new TextStream();
+
+    // the style requested by the SGR sequences, and the style of the terminal
+    private final Style requested = new Style();
+    private final Style shown = new Style();
+    private final Style scratch = new Style();
+    private boolean dirty;
+
+    private int[] codes = new int[16];
+    private final int[] delta = new int[32];
+    private final int[] full = new int[32];
+    private final byte[] sgr = new byte[256];
+
+    /**
+     * @param os the terminal
+     * @param colors the colors supported by the terminal
+     * @param cs the charset of the text
+     */
+    public StyleAnsiProcessor(OutputStream os, AnsiColors colors, Charset cs) {
+        super(os);
+        this.colors = colors;
+        // the same condition as the AnsiOutputStream to recognize 8-bit controls
+        this.eightBit = StandardCharsets.ISO_8859_1.equals(cs);
+    }
+
+    /**
+     * @return the stream receiving the text, to be used as the target of the {@link AnsiOutputStream}
+     */
+    public OutputStream getTextStream() {
+        return text;
+    }
+
+    @Override
+    protected boolean processEscapeCommand(AnsiOptions options, int command) throws IOException {
+        if (command != 'm' || !options.isNumeric()) {
+            return false;
+        }
+        int size = options.size();
+        if (codes.length < size) {
+            codes = new int[size];
+        }
+        for (int i = 0; i < size; i++) {
+            codes[i] = options.intValue(i, 0);
+        }
+        if (size == 0) {
+            codes[0] = 0;
+            size = 1;
+        }
+        scratch.set(requested);
+        if (!scratch.apply(codes, size)) {
+            // written as is, and tracked by the text stream
+            return false;
+        }
+        requested.set(scratch);
+        dirty = true;
+        return true;
+    }
+
+    /**
+     * Sends the requested style to the terminal if it changed.
+     */
+    private void sync() throws IOException {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        int deltaLength = delta(shown, requested);
+        int fullLength = full(requested);
+        boolean resetNeeded = shown.extras && !requested.extras;
+        if (resetNeeded || (!requested.extras && length(full, fullLength) < length(delta, deltaLength))) {
+            write(full, fullLength);
+        } else if (deltaLength > 0) {
+            write(delta, deltaLength);
+        }
+        shown.set(requested);
+    }
+
+    private int delta(Style from, Style to) {
+        int n = 0;
+        int attributes = from.attributes;
+        int removed = attributes & ~to.attributes;
+        if ((removed & BOLD_OR_FAINT) != 0) {
+            delta[n++] = ATTRIBUTE_INTENSITY_NORMAL;
+            attributes &= ~BOLD_OR_FAINT;
+        }
+        if ((removed & BLINK) != 0) {
+            delta[n++] = ATTRIBUTE_BLINK_OFF;
+            attributes &= ~BLINK;
+        }
+        for (int a : SINGLE_ATTRIBUTES) {
+            if ((removed & 1 << a) != 0) {
+                delta[n++] = 20 + a;
+                attributes &= ~(1 << a);
+            }
+        }
+        n = addAttributes(delta, n, to.attributes & ~attributes);
+        if (from.fg != to.fg) {
+            n = addColor(delta, n, to.fg, 30);
+        }
+        if (from.bg != to.bg) {
+            n = addColor(delta, n, to.bg, 40);
+        }
+        return n;
+    }
+
+    private int full(Style to) {
+        int n = 0;
+        full[n++] = 0;
+        n = addAttributes(full, n, to.attributes);
+        if (to.fg != 0) {
+            n = addColor(full, n, to.fg, 30);
+        }
+        if (to.bg != 0) {
+            n = addColor(full, n, to.bg, 40);
+        }
+        return n;
+    }
+
+    private static int addAttributes(int[] params, int n, int attributes) {
+        for (int a = 1; a <= 9; a++) {
+            if ((attributes & 1 << a) != 0) {
+                params[n++] = a;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Adds the codes of a color, converted to the colors supported by the terminal.
+     * @param base 30 for the foreground, 40 for the background
+     */
+    private int addColor(int[] params, int n, int color, int base) {
+        if (color == 0) {
+            params[n++] = base + 9;
+            return n;
+        }
+        int index;
+        if ((color & RenderingAnsiProcessor.RGB) != 0) {
+            int r = color >> 16 & 0xff, g = color >> 8 & 0xff, b = color & 0xff;
+            if (colors == AnsiColors.TrueColor) {
+                params[n++] = base + 8;
+                params[n++] = 2;
+                params[n++] = r;
+                params[n++] = g;
+                params[n++] = b;
+                return n;
+            }
+            index = Colors.roundRgbColor(r, g, b, colors == AnsiColors.Colors256 ? 256 : 16);
+        } else {
+            index = color & 0xff;
+            if (index >= 16 && colors == AnsiColors.Colors16) {
+                index = Colors.roundColor(index, 16);
+            }
+        }
+        if (index < 8) {
+            params[n++] = base + index;
+        } else if (index < 16) {
+            params[n++] = base + 60 + index - 8;
+        } else {
+            params[n++] = base + 8;
+            params[n++] = 5;
+            params[n++] = index;
+        }
+        return n;
+    }
+
+    private static int length(int[] params, int n) {
+        if (n == 1 && params[0] == 0) {
+            return 1;
+        }
+        int length = n; // separators and final character
+        for (int i = 0; i < n; i++) {
+            int p = params[i];
+            length += p >= 100 ? 3 : p >= 10 ? 2 : 1;
+        }
+        return length;
+    }
+
+    private void write(int[] params, int n) throws IOException {
+        int len = 0;
+        sgr[len++] = 27;
+        sgr[len++] = '[';
+        // a reset is sent without its parameter
+        for (int i = 0; i < n && !(n == 1 && params[0] == 0); i++) {
+            if (i > 0) {
+                sgr[len++] = ';';
+            }
+            int p = params[i];
+            if (p >= 100) {
+                sgr[len++] = (byte) ('0' + p / 100);
+            }
+            if (p >= 10) {
+                sgr[len++] = (byte) ('0' + p / 10 % 10);
+            }
+            sgr[len++] = (byte) ('0' + p % 10);
+        }
+        sgr[len++] = 'm';
+        os.write(sgr, 0, len);
+    }
+
+    /**
+     * Updates the style of the terminal with an SGR sequence written as is.
+     */
+    private void track(byte[] b, int off, int len) {
+        int start = b[off] == 27 ? off + 2 : off + 1;
+        int end = off + len - 1;
+        if (len < 2 || b[end] != 'm' || (b[off] == 27 && b[off + 1] != '[')) {
+            return;
+        }
+        int n = 0;
+        int value = 0;
+        boolean valid = true;
+        for (int i = start; i <= end && valid; i++) {
+            int c = b[i];
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + c - '0';
+                valid = value <= 0xffff;
+            } else if (c == ';' || i == end) {
+                if (n == codes.length) {
+                    codes = Arrays.copyOf(codes, n * 2);
+                }
+                codes[n++] = value;
+                value = 0;
+            } else {
+                // sub-parameters or private sequences
+                valid = false;
+            }
+        }
+        if (valid) {
+            shown.apply(codes, n);
+        } else {
+            shown.extras = true;
+        }
+        requested.set(shown);
+    }
+
+    /**
+     * The style of a terminal.
+     */
+    private static final class Style {
+        int fg;
+        int bg;
+        int attributes;
+        // attributes which are not tracked, and can only be removed by a reset
+        boolean extras;
+
+        void set(Style style) {
+            fg = style.fg;
+            bg = style.bg;
+            attributes = style.attributes;
+            extras = style.extras;
+        }
+
+        /**
+         * @return false if some codes are not known
+         */
+        boolean apply(int[] codes, int n) {
+            boolean known = true;
+            for (int i = 0; i < n; i++) {
+                int c = codes[i];
+                if (c == 0) {
+                    fg = 0;
+                    bg = 0;
+                    attributes = 0;
+                    extras = false;
+                } else if (c >= 1 && c <= 9) {
+                    attributes |= 1 << c;
+                } else if (c == ATTRIBUTE_INTENSITY_NORMAL) {
+                    attributes &= ~BOLD_OR_FAINT;
+                } else if (c == ATTRIBUTE_BLINK_OFF) {
+                    attributes &= ~BLINK;
+                } else if (c == 23 || c == 24 || c == 27 || c == 28 || c == 29) {
+                    attributes &= ~(1 << (c - 20));
+                } else if (c >= 30 && c <= 37) {
+                    fg = RenderingAnsiProcessor.indexed(c - 30);
+                } else if (c == 39) {
+                    fg = 0;
+                } else if (c >= 40 && c <= 47) {
+                    bg = RenderingAnsiProcessor.indexed(c - 40);
+                } else if (c == 49) {
+                    bg = 0;
+                } else if (c >= 90 && c <= 97) {
+                    fg = RenderingAnsiProcessor.indexed(c - 90 + 8);
+                } else if (c >= 100 && c <= 107) {
+                    bg = RenderingAnsiProcessor.indexed(c - 100 + 8);
+                } else if (c == 38 || c == 48) {
+                    int color;
+                    if (i + 2 < n && codes[i + 1] == 5 && codes[i + 2] <= 255) {
+                        color = RenderingAnsiProcessor.indexed(codes[i + 2]);
+                        i += 2;
+                    } else if (i + 4 < n
+                            && codes[i + 1] == 2
+                            && codes[i + 2] <= 255
+                            && codes[i + 3] <= 255
+                            && codes[i + 4] <= 255) {
+                        color = RenderingAnsiProcessor.rgb(codes[i + 2], codes[i + 3], codes[i + 4]);
+                        i += 4;
+                    } else {
+                        // the remaining codes can not be interpreted
+                        extras = true;
+                        return false;
+                    }
+                    if (c == 38) {
+                        fg = color;
+                    } else {
+                        bg = color;
+                    }
+                } else {
+                    extras = true;
+                    known = false;
+                }
+            }
+            return known;
+        }
+    }
+
+    /**
+     * Sends the pending style before the text written by the {@link AnsiOutputStream}.
+     */
+    private final class TextStream extends OutputStream {
+
+        @Override
+        public void write(int b) throws IOException {
+            sync();
+            os.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return;
+            }
+            sync();
+            os.write(b, off, len);
+            int first = b[off] & 0xff;
+            if (first == 27 || first == 0x9b && eightBit) {
+                // an escape sequence written as is
+                track(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            sync();
+            os.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            sync();
+            os.close();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2009-2023 the original author(s).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.jansi.internal;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * The JDK Flight Recorder events of jansi, loaded by {@link JansiEvents} when running on Java 11
+ * or later.
+ */
+final class JansiFlightRecorder implements JansiEvents.Recorder {
+
+    @Name("org.fusesource.jansi.Flush")
+    @Label("Console Flush")
+    @Category("Jansi")
+    @Description("Bytes written to the underlying console stream")
+    @Threshold("1 ms")
+    static final class FlushEvent extends Event {
+        @Label("Bytes")
+        @DataAmount
+        int bytes;
+    }
+
+    @Name("org.fusesource.jansi.Install")
+    @Label("Console Install")
+    @Category("Jansi")
+    @Description("Installation or uninstallation of the ANSI console streams")
+    static final class InstallEvent extends Event {
+        @Label("Install")
+        boolean install;
+
+        @Label("Installations")
+        int count;
+    }
+
+    @Name("org.fusesource.jansi.LibraryLoad")
+    @Label("Native Library Load")
+    @Category("Jansi")
+    @Description("Extraction and loading of the jansi native library")
+    @StackTrace(false)
+    static final class LibraryLoadEvent extends Event {
+        @Label("Path")
+        String path;
+
+        @Label("Extracted")
+        boolean extracted;
+
+        @Label("Loaded")
+        boolean loaded;
+    }
+
+    @Name("org.fusesource.jansi.NativeCall")
+    @Label("Native Call")
+    @Category("Jansi")
+    @Description("Call to a native function querying the console")
+    @Threshold("1 ms")
+    static final class NativeCallEvent extends Event {
+        @Label("Function")
+        String function;
+    }
+
+    // only used to check whether each event is enabled, which does not depend on the instance
+    private static final FlushEvent FLUSH = new FlushEvent();
+    private static final InstallEvent INSTALL = new InstallEvent();
+    private static final LibraryLoadEvent LIBRARY_LOAD = new LibraryLoadEvent();
+    private static final NativeCallEvent NATIVE_CALL = new NativeCallEvent();
+
+    @Override
+    public Object beginFlush() {
+        return FLUSH.isEnabled() ? begin(new FlushEvent()) : null;
+    }
+
+    @Override
+    public void endFlush(Object token, int bytes) {
+        FlushEvent event = (FlushEvent) token;
+        event.end();
+        if (event.shouldCommit()) {
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+
+    @Override
+    public Object beginInstall() {
+        return INSTALL.isEnabled() ? begin(new InstallEvent()) : null;
+    }
+
+    @Override
+    public void endInstall(Object token, boolean install, int count) {
+        InstallEvent event = (InstallEvent) token;
+        event.end();
+        if (event.shouldCommit()) {
+            event.install = install;
+            event.count = count;
+            event.commit();
+        }
+    }
+
+    @Override
+    public Object beginLibraryLoad() {
+        return LIBRARY_LOAD.isEnabled() ? begin(new LibraryLoadEvent()) : null;
+    }
+
+    @Override
+    public void endLibraryLoad(Object token, String path, boolean extracted, boolean loaded) {
+        LibraryLoadEvent event = (LibraryLoadEvent) token;
+        event.end();
+        if (event.shouldCommit()) {
+            event.path = path;
+            event.extracted = extracted;
+            event.loaded = loaded;
+            event.commit();
+        }
+    }
+
+    @Override
+    public Object beginNativeCall() {
+        return NATIVE_CALL.isEnabled() ? begin(new NativeCallEvent()) : null;
+    }
+
+    @Override
+    public void endNativeCall(Object token, String function) {
+        NativeCallEvent event = (NativeCallEvent) token;
+        event.end();
+        if (event.shouldCommit()) {
+            event.function = function;
+            event.commit();
+        }
+    }
+
+    /**
+     * Starts an enabled event: disabled events are never allocated.
+     */
+    private static <E extends Event> E begin(E event) {
+        event.begin();
+        return event;
+    }
+}
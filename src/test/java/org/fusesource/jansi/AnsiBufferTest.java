@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2009-2023 the original author(s).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.jansi;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import org.fusesource.jansi.Ansi.Color;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class AnsiBufferTest {
+
+    @Test
+    public void testWriteTo() throws Exception {
+        AnsiBuffer buffer = new AnsiBuffer(StandardCharsets.UTF_8, 4);
+        buffer.fg(Color.RED).a("héllo €").reset();
+        String expected = "\033[31mhéllo €\033[m";
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        buffer.writeTo(baos);
+        assertEquals(expected, baos.toString("UTF-8"));
+        assertArrayEquals(expected.getBytes(StandardCharsets.UTF_8), buffer.toByteArray());
+        assertEquals(expected.getBytes(StandardCharsets.UTF_8).length, buffer.size());
+        assertEquals(expected, buffer.toString());
+    }
+
+    @Test
+    public void testIncrementalEncoding() throws Exception {
+        AnsiBuffer buffer = new AnsiBuffer(StandardCharsets.ISO_8859_1);
+        buffer.a("abc");
+        assertEquals(3, buffer.size());
+        buffer.bold().a("é€");
+        assertEquals("abc\033[1mé?", new String(buffer.toByteArray(), StandardCharsets.ISO_8859_1));
+    }
+
+    @Test
+    public void testClear() throws Exception {
+        AnsiBuffer buffer = new AnsiBuffer(StandardCharsets.UTF_8);
+        buffer.a("first");
+        assertEquals(5, buffer.size());
+        buffer.clear().a("second");
+        assertEquals("second", new String(buffer.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testSurrogatePairSplitAcrossDrains() throws Exception {
+        AnsiBuffer buffer = new AnsiBuffer(StandardCharsets.UTF_8);
+        buffer.a('a').a('\uD83D');
+        assertEquals(1, buffer.size());
+        buffer.a('\uDE00').a("b");
+        assertEquals("a\uD83D\uDE00b", new String(buffer.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testEncodesWithStatefulCharsets() throws Exception {
+        Charset charset = Charset.forName("ISO-2022-JP");
+        AnsiBuffer buffer = new AnsiBuffer(charset);
+        // the text after the japanese characters is only readable if the encoder shifted back to ASCII
+        buffer.a("\u65e5\u672c").a(Long.MIN_VALUE).a(' ').a(42).a(new char[] {'x', '\u8a9e'});
+        assertEquals("\u65e5\u672c" + Long.MIN_VALUE + " 42x\u8a9e", new String(buffer.toByteArray(), charset));
+    }
+}
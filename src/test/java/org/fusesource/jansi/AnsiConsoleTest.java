@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2009-2023 the original author(s).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.jansi;
+
+import java.lang.reflect.Field;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class AnsiConsoleTest {
+
+    @Test
+    public void testStripDoesNotLoadTheNativeLibrary() throws Exception {
+        String previous = System.setProperty(AnsiConsole.JANSI_MODE, AnsiConsole.JANSI_MODE_STRIP);
+        // a fresh copy of the classes, as the library may have been loaded by other tests
+        URL classes = AnsiConsole.class.getProtectionDomain().getCodeSource().getLocation();
+        try (URLClassLoader loader = new URLClassLoader(
+                new URL[] {classes}, ClassLoader.getSystemClassLoader().getParent())) {
+            Class<?> console = Class.forName(AnsiConsole.class.getName(), true, loader);
+            Object out = console.getMethod("out").invoke(null);
+            Object type = out.getClass().getMethod("getType").invoke(out);
+            assertEquals(AnsiType.Unsupported.name(), type.toString());
+            Object mode = out.getClass().getMethod("getMode").invoke(out);
+            assertEquals(AnsiMode.Strip.name(), mode.toString());
+
+            Field loaded = Class.forName("org.fusesource.jansi.internal.JansiLoader", true, loader)
+                    .getDeclaredField("loaded");
+            loaded.setAccessible(true);
+            assertFalse((Boolean) loaded.get(null));
+        } finally {
+            if (previous != null) {
+                System.setProperty(AnsiConsole.JANSI_MODE, previous);
+            } else {
+                System.clearProperty(AnsiConsole.JANSI_MODE);
+            }
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2009-2023 the original author(s).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.jansi;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.fusesource.jansi.io.AnsiOutputStream;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AnsiLinePrintStreamTest {
+
+    private static AnsiLinePrintStream stream(ByteArrayOutputStream baos, AnsiMode mode) throws IOException {
+        AnsiOutputStream ansi = new AnsiOutputStream(
+                baos,
+                null,
+                mode,
+                null,
+                AnsiType.Emulation,
+                AnsiColors.TrueColor,
+                StandardCharsets.UTF_8,
+                null,
+                null,
+                false);
+        return new AnsiLinePrintStream(ansi, ansi, AnsiFlushPolicy.Always, "UTF-8");
+    }
+
+    @Test
+    void writesCompleteLines() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        AnsiLinePrintStream ps = stream(baos, AnsiMode.Force);
+        ps.print("\u001B[31mré");
+        ps.print('d');
+        ps.printf(" %d", 1);
+        assertEquals(0, baos.size());
+        ps.println("\u001B[0m");
+        assertEquals("\u001B[31mréd 1\u001B[0m" + System.lineSeparator(), baos.toString("UTF-8"));
+        baos.reset();
+        ps.print("prompt> ");
+        assertEquals(0, baos.size());
+        ps.flush();
+        assertEquals("prompt> ", baos.toString("UTF-8"));
+        baos.reset();
+        ps.write("a\nb".getBytes(StandardCharsets.UTF_8));
+        assertEquals("a\n", baos.toString("UTF-8"));
+        ps.write('\n');
+        assertEquals("a\nb\n", baos.toString("UTF-8"));
+    }
+
+    @Test
+    void doesNotInterleaveThreads() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        AnsiLinePrintStream ps = stream(baos, AnsiMode.Force);
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            final int id = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    // print each line in small pieces, splitting the escape sequences
+                    ps.print("\u001B[3");
+                    ps.print(id);
+                    ps.print("m");
+                    ps.print(id);
+                    ps.print(":");
+                    ps.print(i);
+                    ps.print("\u001B[0");
+                    ps.print("m\n");
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Map<Integer, Integer> next = new HashMap<>();
+        String[] lines = baos.toString("UTF-8").split("\n");
+        assertEquals(8000, lines.length);
+        for (String line : lines) {
+            int id = line.charAt(3) - '0';
+            int i = next.merge(id, 1, Integer::sum) - 1;
+            assertEquals("\u001B[3" + id + "m" + id + ":" + i + "\u001B[0m", line);
+        }
+    }
+
+    @Test
+    void flushWritesTheLineOfTheCurrentThread() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        AnsiLinePrintStream ps = stream(baos, AnsiMode.Force);
+        ps.setFlushInterval(60_000);
+        Thread thread = new Thread(() -> ps.print("left by a thread"));
+        thread.start();
+        thread.join();
+        ps.print("mine");
+        assertEquals(0, baos.size());
+        ps.flush();
+        assertEquals("mine", baos.toString("UTF-8"));
+        ps.close();
+        assertEquals("mineleft by a thread", baos.toString("UTF-8"));
+    }
+
+    @Test
+    void flushDoesNotSplitEscapeSequences() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        AnsiLinePrintStream ps = stream(baos, AnsiMode.Force);
+        ps.setFlushInterval(60_000);
+        Thread[] threads = new Thread[2];
+        for (int t = 0; t < threads.length; t++) {
+            final int id = t + 1;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    ps.print("\u001B[3");
+                    ps.flush();
+                    ps.print(id + "m" + id);
+                    ps.flush();
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        String out = baos.toString("UTF-8");
+        assertEquals(2000 * 6, out.length());
+        assertEquals("", out.replace("\u001B[31m1", "").replace("\u001B[32m2", ""));
+    }
+
+    @Test
+    void staleLinesEndWithCompleteSequences() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        AnsiLinePrintStream ps = stream(baos, AnsiMode.Force);
+        ps.setFlushInterval(10);
+        ps.print("prompt\u001B[3");
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (baos.size() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals("prompt", baos.toString("UTF-8"));
+        Thread thread = new Thread(() -> ps.print("other\n"));
+        thread.start();
+        thread.join();
+        ps.print("1m>\n");
+        assertEquals("promptother\n\u001B[31m>\n", baos.toString("UTF-8"));
+    }
+
+    @Test
+    void writesIncompleteLinesAfterTheFlushInterval() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        AnsiLinePrintStream ps = stream(baos, AnsiMode.Force);
+        ps.setFlushInterval(10);
+        ps.print("prompt> ");
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (baos.size() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals("prompt> ", baos.toString("UTF-8"));
+    }
+
+    @Test
+    void encodesWithCharsetsNotCompatibleWithAscii() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        AnsiOutputStream ansi = new AnsiOutputStream(
+                baos,
+                null,
+                AnsiMode.Force,
+                null,
+                AnsiType.Emulation,
+                AnsiColors.TrueColor,
+                StandardCharsets.UTF_16BE,
+                null,
+                null,
+                false);
+        AnsiLinePrintStream ps = new AnsiLinePrintStream(ansi, ansi, AnsiFlushPolicy.Always, "UTF-16BE");
+        ps.println("abc");
+        assertEquals("abc" + System.lineSeparator(), baos.toString("UTF-16BE"));
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2009-2023 the original author(s).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.jansi;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.fusesource.jansi.io.AnsiOutputStream;
+import org.fusesource.jansi.io.FastBufferedOutputStream;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AnsiPrintStreamTest {
+
+    static class Target extends FastBufferedOutputStream {
+        final ByteArrayOutputStream flushed;
+        volatile int flushes;
+
+        Target() {
+            this(new ByteArrayOutputStream());
+        }
+
+        private Target(ByteArrayOutputStream flushed) {
+            super(flushed);
+            this.flushed = flushed;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            super.flush();
+            flushes++;
+        }
+
+        String flushed() {
+            return new String(flushed.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static AnsiPrintStream stream(OutputStream os, AnsiFlushPolicy flushPolicy) throws IOException {
+        AnsiOutputStream ansi = new AnsiOutputStream(
+                os,
+                null,
+                AnsiMode.Strip,
+                null,
+                AnsiType.Emulation,
+                AnsiColors.Colors16,
+                StandardCharsets.UTF_8,
+                null,
+                null,
+                false);
+        return new AnsiPrintStream(ansi, ansi, flushPolicy, "UTF-8");
+    }
+
+    @Test
+    void flushesAfterEachWrite() throws IOException {
+        Target target = new Target();
+        AnsiPrintStream ps = stream(target, AnsiFlushPolicy.Always);
+        ps.print("prompt: ");
+        assertEquals("prompt: ", target.flushed());
+    }
+
+    @Test
+    void flushesOnNewlines() throws IOException {
+        Target target = new Target();
+        AnsiPrintStream ps = stream(target, AnsiFlushPolicy.Newline);
+        ps.print("a");
+        ps.print("b");
+        assertEquals("", target.flushed());
+        ps.print("c\nd");
+        assertEquals("abc\nd", target.flushed());
+        ps.write('e');
+        ps.write('\n');
+        assertEquals("abc\nde\n", target.flushed());
+    }
+
+    @Test
+    void flushesPeriodically() throws Exception {
+        Target target = new Target();
+        AnsiPrintStream ps = stream(target, AnsiFlushPolicy.Periodic);
+        ps.setFlushInterval(200);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            ps.println(i);
+            expected.append(i).append(System.lineSeparator());
+        }
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (target.flushes == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, target.flushes);
+        assertEquals(
+                290, target.flushed().length() - 100 * (System.lineSeparator().length() - 1));
+    }
+
+    @Test
+    void flushesManually() throws IOException {
+        Target target = new Target();
+        AnsiPrintStream ps = stream(target, AnsiFlushPolicy.Manual);
+        ps.println("line");
+        assertEquals("", target.flushed());
+        ps.flush();
+        assertEquals("line" + System.lineSeparator(), target.flushed());
+        ps.setFlushPolicy(AnsiFlushPolicy.Always);
+        ps.print("x");
+        assertEquals("line" + System.lineSeparator() + "x", target.flushed());
+    }
+
+    @Test
+    void flushesOnUninstall() throws IOException {
+        Target target = new Target();
+        AnsiPrintStream ps = stream(target, AnsiFlushPolicy.Periodic);
+        ps.setFlushInterval(60_000);
+        ps.install();
+        ps.print("hi");
+        ps.uninstall();
+        assertEquals("hi", target.flushed());
+    }
+
+    @Test
+    void createsLazyStreamOnFirstUse() throws IOException {
+        Target target = new Target();
+        int[] installs = new int[1];
+        AtomicInteger created = new AtomicInteger();
+        LazyAnsiStream lazy = new LazyAnsiStream(
+                l -> {
+                    created.incrementAndGet();
+                    return new AnsiOutputStream(
+                            target,
+                            null,
+                            AnsiMode.Strip,
+                            null,
+                            AnsiType.Redirected,
+                            AnsiColors.Colors16,
+                            StandardCharsets.UTF_8,
+                            () -> installs[0]++,
+                            null,
+                            false);
+                },
+                null,
+                new Object());
+        AnsiPrintStream ps = new AnsiPrintStream(lazy, AnsiFlushPolicy.Always, "UTF-8");
+        lazy.setListener(ansi -> ps.setFlushPolicy(AnsiFlushPolicy.Manual));
+        ps.install();
+        ps.flush();
+        assertFalse(lazy.isResolved());
+        assertEquals(0, installs[0]);
+
+        ps.print("\033[1mbold\033[0m");
+        assertTrue(lazy.isResolved());
+        assertEquals(1, created.get());
+        assertEquals(1, installs[0]);
+        assertEquals(AnsiFlushPolicy.Manual, ps.getFlushPolicy());
+        ps.flush();
+        assertEquals("bold", target.flushed());
+        assertEquals(AnsiType.Redirected, ps.getType());
+        assertEquals(1, created.get());
+    }
+}
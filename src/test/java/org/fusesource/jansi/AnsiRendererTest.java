@@ -122,4 +122,35 @@ public class AnsiRendererTest {
         String str = render("@|bold|@");
         assertEquals("@|bold|@", str);
     }
+
+    @Test
+    public void testCompile() {
+        String[] inputs = {
+            "foo", "@|bold foo|@", "@|bold,red foo bar baz|@ ick @|bold,red foo bar baz|@", "@|bold foo", "@|bold|@"
+        };
+        for (String input : inputs) {
+            Template template = compile(input);
+            assertEquals(input, template.getInput());
+            assertEquals(render(input), template.render());
+            Ansi.setEnabled(false);
+            try {
+                assertEquals(render(input), template.render());
+            } finally {
+                Ansi.setEnabled(true);
+            }
+        }
+        Template template = compile("@|bold foo|@");
+        Ansi.setEnabled(false);
+        try {
+            assertEquals("foo", template.render());
+        } finally {
+            Ansi.setEnabled(true);
+        }
+    }
+
+    @Test
+    public void testCompileInvalid() {
+        assertThrows(IllegalArgumentException.class, () -> compile("@|@"));
+        assertThrows(IllegalArgumentException.class, () -> compile("@|unknown foo|@"));
+    }
 }
@@ -30,6 +30,9 @@ import org.junit.jupiter.params.provider.CsvSource;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -201,6 +204,66 @@ public class AnsiTest {
         assertTrue(baos.toString().contains("test on System.out"), baos.toString());
     }
 
+    @Test
+    public void testStyle() throws Exception {
+        AnsiStyle error = AnsiStyle.style().fg(Color.RED).a(Ansi.Attribute.INTENSITY_BOLD);
+        assertEquals("\033[1;31m", error.toString());
+        assertEquals("", AnsiStyle.style().toString());
+        assertEquals(
+                "\033[38;5;208;48;2;1;2;3m",
+                AnsiStyle.style().fg(208).bgRgb(1, 2, 3).toString());
+        assertEquals(
+                AnsiStyle.style().fg(Color.RED),
+                AnsiStyle.style().fg(Color.BLUE).fg(Color.RED));
+
+        assertAnsi(
+                "ESC[2mESC[1;31merrorESC[m",
+                new Ansi()
+                        .a(Ansi.Attribute.INTENSITY_FAINT)
+                        .style(error)
+                        .a("error")
+                        .reset());
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        error.writeTo(baos);
+        assertEquals("\033[1;31m", baos.toString());
+    }
+
+    @Test
+    public void testClear() {
+        Ansi ansi = Ansi.ansi().fgRed().a("error").bold();
+        assertAnsi("ESC[1mwarning", ansi.clear().bold().a("warning"));
+        assertAnsi("", ansi.fgRed().clear());
+    }
+
+    @Test
+    public void testPooled() {
+        Ansi.setEnabled(true);
+        Ansi first;
+        try (Ansi.Pooled pooled = Ansi.pooled()) {
+            first = pooled.ansi();
+            assertAnsi("ESC[31merrorESC[m", first.fgRed().a("error").reset());
+            // a nested call does not share the builder
+            try (Ansi.Pooled nested = Ansi.pooled()) {
+                assertNotSame(first, nested.ansi());
+                assertAnsi("", nested.ansi());
+            }
+        }
+        try (Ansi.Pooled pooled = Ansi.pooled()) {
+            assertSame(first, pooled.ansi());
+            assertAnsi("ESC[1mreused", pooled.ansi().bold().a("reused"));
+            pooled.close();
+            assertThrows(IllegalStateException.class, pooled::ansi);
+        }
+
+        Ansi.setEnabled(false);
+        try (Ansi.Pooled pooled = Ansi.pooled()) {
+            assertAnsi("disabled", pooled.ansi().fgRed().a("disabled").reset());
+        } finally {
+            Ansi.setEnabled(true);
+        }
+    }
+
     private static void assertAnsi(String expected, Ansi actual) {
         assertEquals(expected.replace("ESC", "\033"), actual.toString());
     }
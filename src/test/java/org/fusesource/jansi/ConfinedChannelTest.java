@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2009-2023 the original author(s).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.jansi;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.fusesource.jansi.io.ChannelOutputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConfinedChannelTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void interruptedCallersDoNotCloseTheChannel() throws IOException {
+        Path file = tempDir.resolve("out");
+        Thread owner = new Thread(() -> {});
+        ConfinedChannel channel =
+                new ConfinedChannel(new FileOutputStream(file.toFile()), () -> Thread.currentThread() == owner);
+        ChannelOutputStream out = new ChannelOutputStream(channel, 4);
+        Thread.currentThread().interrupt();
+        try {
+            out.write("ab".getBytes());
+            out.write("cdefghij".getBytes());
+            out.flush();
+        } finally {
+            assertTrue(Thread.interrupted());
+        }
+        assertTrue(channel.isOpen());
+        out.close();
+        assertEquals("abcdefghij", new String(Files.readAllBytes(file)));
+    }
+
+    @Test
+    void writesToTheChannelFromTheOwner() throws Exception {
+        Path file = tempDir.resolve("out");
+        ConfinedChannel channel = new ConfinedChannel(new FileOutputStream(file.toFile()), () -> true);
+        ChannelOutputStream out = new ChannelOutputStream(channel, 4);
+        out.write("ab".getBytes());
+        out.write("cdefghij".getBytes());
+        out.close();
+        assertEquals("abcdefghij", new String(Files.readAllBytes(file)));
+    }
+}
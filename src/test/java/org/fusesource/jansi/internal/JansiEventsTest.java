@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2009-2023 the original author(s).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.jansi.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.fusesource.jansi.io.FastBufferedOutputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The tests are compiled for Java 8, so the flight recorder API is used reflectively.
+ */
+public class JansiEventsTest {
+
+    @Test
+    public void testDisabled() {
+        // no recording is running
+        assertNull(JansiEvents.beginFlush());
+        JansiEvents.endFlush(null, 0);
+    }
+
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_11)
+    public void testFlushEvents(@TempDir Path dir) throws Exception {
+        assertTrue(JansiEvents.isAvailable());
+
+        Class<?> recordingClass = Class.forName("jdk.jfr.Recording");
+        Object recording = recordingClass.getConstructor().newInstance();
+        Object settings =
+                recordingClass.getMethod("enable", String.class).invoke(recording, "org.fusesource.jansi.Flush");
+        settings.getClass().getMethod("withThreshold", Duration.class).invoke(settings, Duration.ZERO);
+        recordingClass.getMethod("start").invoke(recording);
+        try {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            FastBufferedOutputStream out = new FastBufferedOutputStream(baos, 16);
+            out.write("hello".getBytes());
+            out.flush();
+            out.write(new byte[20]);
+        } finally {
+            recordingClass.getMethod("stop").invoke(recording);
+        }
+        Path file = dir.resolve("jansi.jfr");
+        recordingClass.getMethod("dump", Path.class).invoke(recording, file);
+        recordingClass.getMethod("close").invoke(recording);
+        assertTrue(Files.size(file) > 0);
+
+        List<?> events = (List<?>) Class.forName("jdk.jfr.consumer.RecordingFile")
+                .getMethod("readAllEvents", Path.class)
+                .invoke(null, file);
+        Class<?> recordedEvent = Class.forName("jdk.jfr.consumer.RecordedEvent");
+        Method getEventType = recordedEvent.getMethod("getEventType");
+        Method getName = Class.forName("jdk.jfr.EventType").getMethod("getName");
+        Method getInt = Class.forName("jdk.jfr.consumer.RecordedObject").getMethod("getInt", String.class);
+        List<Integer> bytes = new ArrayList<>();
+        for (Object event : events) {
+            if ("org.fusesource.jansi.Flush".equals(getName.invoke(getEventType.invoke(event)))) {
+                bytes.add((Integer) getInt.invoke(event, "bytes"));
+            }
+        }
+        assertEquals(2, bytes.size());
+        assertEquals(5, (int) bytes.get(0));
+        assertEquals(20, (int) bytes.get(1));
+    }
+}
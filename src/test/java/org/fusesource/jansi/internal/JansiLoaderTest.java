@@ -15,7 +15,19 @@
  */
 package org.fusesource.jansi.internal;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 public class JansiLoaderTest {
 
@@ -23,4 +35,40 @@ public class JansiLoaderTest {
     public void testLoadJansi() {
         JansiLoader.initialize();
     }
+
+    @Test
+    public void testCachedLibraryFile(@TempDir Path cacheDir) throws Exception {
+        String name = System.mapLibraryName("jansi").replace(".dylib", ".jnilib");
+        String resource =
+                "/org/fusesource/jansi/internal/native/" + OSInfo.getNativeLibFolderPathForCurrentOS() + "/" + name;
+        assumeTrue(JansiLoader.class.getResource(resource) != null);
+
+        File file = JansiLoader.cachedLibraryFile(resource, name, cacheDir.toFile());
+        assertTrue(file.getName().startsWith("jansi-cache-"));
+        assertArrayEquals(readResource(resource), Files.readAllBytes(file.toPath()));
+
+        long modified = file.lastModified();
+        assertEquals(file, JansiLoader.cachedLibraryFile(resource, name, cacheDir.toFile()));
+        assertEquals(modified, file.lastModified());
+        // only the library remains
+        assertEquals(1, cacheDir.toFile().list().length);
+
+        // a truncated library is extracted again
+        Files.write(file.toPath(), new byte[16]);
+        assertEquals(file, JansiLoader.cachedLibraryFile(resource, name, cacheDir.toFile()));
+        assertArrayEquals(readResource(resource), Files.readAllBytes(file.toPath()));
+        assertEquals(1, cacheDir.toFile().list().length);
+    }
+
+    private static byte[] readResource(String resource) throws Exception {
+        try (InputStream in = JansiLoader.class.getResourceAsStream(resource)) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                baos.write(buffer, 0, n);
+            }
+            return baos.toByteArray();
+        }
+    }
 }
@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2009-2023 the original author(s).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.jansi.internal;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class OSInfoTest {
+
+    @Test
+    public void testSnapshot() {
+        assertEquals(OSInfo.translateOSNameToFolderName(System.getProperty("os.name")), OSInfo.getOSName());
+        assertEquals(OSInfo.resolveArchName(), OSInfo.getArchName());
+        assertEquals(OSInfo.getOSName() + "/" + OSInfo.getArchName(), OSInfo.getNativeLibFolderPathForCurrentOS());
+    }
+
+    @Test
+    @EnabledOnOs(OS.LINUX)
+    public void testKernelArch() {
+        assumeTrue(Files.isReadable(Paths.get("/proc/sys/kernel/arch")));
+        String arch = OSInfo.readKernelArch();
+        assertNotNull(arch);
+        assertEquals(arch, arch.trim());
+        assertEquals(arch, OSInfo.getHardwareName());
+    }
+
+    @Test
+    @EnabledOnOs(OS.WINDOWS)
+    public void testNoKernelArch() {
+        assertNull(OSInfo.readKernelArch());
+    }
+}
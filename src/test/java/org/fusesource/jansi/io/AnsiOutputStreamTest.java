@@ -17,7 +17,11 @@ package org.fusesource.jansi.io;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.fusesource.jansi.AnsiColors;
 import org.fusesource.jansi.AnsiMode;
@@ -46,4 +50,336 @@ class AnsiOutputStreamTest {
                 ("\u001B[33mbanana_1  |\u001B[0m 19:59:14.353\u001B[0;38m [debug] A message\u001B[0m\n").getBytes());
         assertEquals("banana_1  | 19:59:14.353 [debug] A message\n", baos.toString());
     }
+
+    @Test
+    void canHandleEscapeSequencesSplitAcrossWrites() throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final AnsiOutputStream ansiOutput = new AnsiOutputStream(
+                baos,
+                null,
+                AnsiMode.Strip,
+                null,
+                AnsiType.Emulation,
+                AnsiColors.TrueColor,
+                StandardCharsets.UTF_8,
+                null,
+                null,
+                false);
+        byte[] data = "plain \u001B[1;31mred\u001B[0m text\n".getBytes(StandardCharsets.UTF_8);
+        for (int split = 0; split <= data.length; split++) {
+            baos.reset();
+            ansiOutput.write(data, 0, split);
+            ansiOutput.write(data, split, data.length - split);
+            assertEquals("plain red text\n", baos.toString(), "split at " + split);
+        }
+    }
+
+    @Test
+    void forwardsPlainTextInBulk() throws IOException {
+        final List<Integer> writes = new ArrayList<>();
+        final OutputStream counting = new ByteArrayOutputStream() {
+            @Override
+            public synchronized void write(int b) {
+                writes.add(1);
+                super.write(b);
+            }
+
+            @Override
+            public synchronized void write(byte[] b, int off, int len) {
+                writes.add(len);
+                super.write(b, off, len);
+            }
+        };
+        final AnsiOutputStream ansiOutput = new AnsiOutputStream(
+                counting,
+                null,
+                AnsiMode.Force,
+                null,
+                AnsiType.Native,
+                AnsiColors.TrueColor,
+                StandardCharsets.UTF_8,
+                null,
+                null,
+                false);
+        ansiOutput.write("a fairly long line of plain text\n".getBytes(StandardCharsets.UTF_8));
+        assertEquals(1, writes.size());
+        assertEquals("a fairly long line of plain text\n", counting.toString());
+    }
+
+    @Test
+    void parsesNumericOptionsWithoutBoxing() throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final List<String> calls = new ArrayList<>();
+        final AnsiOutputStream ansiOutput = new AnsiOutputStream(
+                baos,
+                null,
+                AnsiMode.Default,
+                new AnsiProcessor(baos) {
+                    @Override
+                    protected void processSetForegroundColorExt(int r, int g, int b) {
+                        calls.add("fg(" + r + "," + g + "," + b + ")");
+                    }
+
+                    @Override
+                    protected void processCursorTo(int row, int col) {
+                        calls.add("to(" + row + "," + col + ")");
+                    }
+                },
+                AnsiType.Emulation,
+                AnsiColors.TrueColor,
+                StandardCharsets.UTF_8,
+                null,
+                null,
+                false);
+        ansiOutput.write("\u001B[38;2;10;200;255mx\u001B[;12H\u001B[99999999999C".getBytes(StandardCharsets.UTF_8));
+        assertEquals(Arrays.asList("fg(10,200,255)", "to(1,12)"), calls);
+        assertEquals("x\u001B[99999999999C", baos.toString());
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    void callsLegacyListBasedProcessors() throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final List<Object> received = new ArrayList<>();
+        final AnsiOutputStream ansiOutput = new AnsiOutputStream(
+                baos,
+                null,
+                AnsiMode.Default,
+                new AnsiProcessor(baos) {
+                    @Override
+                    protected boolean processEscapeCommand(ArrayList<Object> options, int command) throws IOException {
+                        received.addAll(options);
+                        return super.processEscapeCommand(options, command);
+                    }
+                },
+                AnsiType.Emulation,
+                AnsiColors.TrueColor,
+                StandardCharsets.UTF_8,
+                null,
+                null,
+                false);
+        ansiOutput.write("\u001B[?;25hok".getBytes(StandardCharsets.UTF_8));
+        assertEquals(Arrays.asList('?', null, 25), received);
+        assertEquals("ok", baos.toString());
+    }
+
+    @Test
+    void downsamplesTrueColors() throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final AnsiOutputStream ansiOutput = new AnsiOutputStream(
+                baos,
+                null,
+                AnsiMode.Force,
+                null,
+                AnsiType.Native,
+                AnsiColors.Colors256,
+                StandardCharsets.UTF_8,
+                null,
+                null,
+                false);
+        ansiOutput.write("\u001B[1;38;2;255;0;0;48;5;21mx\u001B[38m".getBytes(StandardCharsets.UTF_8));
+        assertEquals("\u001B[1;38;5;196;48;5;21mx\u001B[38m", baos.toString());
+    }
+
+    @Test
+    void stripsSequencesWithoutProcessing() throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final AnsiOutputStream ansiOutput = new AnsiOutputStream(
+                baos,
+                null,
+                AnsiMode.Strip,
+                null,
+                AnsiType.Redirected,
+                AnsiColors.TrueColor,
+                StandardCharsets.UTF_8,
+                null,
+                null,
+                false);
+        byte[] data = ("\u001B[1;38;2;255;0;0ma\u001B[?25lb\u001B]0;title\u0007c\u001B]2;title\u001B\\d"
+                        + "\u001B(Be\u001B[3Cf\u001B[Eg\u001B[3~h\u001B[99999999999Ci\u001BPq#0;2;0;0;0\u001B\\j"
+                        + "\u001B_apc\u001B\\k\u001B7l\u001B[31\u001B[32mm")
+                .getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < data.length; i += 3) {
+            ansiOutput.write(data, i, Math.min(3, data.length - i));
+        }
+        assertEquals("abcde   f\ngh" + "ijkl" + "m", baos.toString());
+    }
+
+    @Test
+    void neverCallsTheProcessorWhenStripping() throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final AnsiProcessor processor = new AnsiProcessor(baos) {
+            @Override
+            protected boolean processEscapeCommand(AnsiOptions options, int command) {
+                throw new AssertionError("CSI " + (char) command);
+            }
+
+            @Override
+            protected boolean processEscapeSequence(int command) {
+                throw new AssertionError("ESC " + (char) command);
+            }
+
+            @Override
+            protected boolean processOperatingSystemCommand(ArrayList<Object> options) {
+                throw new AssertionError("OSC " + options);
+            }
+
+            @Override
+            protected boolean processControlString(int type) {
+                throw new AssertionError("control string " + (char) type);
+            }
+
+            @Override
+            protected boolean processCharsetSelect(ArrayList<Object> options) {
+                throw new AssertionError("charset " + options);
+            }
+        };
+        final AnsiOutputStream ansiOutput = new AnsiOutputStream(
+                baos,
+                null,
+                AnsiMode.Strip,
+                processor,
+                AnsiType.Emulation,
+                AnsiColors.TrueColor,
+                StandardCharsets.UTF_8,
+                null,
+                null,
+                false);
+        ansiOutput.write("\u001B[1;31ma\u001B]0;title\u0007b\u001BPq\u001B\\c\u001B7d\u001B(Be"
+                .getBytes(StandardCharsets.UTF_8));
+        assertEquals("abcde", baos.toString());
+    }
+
+    @Test
+    void stripsCursorMovesFromTheirFirstParameter() throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final AnsiOutputStream ansiOutput = new AnsiOutputStream(
+                baos,
+                null,
+                AnsiMode.Strip,
+                null,
+                AnsiType.Redirected,
+                AnsiColors.TrueColor,
+                StandardCharsets.UTF_8,
+                null,
+                null,
+                false);
+        ansiOutput.write("a\u001B[2;5Cb\u001B[;5Cc\u001B[2 Cd\u001B[?3Ce\u001B[0Ef".getBytes(StandardCharsets.UTF_8));
+        // sequences with an intermediate byte or a private marker are not cursor moves
+        assertEquals("a  b c" + "d" + "e" + "f", baos.toString());
+    }
+
+    @Test
+    void passesLongHyperlinksThrough() throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final AnsiOutputStream ansiOutput = new AnsiOutputStream(
+                baos,
+                null,
+                AnsiMode.Force,
+                null,
+                AnsiType.Native,
+                AnsiColors.TrueColor,
+                StandardCharsets.UTF_8,
+                null,
+                null,
+                false);
+        StringBuilder url = new StringBuilder("https://example.com/");
+        while (url.length() < 500) {
+            url.append("path/");
+        }
+        String link = "\u001B]8;;" + url + "\u001B\\link\u001B]8;;\u0007";
+        ansiOutput.write(link.getBytes(StandardCharsets.UTF_8));
+        assertEquals(link, baos.toString());
+    }
+
+    @Test
+    void passesOscAtTheBufferLimitThrough() throws IOException {
+        // the buffer holds up to 64 KiB, including the ESC ] introducer and the ESC of the terminator
+        int limit = 64 * 1024;
+        for (String terminator : new String[] {"\u0007", "\u001B\\"}) {
+            int exact = limit - 2 - (terminator.length() - 1);
+            for (int length = exact - 1; length <= exact + 1; length++) {
+                StringBuilder osc = new StringBuilder("\u001B]0;");
+                while (osc.length() < length + 2) {
+                    osc.append('t');
+                }
+                String data = "a" + osc + terminator + "b";
+                for (boolean bulk : new boolean[] {true, false}) {
+                    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                    final AnsiOutputStream ansiOutput = new AnsiOutputStream(
+                            baos,
+                            null,
+                            AnsiMode.Force,
+                            null,
+                            AnsiType.Native,
+                            AnsiColors.TrueColor,
+                            StandardCharsets.UTF_8,
+                            null,
+                            null,
+                            false);
+                    byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+                    if (bulk) {
+                        ansiOutput.write(bytes);
+                    } else {
+                        for (byte b : bytes) {
+                            ansiOutput.write(b);
+                        }
+                    }
+                    assertEquals(data, baos.toString(), "length " + length + ", bulk " + bulk);
+                }
+            }
+        }
+    }
+
+    @Test
+    void handlesControlStringsAndEscapeSequences() throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final List<String> received = new ArrayList<>();
+        final AnsiOutputStream ansiOutput = new AnsiOutputStream(
+                baos,
+                null,
+                AnsiMode.Default,
+                new AnsiProcessor(baos) {
+                    @Override
+                    protected void processSaveCursorPosition() {
+                        received.add("save");
+                    }
+
+                    @Override
+                    protected boolean processControlString(int type) {
+                        received.add(String.valueOf((char) type));
+                        return type != 'P';
+                    }
+                },
+                AnsiType.Emulation,
+                AnsiColors.TrueColor,
+                StandardCharsets.UTF_8,
+                null,
+                null,
+                false);
+        ansiOutput.write("a\u001B7b\u001BP1$r\u001B\\c\u001B^pm\u001B\\d\u001B#8e".getBytes(StandardCharsets.UTF_8));
+        assertEquals(Arrays.asList("save", "P", "^"), received);
+        assertEquals("ab\u001BP1$r\u001B\\cd\u001B#8e", baos.toString());
+    }
+
+    @Test
+    void recognizes8BitControlsInLatin1Only() throws IOException {
+        for (boolean latin1 : new boolean[] {true, false}) {
+            final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            final AnsiOutputStream ansiOutput = new AnsiOutputStream(
+                    baos,
+                    null,
+                    AnsiMode.Strip,
+                    null,
+                    AnsiType.Redirected,
+                    AnsiColors.TrueColor,
+                    latin1 ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8,
+                    null,
+                    null,
+                    false);
+            byte[] data = {'a', (byte) 0x9b, '3', '1', 'm', 'b'};
+            ansiOutput.write(data);
+            assertEquals(latin1 ? "ab" : new String(data, StandardCharsets.ISO_8859_1), baos.toString("ISO-8859-1"));
+        }
+    }
 }
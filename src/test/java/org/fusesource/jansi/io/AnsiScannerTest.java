@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2009-2023 the original author(s).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.jansi.io;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AnsiScannerTest {
+
+    /**
+     * @return the bytes with a '|' at each point where they can be split
+     */
+    private static String boundaries(String s, Charset cs) {
+        AnsiScanner scanner = new AnsiScanner(cs);
+        StringBuilder sb = new StringBuilder();
+        for (byte b : s.getBytes(cs)) {
+            sb.append((char) (b & 0xff));
+            if (scanner.next(b)) {
+                sb.append('|');
+            }
+        }
+        return new String(sb.toString().getBytes(StandardCharsets.ISO_8859_1), cs).replace("\033", "\\e");
+    }
+
+    @Test
+    void splitsAfterCompleteSequences() {
+        assertEquals("a|\\e[31m|b|", boundaries("a\033[31mb", StandardCharsets.UTF_8));
+        assertEquals("\\e]0;t\007|\\e]0;t\\e\\|", boundaries("\033]0;t\007\033]0;t\033\\", StandardCharsets.UTF_8));
+        // an ESC which does not terminate a string starts a new sequence
+        assertEquals("\\e]0;t\\e[1m|", boundaries("\033]0;t\033[1m", StandardCharsets.UTF_8));
+        // C0 controls abort sequences
+        assertEquals("\\e[3\n|", boundaries("\033[3\n", StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void splitsBetweenCharacters() {
+        assertEquals("r|é|\u20ac|\uD83D\uDE00|", boundaries("ré\u20ac\uD83D\uDE00", StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void recognizesEightBitControlsInSingleByteCharsets() {
+        assertEquals("\u009b1m|", boundaries("\u009b1m", StandardCharsets.ISO_8859_1));
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2009-2023 the original author(s).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.jansi.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.fusesource.jansi.AnsiColors;
+import org.fusesource.jansi.AnsiMode;
+import org.fusesource.jansi.AnsiType;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AnsiStatisticsTest {
+
+    private static AnsiOutputStream stream(AnsiMode mode, AnsiColors colors) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        return new AnsiOutputStream(
+                baos, null, mode, null, AnsiType.Native, colors, StandardCharsets.UTF_8, null, null, false);
+    }
+
+    @Test
+    void countsSequences() throws IOException {
+        AnsiOutputStream out = stream(AnsiMode.Default, AnsiColors.Colors16);
+        assertNull(out.getMetrics());
+        AnsiStatistics statistics = new AnsiStatistics();
+        out.setMetrics(statistics);
+
+        String text =
+                "plain \033[31mred\033[0m \033[38;2;1;2;3mrgb\033[m" + "\033]0;title\007\033Pdcs\033\\\0337\033[1\030x";
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.write(bytes, 0, 10);
+        out.write(bytes, 10, bytes.length - 10);
+        out.write('!');
+        out.flush();
+
+        assertEquals(bytes.length + 1, statistics.getBytesWritten());
+        // the CAN byte aborting the last sequence is written as is, but is not text
+        assertEquals("plain red rgbx!".length(), statistics.getTextBytes());
+        assertEquals(bytes.length + 1 - statistics.getTextBytes(), statistics.getEscapeBytes());
+        assertEquals(4, statistics.getCsiSequences());
+        assertEquals(1, statistics.getEscapeSequences());
+        assertEquals(1, statistics.getOscSequences());
+        assertEquals(1, statistics.getControlStrings());
+        // only the rgb color is rewritten to 16 colors, the other sequences are written as is
+        assertEquals(1, statistics.getProcessedSequences());
+        assertEquals(1, statistics.getAbortedSequences());
+        assertEquals(1, statistics.getFlushes());
+        assertTrue(statistics.getProcessorNanos() > 0);
+
+        statistics.reset();
+        assertEquals(0, statistics.getBytesWritten());
+        assertEquals(0, statistics.getCsiSequences());
+    }
+
+    @Test
+    void countsStrippedSequences() throws IOException {
+        AnsiOutputStream out = stream(AnsiMode.Strip, AnsiColors.TrueColor);
+        AnsiStatistics statistics = new AnsiStatistics();
+        out.setMetrics(statistics);
+        out.write("\033[1mbold\033[0m\033]0;t\007".getBytes(StandardCharsets.UTF_8));
+        assertEquals(2, statistics.getCsiSequences());
+        assertEquals(1, statistics.getOscSequences());
+        assertEquals(3, statistics.getProcessedSequences());
+        assertEquals(4, statistics.getTextBytes());
+    }
+
+    @Test
+    void registersMXBean() throws JMException {
+        AnsiStatistics statistics = new AnsiStatistics();
+        statistics.text(3);
+        ObjectName name = statistics.register("test");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            assertEquals(3L, server.getAttribute(name, "TextBytes"));
+            // registering again replaces the previous statistics
+            new AnsiStatistics().register("test");
+            assertEquals(0L, server.getAttribute(name, "TextBytes"));
+            assertTrue(new AnsiStatistics().tryRegister("test"));
+            assertEquals(0L, server.getAttribute(name, "TextBytes"));
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2009-2023 the original author(s).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.jansi.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.fusesource.jansi.AnsiColors;
+import org.fusesource.jansi.AnsiMode;
+import org.fusesource.jansi.AnsiType;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AnsiWriterTest {
+
+    private static final String[] SAMPLES = {
+        "plain text",
+        "café € 😀 日本",
+        "\033[1;31mred\033[0m and \033[38;5;12mblue\033[m",
+        "\033]0;titre été\007after",
+        "\033]2;title\033\\after",
+        "\033]8;;http://example.com\033\\link\033]8;;\033\\",
+        "\033]not a command\007text",
+        "\033Pdcs é\033\\text",
+        "\033[2J\033[Hmoved\033[1Eé",
+        "\033(Bcharset \033",
+    };
+
+    static class Recorder extends AnsiProcessor {
+        final List<String> titles = new ArrayList<>();
+
+        Recorder(OutputStream os) {
+            super(os);
+        }
+
+        @Override
+        protected void processChangeWindowTitle(String label) {
+            titles.add(label);
+        }
+
+        @Override
+        protected void processChangeIconNameAndWindowTitle(String label) {
+            titles.add(label);
+        }
+    }
+
+    private static AnsiOutputStream stream(OutputStream os, Charset cs, AnsiMode mode, AnsiProcessor processor) {
+        return new AnsiOutputStream(
+                os, null, mode, processor, AnsiType.Emulation, AnsiColors.TrueColor, cs, null, null, false);
+    }
+
+    private static byte[] viaStream(String text, Charset cs, AnsiMode mode) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        AnsiOutputStream out = stream(baos, cs, mode, new Recorder(baos));
+        out.write(text.getBytes(cs));
+        out.flush();
+        return baos.toByteArray();
+    }
+
+    private static byte[] viaWriter(String text, Charset cs, AnsiMode mode, int chunk) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        AnsiWriter writer = new AnsiWriter(stream(baos, cs, mode, new Recorder(baos)));
+        for (int i = 0; i < text.length(); i += chunk) {
+            writer.write(text, i, Math.min(chunk, text.length() - i));
+        }
+        writer.flush();
+        return baos.toByteArray();
+    }
+
+    @Test
+    void writesLikeTheStream() throws IOException {
+        for (Charset cs : new Charset[] {
+            StandardCharsets.UTF_8,
+            StandardCharsets.ISO_8859_1,
+            Charset.forName("windows-1252"),
+            StandardCharsets.US_ASCII
+        }) {
+            for (AnsiMode mode : AnsiMode.values()) {
+                for (String sample : SAMPLES) {
+                    byte[] expected = viaStream(sample, cs, mode);
+                    for (int chunk : new int[] {1, 2, 3, 7, 1000}) {
+                        assertArrayEquals(
+                                expected,
+                                viaWriter(sample, cs, mode, chunk),
+                                cs + " " + mode + " " + chunk + " " + sample);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void passesDecodedTitles() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        Recorder recorder = new Recorder(baos);
+        AnsiWriter writer = new AnsiWriter(stream(baos, StandardCharsets.UTF_8, AnsiMode.Default, recorder));
+        writer.write("a\033]0;été 😀\007b\033]2;x\033\\c");
+        writer.flush();
+        assertEquals("abc", new String(baos.toByteArray(), StandardCharsets.UTF_8));
+        assertEquals(2, recorder.titles.size());
+        assertEquals("été 😀", recorder.titles.get(0));
+        assertEquals("x", recorder.titles.get(1));
+    }
+
+    @Test
+    void replacesUnmappableCharacters() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        AnsiWriter writer = new AnsiWriter(stream(baos, StandardCharsets.US_ASCII, AnsiMode.Default, null));
+        writer.write("é\ud83d");
+        writer.write("\ude00\ud83d\033[1mx");
+        writer.close();
+        assertEquals("???\033[1mx", new String(baos.toByteArray(), StandardCharsets.US_ASCII));
+    }
+}
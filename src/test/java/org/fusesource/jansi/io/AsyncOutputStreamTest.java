@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2009-2023 the original author(s).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.jansi.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.fusesource.jansi.AnsiColors;
+import org.fusesource.jansi.AnsiFlushPolicy;
+import org.fusesource.jansi.AnsiMode;
+import org.fusesource.jansi.AnsiPrintStream;
+import org.fusesource.jansi.AnsiType;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncOutputStreamTest {
+
+    @Test
+    void writesLinesFromManyThreadsInOrder() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        AnsiOutputStream ansi = new AnsiOutputStream(
+                baos,
+                null,
+                AnsiMode.Strip,
+                null,
+                AnsiType.Emulation,
+                AnsiColors.TrueColor,
+                StandardCharsets.UTF_8,
+                null,
+                null,
+                false);
+        AsyncOutputStream async = new AsyncOutputStream(ansi, "test-async", 64);
+        AnsiPrintStream ps = new AnsiPrintStream(ansi, async, AnsiFlushPolicy.Always, "UTF-8");
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int id = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 500; i++) {
+                    ps.println("\u001B[3" + id + "m" + id + ":" + i + "\u001B[0m");
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        async.drain();
+
+        String[] lines = baos.toString("UTF-8").split(System.lineSeparator());
+        assertEquals(2000, lines.length);
+        int[] next = new int[threads.length];
+        for (String line : lines) {
+            int id = line.charAt(0) - '0';
+            assertEquals(id + ":" + next[id]++, line);
+        }
+        ps.close();
+    }
+
+    @Test
+    void blocksWritersWhenFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        OutputStream slow = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                baos.write(b);
+            }
+        };
+        AsyncOutputStream async = new AsyncOutputStream(slow, "test-async", 4);
+        async.write('a');
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        // the writer thread is stuck on 'a', which still holds a permit
+        async.write("bcd".getBytes(StandardCharsets.US_ASCII));
+        Thread blocked = new Thread(() -> {
+            try {
+                async.write('e');
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        blocked.start();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (blocked.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(Thread.State.WAITING, blocked.getState());
+        release.countDown();
+        blocked.join();
+        async.close();
+        assertEquals("abcde", baos.toString("US-ASCII"));
+    }
+
+    @Test
+    void reportsWriteFailures() throws Exception {
+        OutputStream broken = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("broken");
+            }
+        };
+        AsyncOutputStream async = new AsyncOutputStream(broken, "test-async", 16);
+        async.write('a');
+        IOException e = assertThrows(IOException.class, async::drain);
+        assertEquals("broken", e.getCause().getMessage());
+        assertThrows(IOException.class, () -> async.write('b'));
+        PrintStream ps = new PrintStream(async, true);
+        ps.println("c");
+        assertTrue(ps.checkError());
+        assertThrows(IOException.class, async::close);
+    }
+
+    @Test
+    void detachStopsTheWriterThread() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        OutputStream target = new FilterOutputStream(baos) {
+            @Override
+            public void close() {
+                throw new AssertionError("closed");
+            }
+        };
+        AsyncOutputStream async = new AsyncOutputStream(target, "test-async-detach", 16);
+        async.write("queued".getBytes(StandardCharsets.US_ASCII));
+        async.detach();
+        assertFalse(threadExists("test-async-detach"));
+        assertEquals("queued", baos.toString("US-ASCII"));
+        async.write(" sync".getBytes(StandardCharsets.US_ASCII));
+        assertEquals("queued sync", baos.toString("US-ASCII"));
+    }
+
+    @Test
+    void doesNotLoseBytesWrittenWhileClosing() throws Exception {
+        for (int run = 0; run < 20; run++) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            AsyncOutputStream async = new AsyncOutputStream(baos, "test-async-close", 64);
+            AtomicInteger written = new AtomicInteger();
+            Thread[] threads = new Thread[4];
+            for (int t = 0; t < threads.length; t++) {
+                threads[t] = new Thread(() -> {
+                    try {
+                        while (true) {
+                            async.write('x');
+                            written.incrementAndGet();
+                        }
+                    } catch (IOException e) {
+                        // closed
+                    }
+                });
+                threads[t].start();
+            }
+            Thread.sleep(2);
+            async.close();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertEquals(written.get(), baos.size());
+        }
+    }
+
+    private static boolean threadExists(String name) {
+        return Thread.getAllStackTraces().keySet().stream()
+                .anyMatch(t -> t.getName().equals(name));
+    }
+}
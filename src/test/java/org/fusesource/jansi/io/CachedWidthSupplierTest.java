@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2009-2023 the original author(s).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.jansi.io;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class CachedWidthSupplierTest {
+
+    @Test
+    void cachesUntilInvalidated() {
+        AtomicInteger queries = new AtomicInteger();
+        CachedWidthSupplier supplier = new CachedWidthSupplier(
+                () -> {
+                    int n = queries.incrementAndGet();
+                    return new int[] {80 + n, 24};
+                },
+                0);
+        assertEquals(81, supplier.getTerminalWidth());
+        assertEquals(24, supplier.getTerminalHeight());
+        assertEquals(81, supplier.getTerminalWidth());
+        assertEquals(1, queries.get());
+        supplier.invalidate();
+        assertEquals(82, supplier.getTerminalWidth());
+        assertEquals(2, queries.get());
+    }
+
+    @Test
+    void expiresAfterTimeToLive() throws InterruptedException {
+        AtomicInteger queries = new AtomicInteger();
+        CachedWidthSupplier supplier = new CachedWidthSupplier(
+                () -> {
+                    queries.incrementAndGet();
+                    return new int[] {80, 24};
+                },
+                20);
+        supplier.getTerminalWidth();
+        supplier.getTerminalWidth();
+        assertEquals(1, queries.get());
+        Thread.sleep(50);
+        supplier.getTerminalWidth();
+        assertEquals(2, queries.get());
+    }
+
+    @Test
+    void notifiesListenersOfNewSizes() {
+        int[] size = {80, 24};
+        CachedWidthSupplier supplier = new CachedWidthSupplier(() -> size.clone(), 0);
+        int[] notified = new int[3];
+        supplier.addResizeListener((w, h) -> {
+            notified[0]++;
+            notified[1] = w;
+            notified[2] = h;
+        });
+        supplier.refresh();
+        assertEquals(0, notified[0]);
+        size[0] = 120;
+        supplier.refresh();
+        assertArrayEquals(new int[] {1, 120, 24}, notified);
+        assertEquals(120, supplier.getTerminalWidth());
+    }
+
+    @Test
+    void notifiesAllListenersWhenOneFails() {
+        int[] size = {80, 24};
+        CachedWidthSupplier supplier = new CachedWidthSupplier(() -> size.clone(), 0);
+        AtomicInteger notified = new AtomicInteger();
+        supplier.addResizeListener((w, h) -> {
+            throw new IllegalStateException("first");
+        });
+        supplier.addResizeListener((w, h) -> notified.incrementAndGet());
+        size[0] = 120;
+        IllegalStateException e = assertThrows(IllegalStateException.class, supplier::refresh);
+        assertEquals("first", e.getMessage());
+        assertEquals(1, notified.get());
+    }
+
+    @Test
+    void refreshesOthersOnSigwinchWhenOneFails() throws Exception {
+        AtomicInteger queries = new AtomicInteger();
+        CachedWidthSupplier failing = new CachedWidthSupplier(
+                () -> {
+                    if (queries.incrementAndGet() > 1) {
+                        throw new IllegalStateException("no terminal");
+                    }
+                    return new int[] {80, 24};
+                },
+                0);
+        assumeTrue(failing.watchResize());
+        failing.getTerminalWidth();
+        int[] size = {80, 24};
+        CachedWidthSupplier supplier = new CachedWidthSupplier(() -> size.clone(), 0);
+        assertTrue(supplier.watchResize());
+        CountDownLatch resized = new CountDownLatch(1);
+        supplier.addResizeListener((w, h) -> resized.countDown());
+        size[1] = 50;
+        String name = ManagementFactory.getRuntimeMXBean().getName();
+        String pid = name.substring(0, name.indexOf('@'));
+        assumeTrue(new ProcessBuilder("kill", "-WINCH", pid).start().waitFor() == 0);
+        assertTrue(resized.await(10, TimeUnit.SECONDS));
+        assertTrue(queries.get() > 1);
+    }
+
+    @Test
+    void refreshesOnSigwinch() throws Exception {
+        int[] size = {80, 24};
+        CachedWidthSupplier supplier = new CachedWidthSupplier(() -> size.clone(), 0);
+        assumeTrue(supplier.watchResize());
+        String name = ManagementFactory.getRuntimeMXBean().getName();
+        String pid = name.substring(0, name.indexOf('@'));
+        CountDownLatch resized = new CountDownLatch(1);
+        supplier.addResizeListener((w, h) -> resized.countDown());
+        size[1] = 50;
+        assumeTrue(new ProcessBuilder("kill", "-WINCH", pid).start().waitFor() == 0);
+        assertTrue(resized.await(10, TimeUnit.SECONDS));
+        assertEquals(50, supplier.getTerminalHeight());
+    }
+}
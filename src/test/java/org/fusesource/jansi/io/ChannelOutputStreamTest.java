@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2009-2023 the original author(s).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.jansi.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ChannelOutputStreamTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void buffersSmallWrites() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ChannelOutputStream out = new ChannelOutputStream(Channels.newChannel(baos), 8);
+        out.write("abc".getBytes());
+        out.write('d');
+        assertEquals(0, baos.size());
+        out.write("efghij".getBytes());
+        assertEquals("abcd", baos.toString());
+        out.flush();
+        assertEquals("abcdefghij", baos.toString());
+    }
+
+    @Test
+    void writesLargeSlicesThroughGatheringChannels() throws IOException {
+        Path file = tempDir.resolve("out");
+        byte[] expected = new byte[100_000];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = (byte) ('a' + i % 26);
+        }
+        try (ChannelOutputStream out = new ChannelOutputStream(
+                FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE), 16)) {
+            out.write(expected, 0, 10);
+            out.write(expected, 10, 50_000);
+            out.write(expected[50_010]);
+            out.write(expected, 50_011, expected.length - 50_011);
+        }
+        assertArrayEquals(expected, Files.readAllBytes(file));
+    }
+
+    @Test
+    void writesLargeSlicesThroughOtherChannels() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] large = new byte[64];
+        Arrays.fill(large, (byte) 'x');
+        ChannelOutputStream out = new ChannelOutputStream(Channels.newChannel(baos), 16);
+        out.write('a');
+        out.write(large);
+        assertEquals(65, baos.size());
+        out.close();
+    }
+}
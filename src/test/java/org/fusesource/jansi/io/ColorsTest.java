@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2009-2023 the original author(s).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.jansi.io;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ColorsTest {
+
+    @Test
+    void roundsRgbColors() {
+        assertEquals(196, Colors.roundRgbColor(255, 0, 0, 256));
+        assertEquals(9, Colors.roundRgbColor(255, 0, 0, 16));
+        assertEquals(16, Colors.roundRgbColor(0, 0, 0, 256));
+        assertEquals(0, Colors.roundRgbColor(0, 0, 0, 16));
+        assertEquals(231, Colors.roundRgbColor(255, 255, 255, 256));
+        assertEquals(15, Colors.roundRgbColor(255, 255, 255, 16));
+        assertEquals(244, Colors.roundRgbColor(128, 128, 128, 256));
+        assertEquals(210, Colors.roundRgbColor(250, 128, 114, 256));
+        assertEquals(1, Colors.roundRgbColor(250, 128, 114, 16));
+    }
+
+    @Test
+    void cachedColorsAreStable() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(24, Colors.roundRgbColor(18, 52, 86, 256));
+            assertEquals(0, Colors.roundRgbColor(18, 52, 86, 16));
+        }
+    }
+
+    @Test
+    void roundsPaletteColors() {
+        for (int col = 0; col < 256; col++) {
+            int rgb = Colors.DEFAULT_COLORS_256[col];
+            int expected = col < 16 ? col : Colors.roundRgbColor(rgb >> 16, (rgb >> 8) & 0xff, rgb & 0xff, 16);
+            assertEquals(expected, Colors.roundColor(col, 16), "color " + col);
+            assertEquals(col, Colors.roundColor(col, 256));
+        }
+        assertEquals(1, Colors.roundColor(196, 8));
+    }
+}
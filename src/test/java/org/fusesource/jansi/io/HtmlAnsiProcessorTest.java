@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2009-2023 the original author(s).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.jansi.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HtmlAnsiProcessorTest {
+
+    private static String html(String text) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        HtmlAnsiProcessor.convert(
+                new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), baos, StandardCharsets.UTF_8);
+        return new String(baos.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void escapesText() throws IOException {
+        assertEquals("a &lt;b&gt; &amp; \"c\" é", html("a <b> & \"c\" é"));
+    }
+
+    @Test
+    void convertsColors() throws IOException {
+        assertEquals(
+                "<span style=\"color:#800000;\">red</span> "
+                        + "<span style=\"color:#ff0000;background-color:#0000ff;\">bright</span> "
+                        + "<span style=\"color:#5f87af;\">256</span> "
+                        + "<span style=\"color:#0a141e;\">rgb</span>",
+                html(
+                        "\033[31mred\033[m \033[91;104mbright\033[0m \033[38;5;67m256\033[m \033[38;2;10;20;30mrgb\033[m"));
+    }
+
+    @Test
+    void convertsAttributes() throws IOException {
+        assertEquals(
+                "<span style=\"font-weight:bold;font-style:italic;text-decoration:underline line-through;\">x</span>"
+                        + "<span style=\"font-style:italic;\">y</span>"
+                        + "<span style=\"color:Canvas;background-color:CanvasText;\">z</span>",
+                html("\033[1;3;4;9mx\033[22;24;29my\033[23;7mz\033[27m"));
+    }
+
+    @Test
+    void coalescesStyleRuns() throws IOException {
+        assertEquals(
+                "<span style=\"color:#008000;\">ab</span>c",
+                html("\033[32ma\033[31m\033[32mb\033[0m\033[1m\033[0mc\033[34m"));
+    }
+
+    @Test
+    void dropsOtherSequences() throws IOException {
+        assertEquals("ab  c\nd", html("a\033[2J\033]0;title\007b\033[2Cc\033[1Ed\033[H\033[K"));
+    }
+
+    @Test
+    void dropsSequencesWhichCanNotBeParsed() throws IOException {
+        // colon sub-parameters, a sequence aborted by a new line and an OSC too long to be buffered
+        String osc = "\033]0;" + new String(new char[70000]).replace('\0', 'x') + "\007";
+        assertEquals("acurly red\nb", html("a\033[4:3mcurly \033[38:2::255:0:0mred\033[1\nb" + osc));
+    }
+
+    @Test
+    void convertsLargeStreams() throws IOException {
+        // about 64 MB of colored text, streamed without being kept in memory
+        byte[] line = "\033[1;31merror\033[0m: <unexpected> value\n".getBytes(StandardCharsets.UTF_8);
+        int lines = 2_000_000;
+        InputStream in = new InputStream() {
+            long pos;
+
+            @Override
+            public int read() {
+                return pos < (long) lines * line.length ? line[(int) (pos++ % line.length)] & 0xff : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                long remaining = (long) lines * line.length - pos;
+                if (remaining <= 0) {
+                    return -1;
+                }
+                int n = (int) Math.min(len, remaining);
+                for (int i = 0; i < n; i++) {
+                    b[off + i] = line[(int) (pos++ % line.length)];
+                }
+                return n;
+            }
+        };
+        long[] size = new long[1];
+        HtmlAnsiProcessor.convert(
+                in,
+                new OutputStream() {
+                    @Override
+                    public void write(int b) {
+                        size[0]++;
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) {
+                        size[0] += len;
+                    }
+                },
+                StandardCharsets.UTF_8);
+        String expected = "<span style=\"color:#800000;font-weight:bold;\">error</span>: &lt;unexpected&gt; value\n";
+        assertEquals((long) lines * expected.length(), size[0]);
+    }
+}
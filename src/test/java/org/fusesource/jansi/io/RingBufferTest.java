@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2009-2023 the original author(s).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.jansi.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.fusesource.jansi.AnsiColors;
+import org.fusesource.jansi.AnsiMode;
+import org.fusesource.jansi.AnsiType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RingBufferTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testWriteAndRead() throws IOException {
+        Path file = dir.resolve("ring");
+        try (RingBuffer ring = RingBuffer.create(file, 16)) {
+            ring.write("hello ".getBytes(US_ASCII), 0, 6);
+            ring.write("world".getBytes(US_ASCII), 0, 5);
+            assertEquals(11, ring.position());
+            assertEquals(0, ring.start());
+            assertEquals("hello world", read(ring, 0));
+            assertEquals("world", read(ring, 6));
+        }
+        assertEquals(RingBuffer.HEADER_SIZE + 16, Files.size(file));
+    }
+
+    @Test
+    public void testWrapAround() throws IOException {
+        try (RingBuffer ring = RingBuffer.create(dir.resolve("ring"), 8)) {
+            ring.write("0123456".getBytes(US_ASCII), 0, 7);
+            ring.write("789ab".getBytes(US_ASCII), 0, 5);
+            assertEquals(12, ring.position());
+            assertEquals(4, ring.start());
+            assertEquals("456789ab", read(ring, ring.start()));
+            assertEquals(-1, ring.read(3, new byte[8], 0, 8));
+
+            // only the end of a write larger than the ring is kept
+            ring.write("ABCDEFGHIJKL".getBytes(US_ASCII), 0, 12);
+            assertEquals(24, ring.position());
+            assertEquals("EFGHIJKL", read(ring, ring.start()));
+        }
+    }
+
+    @Test
+    public void testReopen() throws IOException {
+        Path file = dir.resolve("ring");
+        try (RingBuffer ring = RingBuffer.create(file, 32)) {
+            ring.write("before crash\n".getBytes(US_ASCII), 0, 13);
+        }
+        try (RingBuffer reader = RingBuffer.open(file)) {
+            assertEquals(32, reader.capacity());
+            assertEquals("before crash\n", read(reader, 0));
+        }
+        try (RingBuffer ring = RingBuffer.create(file, 32)) {
+            ring.write("after\n".getBytes(US_ASCII), 0, 6);
+            assertEquals("before crash\nafter\n", read(ring, 0));
+        }
+        // a different capacity reinitializes the file
+        try (RingBuffer ring = RingBuffer.create(file, 64)) {
+            assertEquals(0, ring.position());
+        }
+    }
+
+    @Test
+    public void testSingleWriter() throws IOException {
+        Path file = dir.resolve("ring");
+        try (RingBuffer ring = RingBuffer.create(file, 16)) {
+            assertThrows(IOException.class, () -> RingBuffer.create(file, 16));
+            // readers do not lock the file
+            RingBuffer.open(file).close();
+        }
+        RingBuffer.create(file, 16).close();
+    }
+
+    @Test
+    public void testInvalidFile() throws IOException {
+        Path file = dir.resolve("invalid");
+        Files.write(file, new byte[RingBuffer.HEADER_SIZE + 16]);
+        assertThrows(IOException.class, () -> RingBuffer.open(file));
+    }
+
+    @Test
+    public void testOutputStream() throws IOException {
+        try (RingBuffer ring = RingBuffer.create(dir.resolve("ring"), 1024)) {
+            AnsiOutputStream ansi = new AnsiOutputStream(
+                    new FastBufferedOutputStream(new RingOutputStream(ring)),
+                    new AnsiOutputStream.ZeroWidthSupplier(),
+                    AnsiMode.Force,
+                    null,
+                    AnsiType.Redirected,
+                    AnsiColors.TrueColor,
+                    US_ASCII,
+                    null,
+                    null,
+                    false);
+            ansi.write("\033[31mred\033[m".getBytes(US_ASCII));
+            assertEquals(0, ring.position());
+            ansi.flush();
+            assertEquals("\033[31mred\033[m", read(ring, 0));
+        }
+    }
+
+    @Test
+    public void testConcurrentWriters() throws Exception {
+        int threads = 4;
+        int writes = 10000;
+        try (RingBuffer ring = RingBuffer.create(dir.resolve("ring"), threads * writes * 4)) {
+            List<Thread> writers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                byte[] record = ("t" + t + "\n").getBytes(US_ASCII);
+                Thread writer = new Thread(() -> {
+                    OutputStream out = new RingOutputStream(ring);
+                    for (int i = 0; i < writes; i++) {
+                        try {
+                            out.write(record);
+                        } catch (IOException e) {
+                            throw new AssertionError(e);
+                        }
+                    }
+                });
+                writers.add(writer);
+                writer.start();
+            }
+            for (Thread writer : writers) {
+                writer.join();
+            }
+            assertEquals(threads * writes * 3L, ring.position());
+            int[] counts = new int[threads];
+            for (String line : read(ring, 0).split("\n")) {
+                assertEquals('t', line.charAt(0));
+                counts[line.charAt(1) - '0']++;
+            }
+            int[] expected = new int[threads];
+            Arrays.fill(expected, writes);
+            assertArrayEquals(expected, counts);
+        }
+    }
+
+    @Test
+    public void testConcurrentReader() throws Exception {
+        // each 8 bytes record holds its own position, so that a torn read is detected
+        int records = 200000;
+        try (RingBuffer ring = RingBuffer.create(dir.resolve("ring"), 64)) {
+            Thread writer = new Thread(() -> {
+                ByteBuffer record = ByteBuffer.allocate(8);
+                for (long i = 0; i < records; i++) {
+                    record.putLong(0, i * 8);
+                    ring.write(record.array(), 0, 8);
+                }
+            });
+            writer.start();
+            byte[] buf = new byte[32];
+            ByteBuffer view = ByteBuffer.wrap(buf);
+            long valid = 0;
+            boolean alive;
+            do {
+                // the last read starts once the writer is done, and must succeed
+                alive = writer.isAlive();
+                // the oldest bytes are the ones being overwritten
+                long position = (ring.start() + 7) / 8 * 8;
+                int l = ring.read(position, buf, 0, buf.length);
+                for (int i = 0; i + 8 <= l; i += 8) {
+                    assertEquals(position + i, view.getLong(i));
+                    valid++;
+                }
+            } while (alive);
+            writer.join();
+            assertTrue(valid > 0);
+        }
+    }
+
+    private static String read(RingBuffer ring, long position) {
+        byte[] buf = new byte[(int) (ring.position() - position)];
+        assertEquals(buf.length, ring.read(position, buf, 0, buf.length));
+        return new String(buf, US_ASCII);
+    }
+}
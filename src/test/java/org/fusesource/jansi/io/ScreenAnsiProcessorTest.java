@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2009-2023 the original author(s).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.jansi.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.fusesource.jansi.AnsiColors;
+import org.fusesource.jansi.AnsiMode;
+import org.fusesource.jansi.AnsiType;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScreenAnsiProcessorTest {
+
+    private static AnsiOutputStream stream(ScreenAnsiProcessor screen) {
+        return new AnsiOutputStream(
+                screen.getTextStream(),
+                screen,
+                AnsiMode.Default,
+                screen,
+                AnsiType.Emulation,
+                AnsiColors.TrueColor,
+                StandardCharsets.UTF_8,
+                null,
+                null,
+                false);
+    }
+
+    private static String line(ScreenAnsiProcessor screen, int row) {
+        StringBuilder sb = new StringBuilder();
+        for (int c = 0; c < screen.getTerminalWidth(); c++) {
+            sb.appendCodePoint(screen.codePointAt(row, c));
+        }
+        return sb.toString();
+    }
+
+    @Test
+    void maintainsTheScreen() throws IOException {
+        ByteArrayOutputStream terminal = new ByteArrayOutputStream();
+        ScreenAnsiProcessor screen = new ScreenAnsiProcessor(terminal, StandardCharsets.UTF_8, 10, 3);
+        AnsiOutputStream out = stream(screen);
+        out.write("hello\nwörld\u001B[1;8H\u001B[31mX\u001B[3;1Hlong line wraps".getBytes(StandardCharsets.UTF_8));
+        assertEquals(0, terminal.size());
+        out.flush();
+        assertEquals("wörld     ", line(screen, 0));
+        assertEquals("long line ", line(screen, 1));
+        assertEquals("wraps     ", line(screen, 2));
+        assertTrue(terminal.size() > 0);
+    }
+
+    @Test
+    void dropsSequencesWhichCanNotBeParsed() throws IOException {
+        ByteArrayOutputStream terminal = new ByteArrayOutputStream();
+        ScreenAnsiProcessor screen = new ScreenAnsiProcessor(terminal, StandardCharsets.UTF_8, 10, 2);
+        AnsiOutputStream out = stream(screen);
+        out.write("a\u001B[4:3mcurly\u001B[38:2::255:0:0m!\u001B[1\nb".getBytes(StandardCharsets.UTF_8));
+        out.flush();
+        assertEquals("acurly!   ", line(screen, 0));
+        assertEquals("b         ", line(screen, 1));
+    }
+
+    @Test
+    void redrawsOnlyChanges() throws IOException {
+        ByteArrayOutputStream terminal = new ByteArrayOutputStream();
+        ScreenAnsiProcessor screen = new ScreenAnsiProcessor(terminal, StandardCharsets.UTF_8, 20, 5);
+        AnsiOutputStream out = stream(screen);
+        String frame = "\u001B[H\u001B[2J\u001B[1mStatus\u001B[0m\n\u001B[32mok\u001B[0m  count: %d\n";
+        out.write(String.format(frame, 41).getBytes(StandardCharsets.UTF_8));
+        out.flush();
+        terminal.reset();
+        out.write(String.format(frame, 42).getBytes(StandardCharsets.UTF_8));
+        out.flush();
+        // move to the changed digit, write it, and move back to the cursor
+        assertEquals("\u001B[2;13H2\r\n", terminal.toString("UTF-8"));
+        terminal.reset();
+        out.write(String.format(frame, 42).getBytes(StandardCharsets.UTF_8));
+        out.flush();
+        assertEquals(0, terminal.size());
+    }
+
+    @Test
+    void terminalDisplaysTheScreen() throws IOException {
+        Random random = new Random(1234);
+        ScreenAnsiProcessor terminal =
+                new ScreenAnsiProcessor(new ByteArrayOutputStream(), StandardCharsets.UTF_8, 17, 7);
+        ScreenAnsiProcessor screen = new ScreenAnsiProcessor(stream(terminal), StandardCharsets.UTF_8, 17, 7);
+        AnsiOutputStream out = stream(screen);
+        String[] sequences = {
+            "\u001B[H",
+            "\u001B[2J",
+            "\u001B[K",
+            "\u001B[1K",
+            "\u001B[2L",
+            "\u001B[M",
+            "\u001B[S",
+            "\u001B[T",
+            "\u001B[0m",
+            "\u001B[1m",
+            "\u001B[4;7m",
+            "\u001B[22m",
+            "\u001B[24m",
+            "\u001B[31m",
+            "\u001B[92m",
+            "\u001B[44m",
+            "\u001B[49m",
+            "\u001B[38;5;200m",
+            "\u001B[48;2;10;20;30m",
+            "\u001B[3A",
+            "\u001B[2B",
+            "\u001B[5C",
+            "\u001B[D",
+            "\u001B[4G",
+            "\u001B[s",
+            "\u001B[u",
+            "\n",
+            "\r",
+            "\t",
+            "é",
+            "😀"
+        };
+        for (int frame = 0; frame < 200; frame++) {
+            for (int i = 0; i < 20; i++) {
+                String s = random.nextBoolean()
+                        ? sequences[random.nextInt(sequences.length)]
+                        : "\u001B[" + (1 + random.nextInt(7)) + ";" + (1 + random.nextInt(17)) + "Htext" + frame;
+                out.write(s.getBytes(StandardCharsets.UTF_8));
+            }
+            out.flush();
+            for (int r = 0; r < 7; r++) {
+                for (int c = 0; c < 17; c++) {
+                    assertEquals(screen.codePointAt(r, c), terminal.codePointAt(r, c), "frame " + frame);
+                    assertEquals(screen.styleAt(r, c), terminal.styleAt(r, c), "frame " + frame);
+                }
+            }
+        }
+    }
+}
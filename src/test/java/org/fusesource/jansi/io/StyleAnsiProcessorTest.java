@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2009-2023 the original author(s).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fusesource.jansi.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.fusesource.jansi.AnsiColors;
+import org.fusesource.jansi.AnsiMode;
+import org.fusesource.jansi.AnsiType;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StyleAnsiProcessorTest {
+
+    private static String process(AnsiColors colors, AnsiMode mode, String... writes) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        StyleAnsiProcessor style = new StyleAnsiProcessor(baos, colors, StandardCharsets.UTF_8);
+        AnsiOutputStream out = new AnsiOutputStream(
+                style.getTextStream(),
+                null,
+                mode,
+                style,
+                AnsiType.Native,
+                colors,
+                StandardCharsets.UTF_8,
+                null,
+                null,
+                false);
+        for (String write : writes) {
+            out.write(write.getBytes(StandardCharsets.UTF_8));
+        }
+        return new String(baos.toByteArray(), StandardCharsets.UTF_8).replace("\033", "\\e");
+    }
+
+    private static String process(String... writes) throws IOException {
+        return process(AnsiColors.TrueColor, AnsiMode.Default, writes);
+    }
+
+    @Test
+    void removesRedundantSequences() throws IOException {
+        assertEquals("\\e[31ma b c", process("\033[31ma\033[31m \033[0m\033[31mb\033[31m\033[39m\033[31m c"));
+        assertEquals("plain", process("\033[0m\033[m\033[39;49mplain"));
+    }
+
+    @Test
+    void sendsDeltas() throws IOException {
+        assertEquals("\\e[1;31mx\\e[22;4my\\e[0;32mz\\e[mw", process("\033[1;31mx\033[0;4;31my\033[0;32mz\033[0mw"));
+        // 22 turns off both bold and faint
+        assertEquals("\\e[1;2;31ma\\e[22;2mb", process("\033[1;2;31ma\033[22;2mb"));
+    }
+
+    @Test
+    void prefersResetWhenShorter() throws IOException {
+        assertEquals("\\e[1;3;4;7;31;42ma\\e[0;5mb", process("\033[1;3;4;7;31;42ma\033[0;5mb"));
+    }
+
+    @Test
+    void sendsPendingStyleOnFlush() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        StyleAnsiProcessor style = new StyleAnsiProcessor(baos, AnsiColors.TrueColor, StandardCharsets.UTF_8);
+        AnsiOutputStream out = new AnsiOutputStream(
+                style.getTextStream(),
+                null,
+                AnsiMode.Default,
+                style,
+                AnsiType.Native,
+                AnsiColors.TrueColor,
+                StandardCharsets.UTF_8,
+                null,
+                null,
+                false);
+        out.write("\033[31mx\033[0m".getBytes(StandardCharsets.UTF_8));
+        assertEquals("\033[31mx", new String(baos.toByteArray(), StandardCharsets.UTF_8));
+        out.flush();
+        assertEquals("\033[31mx\033[m", new String(baos.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void convertsColors() throws IOException {
+        assertEquals("\\e[38;2;1;2;3mx\\e[48;5;200my", process("\033[38;2;1;2;3mx\033[48;5;200my"));
+        assertEquals(
+                "\\e[38;5;16mx\\e[91my",
+                process(AnsiColors.Colors256, AnsiMode.Default, "\033[38;2;1;2;3mx\033[38;5;9my"));
+        assertEquals(
+                "\\e[30mx\\e[105my", process(AnsiColors.Colors16, AnsiMode.Default, "\033[38;2;1;2;3mx\033[48;5;13my"));
+        // the same color requested differently
+        assertEquals("\\e[31mxy", process("\033[31mx\033[38;5;1my"));
+    }
+
+    @Test
+    void tracksUnknownCodes() throws IOException {
+        // overline is not tracked, it is written as is and only a reset removes it
+        assertEquals("\\e[31mx\\e[53my\\e[1mz\\e[mw", process("\033[31mx\033[53my\033[1mz\033[0mw"));
+        assertEquals("\\e[31mx\\e[4:3my\\e[39mz", process("\033[31mx\033[4:3my\033[39mz\033[0m"));
+    }
+
+    @Test
+    void sendsStyleBeforeOtherSequences() throws IOException {
+        assertEquals("\\e[44m\\e[K", process("\033[44m\033[K"));
+    }
+
+    @Test
+    void tracksForcedSequences() throws IOException {
+        assertEquals("\\e[31mx\\e[0my", process(AnsiColors.TrueColor, AnsiMode.Force, "\033[31mx\033[0my"));
+    }
+
+    @Test
+    void tracksEightBitCsiOnlyInSingleByteCharsets() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        StyleAnsiProcessor style = new StyleAnsiProcessor(baos, AnsiColors.TrueColor, StandardCharsets.UTF_8);
+        AnsiOutputStream out = new AnsiOutputStream(
+                style.getTextStream(),
+                null,
+                AnsiMode.Default,
+                style,
+                AnsiType.Native,
+                AnsiColors.TrueColor,
+                StandardCharsets.UTF_8,
+                null,
+                null,
+                false);
+        // "Û1m" split after its first byte: the text starts with the continuation byte 0x9b
+        byte[] text = "\u00db1m".getBytes(StandardCharsets.UTF_8);
+        out.write(text, 0, 1);
+        out.write(text, 1, text.length - 1);
+        out.write("\033[1mx".getBytes(StandardCharsets.UTF_8));
+        assertEquals("\u00db1m\033[1mx", new String(baos.toByteArray(), StandardCharsets.UTF_8));
+    }
+}